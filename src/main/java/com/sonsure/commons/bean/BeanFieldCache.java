@@ -9,18 +9,22 @@
 
 package com.sonsure.commons.bean;
 
+import com.sonsure.commons.spring.ConcurrentReferenceHashMap;
+
 import java.lang.ref.Reference;
 import java.lang.reflect.Field;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class BeanFieldCache {
 
     /**
      * 缓存的BeanInfo信息，一个Bean根据stopClass的不同可能存有多个BeanInfo
      * 子map根据stopClass进行缓存
+     * <p>
+     * 与{@link IntrospectionCache#classCache}一样使用软引用的并发map，Field引用了所属的类
      */
-    public static final Map<Class<?>, Map<Class<?>, Object>> classCache = Collections
-            .synchronizedMap(new WeakHashMap<Class<?>, Map<Class<?>, Object>>());
+    public static final Map<Class<?>, Map<Class<?>, Object>> classCache = new ConcurrentReferenceHashMap<>();
 
     /**
      * 类的属性信息，key为属性名
@@ -73,8 +77,11 @@ public class BeanFieldCache {
 
         Map<Class<?>, Object> map = classCache.get(beanClass);
         if (map == null) {
-            map = new HashMap<>();
-            classCache.put(beanClass, map);
+            map = new ConcurrentHashMap<>(4);
+            Map<Class<?>, Object> existing = classCache.putIfAbsent(beanClass, map);
+            if (existing != null) {
+                map = existing;
+            }
         }
         Class<?> stopCls = stopClass == null ? beanClass : stopClass;
         Object value = map.get(stopCls);
@@ -87,7 +94,15 @@ public class BeanFieldCache {
         }
         if (beanFieldCache == null) {
             beanFieldCache = new BeanFieldCache(beanClass, stopClass);
-            map.put(stopCls, beanFieldCache);
+            if (value == null) {
+                //并发创建时使用先放入的
+                Object existing = map.putIfAbsent(stopCls, beanFieldCache);
+                if (existing instanceof BeanFieldCache) {
+                    beanFieldCache = (BeanFieldCache) existing;
+                }
+            } else {
+                map.put(stopCls, beanFieldCache);
+            }
         }
         return beanFieldCache;
     }
@@ -13,7 +13,9 @@ import com.sonsure.commons.model.Page;
 
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
 import java.util.function.BiConsumer;
+import java.util.stream.Stream;
 
 /**
  * Java Bean 对象转换器
@@ -154,6 +156,51 @@ public class BeanKit {
         return INSTANCE.mapToBean(mapList, beanClass, delimiter, consumer);
     }
 
+    /**
+     * map转为bean，返回的Stream在消费时才逐个转换
+     *
+     * @param <T>       the type parameter
+     * @param <R>       the type parameter
+     * @param maps      the maps
+     * @param beanClass the bean class
+     * @param delimiter the delimiter
+     * @param consumer  the consumer
+     * @return the stream
+     */
+    public static <T extends Map<String, ?>, R> Stream<R> mapToBean(Stream<T> maps, Class<R> beanClass, Character delimiter, BiConsumer<T, R> consumer) {
+        return INSTANCE.mapToBean(maps, beanClass, delimiter, consumer);
+    }
+
+    /**
+     * 并行map转为bean，结果顺序与mapList一致
+     *
+     * @param <T>       the type parameter
+     * @param <R>       the type parameter
+     * @param mapList   the map list
+     * @param beanClass the bean class
+     * @param delimiter the delimiter
+     * @return the list
+     */
+    public static <T extends Map<String, ?>, R> List<R> mapToBeanParallel(List<T> mapList, Class<R> beanClass, Character delimiter) {
+        return INSTANCE.mapToBeanParallel(mapList, beanClass, delimiter);
+    }
+
+    /**
+     * 并行map转为bean，结果顺序与mapList一致，consumer需要线程安全，不要在executor自身的任务中调用，可能死锁
+     *
+     * @param <T>       the type parameter
+     * @param <R>       the type parameter
+     * @param mapList   the map list
+     * @param beanClass the bean class
+     * @param delimiter the delimiter
+     * @param consumer  the consumer
+     * @param executor  the executor
+     * @return the list
+     */
+    public static <T extends Map<String, ?>, R> List<R> mapToBeanParallel(List<T> mapList, Class<R> beanClass, Character delimiter, BiConsumer<T, R> consumer, Executor executor) {
+        return INSTANCE.mapToBeanParallel(mapList, beanClass, delimiter, consumer, executor);
+    }
+
 
     /**
      * map转为bean
@@ -334,6 +381,63 @@ public class BeanKit {
         return INSTANCE.copyProperties(clazz, list, ignoreProperties, consumer);
     }
 
+    /**
+     * 拷贝属性，返回的Stream在消费时才逐个转换
+     *
+     * @param <T>    the type parameter
+     * @param <R>    the type parameter
+     * @param clazz  the clazz
+     * @param stream the stream
+     * @return the stream
+     */
+    public static <T, R> Stream<R> copyProperties(Class<R> clazz, Stream<T> stream) {
+        return INSTANCE.copyProperties(clazz, stream);
+    }
+
+    /**
+     * 拷贝属性，返回的Stream在消费时才逐个转换
+     *
+     * @param <T>              the type parameter
+     * @param <R>              the type parameter
+     * @param clazz            the clazz
+     * @param stream           the stream
+     * @param ignoreProperties the ignore properties
+     * @param consumer         the consumer
+     * @return the stream
+     */
+    public static <T, R> Stream<R> copyProperties(Class<R> clazz, Stream<T> stream, String[] ignoreProperties, BiConsumer<T, R> consumer) {
+        return INSTANCE.copyProperties(clazz, stream, ignoreProperties, consumer);
+    }
+
+    /**
+     * 并行拷贝属性，结果顺序与list一致
+     *
+     * @param <T>   the type parameter
+     * @param <R>   the type parameter
+     * @param clazz the clazz
+     * @param list  the list
+     * @return the list
+     */
+    public static <T, R> List<R> copyPropertiesParallel(Class<R> clazz, List<T> list) {
+        return INSTANCE.copyPropertiesParallel(clazz, list);
+    }
+
+    /**
+     * 并行拷贝属性，结果顺序与list一致，consumer需要线程安全，不要在executor自身的任务中调用，可能死锁
+     *
+     * @param <T>              the type parameter
+     * @param <R>              the type parameter
+     * @param clazz            the clazz
+     * @param list             the list
+     * @param ignoreProperties the ignore properties
+     * @param consumer         the consumer
+     * @param executor         the executor
+     * @return the list
+     */
+    public static <T, R> List<R> copyPropertiesParallel(Class<R> clazz, List<T> list, String[] ignoreProperties, BiConsumer<T, R> consumer, Executor executor) {
+        return INSTANCE.copyPropertiesParallel(clazz, list, ignoreProperties, consumer, executor);
+    }
+
     /**
      * 单个对象拷贝
      *
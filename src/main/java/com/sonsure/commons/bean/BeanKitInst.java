@@ -12,16 +12,24 @@ package com.sonsure.commons.bean;
 import com.sonsure.commons.exception.SonsureBeanException;
 import com.sonsure.commons.model.Model;
 import com.sonsure.commons.model.Page;
+import com.sonsure.commons.spring.ConcurrentReferenceHashMap;
 import com.sonsure.commons.utils.ClassUtils;
-import com.sonsure.commons.utils.NameUtils;
-import org.apache.commons.lang3.StringUtils;
 
 import java.beans.PropertyDescriptor;
 import java.lang.reflect.Field;
-import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 /**
  * @author liyd
@@ -30,7 +38,37 @@ public class BeanKitInst {
 
     private static final String[] EMPTY_ARRAY = new String[0];
 
-    private final List<TypeConverter> typeConverters = new ArrayList<>();
+    /**
+     * 并行转换时每个任务最少处理的元素数，元素更少时不并行
+     */
+    private static final int PARALLEL_MIN_CHUNK = 256;
+
+    /**
+     * 没有支持的转换器，{@link #converterTable}中代替null
+     */
+    private static final Object NO_CONVERTER = new Object();
+
+    /**
+     * 注册的转换器，运行时注册和查找可以并发进行
+     */
+    private final List<TypeConverter> typeConverters = new CopyOnWriteArrayList<>();
+
+    /**
+     * (源类型, 目标类型, 属性名)对应的转换器，查找只需一次哈希
+     * <p>
+     * 以下缓存在转换器变化时整个替换而不是清空：读取方先拿到map再查找转换器，替换之前算出的结果只会放入已丢弃的旧map
+     */
+    private volatile Map<ConverterKey, Object> converterTable = new ConcurrentReferenceHashMap<>();
+
+    /**
+     * 属性拷贝计划，软引用不阻止类卸载
+     */
+    private volatile Map<CopyPlan.Key, CopyPlan> copyPlans = new ConcurrentReferenceHashMap<>();
+
+    /**
+     * map转bean的绑定器
+     */
+    private volatile Map<RowBinder.Key, RowBinder<?>> rowBinders = new ConcurrentReferenceHashMap<>();
 
     public BeanKitInst() {
         typeConverters.add(new IEnumStringConverter());
@@ -81,15 +119,19 @@ public class BeanKitInst {
             return Collections.emptyMap();
         }
         Map<String, Object> map = new HashMap<>();
-        PropertyDescriptor[] propertyDescriptors = ClassUtils.getPropertyDescriptors(obj.getClass());
-        for (PropertyDescriptor propertyDescriptor : propertyDescriptors) {
+        IntrospectionCache introspectionCache = IntrospectionCache.forClass(obj.getClass());
+        for (PropertyDescriptor propertyDescriptor : introspectionCache.getPropertyDescriptors()) {
 
             if (propertyDescriptor.getReadMethod() == null) {
                 continue;
             }
 
-            Method readMethod = propertyDescriptor.getReadMethod();
-            Object value = ClassUtils.invokeMethod(readMethod, obj);
+            Object value;
+            try {
+                value = introspectionCache.getGetter(propertyDescriptor.getName()).apply(obj);
+            } catch (RuntimeException e) {
+                throw new SonsureBeanException("读取属性失败:" + propertyDescriptor.getName(), e);
+            }
             if (value == null) {
                 continue;
             }
@@ -162,16 +204,7 @@ public class BeanKitInst {
      * @return t list
      */
     public <T extends Map<String, ?>, R> List<R> mapToBean(List<T> mapList, Class<R> beanClass) {
-
-        if (mapList == null) {
-            return Collections.emptyList();
-        }
-        List<R> beanList = new ArrayList<>(mapList.size());
-        for (T t : mapList) {
-            R r = mapToBean(t, beanClass, null, null);
-            beanList.add(r);
-        }
-        return beanList;
+        return mapToBean(mapList, beanClass, null, null);
     }
 
     /**
@@ -185,16 +218,7 @@ public class BeanKitInst {
      * @return t list
      */
     public <T extends Map<String, ?>, R> List<R> mapToBean(List<T> mapList, Class<R> beanClass, Character delimiter) {
-
-        if (mapList == null) {
-            return Collections.emptyList();
-        }
-        List<R> beanList = new ArrayList<>(mapList.size());
-        for (T t : mapList) {
-            R r = mapToBean(t, beanClass, delimiter, null);
-            beanList.add(r);
-        }
-        return beanList;
+        return mapToBean(mapList, beanClass, delimiter, null);
     }
 
     /**
@@ -215,6 +239,7 @@ public class BeanKitInst {
      * map转为bean，最后一个参数指定map中的key转换成骆驼命名法(JavaBean中惯用的属性命名)的分隔符,例如login_name转换成loginName,分隔符为下划线_
      * 指定了分隔符进行转换时如果属性不带分隔符会统一转成小写,毕竟JavaBean中除了常量外应该不会定义有大写的属性
      * 为空则不进行任何转换
+     * 查询结果各行的key相同，使用第一行生成的绑定器处理所有行
      *
      * @param <T>       the type parameter
      * @param <R>       the type parameter
@@ -230,13 +255,78 @@ public class BeanKitInst {
             return Collections.emptyList();
         }
         List<R> beanList = new ArrayList<>(mapList.size());
+        Supplier<R> instantiator = InstantiatorCache.forClass(beanClass);
+        RowBinder<R> rowBinder = null;
         for (T t : mapList) {
-            R r = mapToBean(t, beanClass, delimiter, consumer);
+            if (rowBinder == null) {
+                rowBinder = getRowBinder(beanClass, delimiter, t);
+            }
+            R r = rowBinder.bind(t, instantiator.get(), consumer);
             beanList.add(r);
         }
         return beanList;
     }
 
+    /**
+     * map转为bean，返回的Stream在消费时才逐个转换，不会同时持有全部结果。源Stream是并行的时候consumer需要线程安全
+     *
+     * @param <T>       the type parameter
+     * @param <R>       the type parameter
+     * @param maps      the maps
+     * @param beanClass the bean class
+     * @param delimiter the delimiter
+     * @param consumer  the consumer
+     * @return the stream
+     */
+    public <T extends Map<String, ?>, R> Stream<R> mapToBean(Stream<T> maps, Class<R> beanClass, Character delimiter, BiConsumer<T, R> consumer) {
+        Supplier<R> instantiator = InstantiatorCache.forClass(beanClass);
+        AtomicReference<RowBinder<R>> rowBinder = new AtomicReference<>();
+        return maps.map(t -> {
+            RowBinder<R> binder = rowBinder.get();
+            if (binder == null) {
+                binder = getRowBinder(beanClass, delimiter, t);
+                rowBinder.set(binder);
+            }
+            return binder.bind(t, instantiator.get(), consumer);
+        });
+    }
+
+    /**
+     * 在{@link ForkJoinPool#commonPool()}中并行map转为bean，结果顺序与mapList一致
+     *
+     * @param <T>       the type parameter
+     * @param <R>       the type parameter
+     * @param mapList   the map list
+     * @param beanClass the bean class
+     * @param delimiter the delimiter
+     * @return the list
+     */
+    public <T extends Map<String, ?>, R> List<R> mapToBeanParallel(List<T> mapList, Class<R> beanClass, Character delimiter) {
+        return mapToBeanParallel(mapList, beanClass, delimiter, null, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * 并行map转为bean，结果顺序与mapList一致，consumer需要线程安全。
+     * 不要在executor自身的任务中调用：有界的executor线程都在等待时，提交的分段得不到执行会死锁
+     *
+     * @param <T>       the type parameter
+     * @param <R>       the type parameter
+     * @param mapList   the map list
+     * @param beanClass the bean class
+     * @param delimiter the delimiter
+     * @param consumer  the consumer
+     * @param executor  执行转换的执行器
+     * @return the list
+     */
+    public <T extends Map<String, ?>, R> List<R> mapToBeanParallel(List<T> mapList, Class<R> beanClass, Character delimiter, BiConsumer<T, R> consumer, Executor executor) {
+        if (mapList == null || mapList.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Supplier<R> instantiator = InstantiatorCache.forClass(beanClass);
+        RowBinder<R> rowBinder = getRowBinder(beanClass, delimiter, mapList.get(0));
+        return convertParallel(mapList, t -> rowBinder.bind(t, instantiator.get(), consumer), executor);
+    }
+
     /**
      * map转为bean
      *
@@ -295,38 +385,27 @@ public class BeanKitInst {
     public <T extends Map<String, ?>, R> R mapToBean(T srcMap, Class<R> beanClass, Character delimiter, BiConsumer<T, R> consumer) {
 
         R bean = (R) ClassUtils.newInstance(beanClass);
-        for (Map.Entry<String, ?> entry : srcMap.entrySet()) {
-
-            Object value = entry.getValue();
-
-            if (value == null) {
-                continue;
-            }
-
-            String name = entry.getKey();
-            if (delimiter != null) {
-                name = StringUtils.indexOf(name, delimiter) != -1 ? NameUtils.getCamelName(name, delimiter) : name
-                        .toLowerCase();
-            }
-            PropertyDescriptor targetPd = ClassUtils.getPropertyDescriptor(beanClass, name);
-
-            Method writeMethod;
-            if (targetPd == null || (writeMethod = targetPd.getWriteMethod()) == null) {
-
-                if (Model.class.isAssignableFrom(beanClass)) {
-                    ((Model) bean).addProperty(name, value);
-                }
-            } else {
-
-                value = typeConvert(value.getClass(), targetPd.getPropertyType(), name, value);
+        return RowBinder.direct(beanClass, delimiter, this).bind(srcMap, bean, consumer);
+    }
 
-                ClassUtils.invokeMethod(writeMethod, bean, value);
-            }
-            if (consumer != null) {
-                consumer.accept(srcMap, bean);
-            }
+    /**
+     * 获取按map的key、bean类和分隔符缓存的绑定器，只用于列表转换，单个map转换直接绑定不缓存
+     *
+     * @param beanClass the bean class
+     * @param delimiter the delimiter
+     * @param srcMap    the src map
+     * @return the row binder
+     */
+    @SuppressWarnings("unchecked")
+    private <R> RowBinder<R> getRowBinder(Class<R> beanClass, Character delimiter, Map<String, ?> srcMap) {
+        RowBinder.Key key = new RowBinder.Key(beanClass, delimiter, srcMap.keySet());
+        Map<RowBinder.Key, RowBinder<?>> binders = this.rowBinders;
+        RowBinder<R> rowBinder = (RowBinder<R>) binders.get(key);
+        if (rowBinder == null) {
+            rowBinder = RowBinder.create(beanClass, delimiter, this, key.getKeys());
+            binders.put(key, rowBinder);
         }
-        return bean;
+        return rowBinder;
     }
 
     /**
@@ -459,19 +538,182 @@ public class BeanKitInst {
         }
 
         //循环调用转换单个对象
+        Set<String> ignoreSet = toIgnoreSet(ignoreProperties);
+        Supplier<R> instantiator = InstantiatorCache.forClass(clazz);
         for (T obj : list) {
+            resultList.add(newAndCopy(instantiator, obj, ignoreSet, consumer));
+        }
+
+        return resultList;
+    }
+
+    /**
+     * 拷贝属性，返回的Stream在消费时才逐个转换，不会同时持有全部结果
+     *
+     * @param <T>    the type parameter
+     * @param <R>    the type parameter
+     * @param clazz  the clazz
+     * @param stream the stream
+     * @return the stream
+     */
+    public <T, R> Stream<R> copyProperties(Class<R> clazz, Stream<T> stream) {
+        return copyProperties(clazz, stream, EMPTY_ARRAY, (BiConsumer<T, R>) null);
+    }
+
+    /**
+     * 拷贝属性，返回的Stream在消费时才逐个转换，不会同时持有全部结果。源Stream是并行的时候consumer需要线程安全
+     *
+     * @param <T>              the type parameter
+     * @param <R>              the type parameter
+     * @param clazz            the clazz
+     * @param stream           the stream
+     * @param ignoreProperties the ignore properties
+     * @param consumer         the consumer
+     * @return the stream
+     */
+    public <T, R> Stream<R> copyProperties(Class<R> clazz, Stream<T> stream, String[] ignoreProperties, BiConsumer<T, R> consumer) {
+        Set<String> ignoreSet = toIgnoreSet(ignoreProperties);
+        Supplier<R> instantiator = InstantiatorCache.forClass(clazz);
+        return stream.map(obj -> newAndCopy(instantiator, obj, ignoreSet, consumer));
+    }
+
+    /**
+     * 在{@link ForkJoinPool#commonPool()}中并行拷贝属性，结果顺序与list一致
+     *
+     * @param <T>   the type parameter
+     * @param <R>   the type parameter
+     * @param clazz the clazz
+     * @param list  the list
+     * @return the list
+     */
+    public <T, R> List<R> copyPropertiesParallel(Class<R> clazz, List<T> list) {
+        return copyPropertiesParallel(clazz, list, EMPTY_ARRAY, null, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * 并行拷贝属性，结果顺序与list一致，consumer需要线程安全。
+     * 不要在executor自身的任务中调用：有界的executor线程都在等待时，提交的分段得不到执行会死锁
+     *
+     * @param <T>              the type parameter
+     * @param <R>              the type parameter
+     * @param clazz            the clazz
+     * @param list             the list
+     * @param ignoreProperties the ignore properties
+     * @param consumer         the consumer
+     * @param executor         执行转换的执行器
+     * @return the list
+     */
+    public <T, R> List<R> copyPropertiesParallel(Class<R> clazz, List<T> list, String[] ignoreProperties, BiConsumer<T, R> consumer, Executor executor) {
+        if (list == null || list.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Set<String> ignoreSet = toIgnoreSet(ignoreProperties);
+        Supplier<R> instantiator = InstantiatorCache.forClass(clazz);
+        return convertParallel(list, obj -> newAndCopy(instantiator, obj, ignoreSet, consumer), executor);
+    }
+
+    /**
+     * 创建对象并拷贝属性
+     */
+    private <T, R> R newAndCopy(Supplier<R> instantiator, T obj, Set<String> ignoreSet, BiConsumer<T, R> consumer) {
+        try {
+            R r = instantiator.get();
+            return copyProperties(r, obj, ignoreSet, consumer);
+        } catch (Exception e) {
+            throw new SonsureBeanException("列表转换失败", e);
+        }
+    }
+
+    /**
+     * 按顺序分段，各段提交给执行器转换，最后一段在当前线程转换，结果写入对应位置
+     * <p>
+     * 任一段失败时取消其它段并抛出该异常，与顺序转换抛出的异常相同。调用方会等待各段完成，
+     * 在同一个有界执行器(例如固定大小的线程池)的任务中调用时，线程都在等待可能导致提交的分段得不到执行而死锁
+     *
+     * @param list     the list
+     * @param function 转换单个元素
+     * @param executor the executor
+     * @return the list
+     */
+    @SuppressWarnings("unchecked")
+    private <T, R> List<R> convertParallel(List<T> list, Function<? super T, ? extends R> function, Executor executor) {
+        if (executor == null) {
+            throw new IllegalArgumentException("executor不能为空");
+        }
+        List<T> source = list instanceof RandomAccess ? list : new ArrayList<>(list);
+        int size = source.size();
+        int parallelism = executor instanceof ForkJoinPool ? ((ForkJoinPool) executor).getParallelism()
+                : Runtime.getRuntime().availableProcessors();
+        int chunks = Math.max(1, parallelism) * 4;
+        int chunkSize = Math.max(PARALLEL_MIN_CHUNK, (size + chunks - 1) / chunks);
+        Object[] results = new Object[size];
+        //第一个失败，各段每转换一个元素检查一次，失败后尽快结束
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[(size - 1) / chunkSize];
+        try {
+            for (int c = 0; c < futures.length && failure.get() == null; c++) {
+                int from = c * chunkSize;
+                int to = from + chunkSize;
+                CompletableFuture<?> future = CompletableFuture.runAsync(
+                        () -> convertRange(source, results, from, to, function, failure), executor);
+                future.whenComplete((v, e) -> {
+                    if (e != null) {
+                        fail(failure, e, futures);
+                    }
+                });
+                futures[c] = future;
+            }
+            convertRange(source, results, futures.length * chunkSize, size, function, failure);
+        } catch (RuntimeException | Error e) {
+            fail(failure, e, futures);
+        }
+        if (failure.get() == null) {
             try {
-                R r = clazz.newInstance();
-                r = copyProperties(r, obj, ignoreProperties, consumer);
-                resultList.add(r);
-            } catch (Exception e) {
-                throw new SonsureBeanException("列表转换失败", e);
+                CompletableFuture.allOf(futures).join();
+            } catch (CompletionException | CancellationException e) {
+                //whenComplete和allOf的回调顺序不确定，失败可能还没记录
+                fail(failure, e, futures);
             }
         }
-
+        Throwable e = failure.get();
+        if (e != null) {
+            if (e instanceof RuntimeException) {
+                throw (RuntimeException) e;
+            }
+            if (e instanceof Error) {
+                throw (Error) e;
+            }
+            throw new SonsureBeanException("列表转换失败", e);
+        }
+        List<R> resultList = new ArrayList<>(size);
+        for (Object result : results) {
+            resultList.add((R) result);
+        }
         return resultList;
     }
 
+    private static <T> void convertRange(List<T> source, Object[] results, int from, int to,
+                                         Function<? super T, ?> function, AtomicReference<Throwable> failure) {
+        for (int i = from; i < to && failure.get() == null; i++) {
+            results[i] = function.apply(source.get(i));
+        }
+    }
+
+    /**
+     * 记录第一个失败并取消所有分段，已开始的分段在转换下一个元素前结束
+     */
+    private static void fail(AtomicReference<Throwable> failure, Throwable e, CompletableFuture<?>[] futures) {
+        while (e instanceof CompletionException && e.getCause() != null) {
+            e = e.getCause();
+        }
+        failure.compareAndSet(null, e);
+        for (CompletableFuture<?> future : futures) {
+            if (future != null) {
+                future.cancel(false);
+            }
+        }
+    }
+
 
     /**
      * 单个对象拷贝
@@ -526,15 +768,26 @@ public class BeanKitInst {
      * @return 转换后的目标对象 r
      */
     public <T, R> R copyProperties(R target, T source, String[] ignoreProperties, BiConsumer<T, R> consumer) {
+        return copyProperties(target, source, toIgnoreSet(ignoreProperties), consumer);
+    }
+
+    /**
+     * 过滤的属性
+     */
+    private static Set<String> toIgnoreSet(String[] ignoreProperties) {
+        return (ignoreProperties != null && ignoreProperties.length > 0) ? new HashSet<>(Arrays.asList(ignoreProperties)) : Collections.emptySet();
+    }
 
-        //过滤的属性
-        List<String> ignoreList = (ignoreProperties != null && ignoreProperties.length > 0) ? Arrays.asList(ignoreProperties) : Collections.emptyList();
+    /**
+     * 单个对象转换
+     */
+    private <T, R> R copyProperties(R target, T source, Set<String> ignoreSet, BiConsumer<T, R> consumer) {
 
         //拷贝相同的属性
-        copySameProperties(target, source, ignoreList);
+        copySameProperties(target, source, ignoreSet);
 
         //拷贝扩展属性
-        copyExtensionProperties(target, source, ignoreList);
+        copyExtensionProperties(target, source, ignoreSet);
 
         if (consumer != null) {
             consumer.accept(source, target);
@@ -544,39 +797,21 @@ public class BeanKitInst {
     }
 
     /**
-     * 拷贝相同的属性
+     * 拷贝相同的属性，使用按源类、目标类和忽略属性缓存的拷贝计划
      *
-     * @param target     the target
-     * @param source     the source
-     * @param ignoreList the ignore list
+     * @param target    the target
+     * @param source    the source
+     * @param ignoreSet the ignore set
      */
-    private void copySameProperties(Object target, Object source, List<String> ignoreList) {
-
-        //获取目标对象属性信息
-        PropertyDescriptor[] targetPds = ClassUtils.getPropertyDescriptors(target.getClass());
-
-        for (PropertyDescriptor targetPd : targetPds) {
-
-            final Method writeMethod = targetPd.getWriteMethod();
-            if (writeMethod == null || ignoreList.contains(targetPd.getName())) {
-
-                continue;
-            }
-
-            PropertyDescriptor sourcePd = ClassUtils.getPropertyDescriptor(source.getClass(), targetPd.getName());
-
-            if (sourcePd != null && sourcePd.getReadMethod() != null) {
-
-                Method readMethod = sourcePd.getReadMethod();
-                Object value = ClassUtils.invokeMethod(readMethod, source);
-                if (value == null) {
-                    continue;
-                }
-                //自定义转换
-                value = typeConvert(sourcePd.getPropertyType(), targetPd.getPropertyType(), targetPd.getName(), value);
-                ClassUtils.invokeMethod(writeMethod, target, value);
-            }
+    private void copySameProperties(Object target, Object source, Set<String> ignoreSet) {
+        CopyPlan.Key key = new CopyPlan.Key(source.getClass(), target.getClass(), ignoreSet);
+        Map<CopyPlan.Key, CopyPlan> plans = this.copyPlans;
+        CopyPlan copyPlan = plans.get(key);
+        if (copyPlan == null) {
+            copyPlan = CopyPlan.create(source.getClass(), target.getClass(), ignoreSet, this);
+            plans.put(key, copyPlan);
         }
+        copyPlan.copy(source, target);
     }
 
     /**
@@ -584,9 +819,9 @@ public class BeanKitInst {
      *
      * @param target     the target
      * @param source     the source
-     * @param ignoreList the ignore list
+     * @param ignoreSet  the ignore set
      */
-    private static void copyExtensionProperties(Object target, Object source, List<String> ignoreList) {
+    private static void copyExtensionProperties(Object target, Object source, Set<String> ignoreSet) {
 
         if (!(target instanceof Model) || !(source instanceof Model)) {
             return;
@@ -597,7 +832,7 @@ public class BeanKitInst {
             return;
         }
         for (Map.Entry<String, Object> entry : extensionProperties.entrySet()) {
-            if (ignoreList.contains(entry.getKey())) {
+            if (ignoreSet.contains(entry.getKey())) {
                 continue;
             }
             ((Model) target).addProperty(entry.getKey(), entry.getValue());
@@ -605,25 +840,40 @@ public class BeanKitInst {
     }
 
     /**
-     * 用户自定义转换
+     * 查找支持的转换器，结果按(源类型, 目标类型, 属性名)缓存
      *
      * @param sourcePropertyType the source property type
      * @param targetPropertyType the target property type
-     * @param value              the value
-     * @return the object
+     * @param fileName           the file name
+     * @return 类型相同或没有支持的转换器时为null
      */
-    private Object typeConvert(Class<?> sourcePropertyType, Class<?> targetPropertyType, String fileName, Object value) {
-
-        if (value == null || sourcePropertyType == targetPropertyType) {
-            return value;
+    TypeConverter findConverter(Class<?> sourcePropertyType, Class<?> targetPropertyType, String fileName) {
+        if (sourcePropertyType == targetPropertyType) {
+            return null;
         }
-
-        for (TypeConverter typeConverter : this.typeConverters) {
-            if (typeConverter.isSupport(sourcePropertyType, targetPropertyType, fileName)) {
-                return typeConverter.convert(sourcePropertyType, targetPropertyType, value);
+        Map<ConverterKey, Object> table = this.converterTable;
+        ConverterKey key = new ConverterKey(sourcePropertyType, targetPropertyType, fileName);
+        Object converter = table.get(key);
+        if (converter == null) {
+            converter = NO_CONVERTER;
+            for (TypeConverter typeConverter : this.typeConverters) {
+                if (typeConverter.isSupport(sourcePropertyType, targetPropertyType, fileName)) {
+                    converter = typeConverter;
+                    break;
+                }
             }
+            table.put(key, converter);
         }
-        return value;
+        return converter == NO_CONVERTER ? null : (TypeConverter) converter;
+    }
+
+    /**
+     * 转换器变化后丢弃依赖转换器的缓存，必须在修改转换器列表之后调用
+     */
+    private void resetConverterCaches() {
+        this.converterTable = new ConcurrentReferenceHashMap<>();
+        this.copyPlans = new ConcurrentReferenceHashMap<>();
+        this.rowBinders = new ConcurrentReferenceHashMap<>();
     }
 
     /**
@@ -634,6 +884,7 @@ public class BeanKitInst {
      */
     public BeanKitInst registerConverter(TypeConverter converter) {
         this.typeConverters.add(converter);
+        resetConverterCaches();
         return this;
     }
 
@@ -645,6 +896,7 @@ public class BeanKitInst {
      */
     public BeanKitInst unregisterConverter(TypeConverter converter) {
         this.typeConverters.remove(converter);
+        resetConverterCaches();
         return this;
     }
 
@@ -655,16 +907,56 @@ public class BeanKitInst {
      */
     public BeanKitInst clearConverter() {
         this.typeConverters.clear();
+        resetConverterCaches();
         return this;
     }
 
     /**
-     * 获取注册的转换器
+     * 获取注册的转换器，返回的列表不能修改，增删请使用{@link #registerConverter(TypeConverter)}等方法以便更新缓存
      *
      * @return the converters
      */
     public List<TypeConverter> getConverters() {
-        return this.typeConverters;
+        return Collections.unmodifiableList(this.typeConverters);
+    }
+
+    /**
+     * 转换器缓存key，{@link TypeConverter#isSupport(Class, Class, String)}可能依赖属性名，所以属性名也是key的一部分
+     */
+    private static final class ConverterKey {
+
+        private final Class<?> sourceClass;
+
+        private final Class<?> targetClass;
+
+        private final String fieldName;
+
+        private final int hash;
+
+        ConverterKey(Class<?> sourceClass, Class<?> targetClass, String fieldName) {
+            this.sourceClass = sourceClass;
+            this.targetClass = targetClass;
+            this.fieldName = fieldName;
+            this.hash = Objects.hash(sourceClass, targetClass, fieldName);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof ConverterKey)) {
+                return false;
+            }
+            ConverterKey key = (ConverterKey) o;
+            return sourceClass == key.sourceClass && targetClass == key.targetClass
+                    && Objects.equals(fieldName, key.fieldName);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
     }
 
 
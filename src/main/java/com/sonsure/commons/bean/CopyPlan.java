@@ -0,0 +1,211 @@
+/*
+ * Copyright (c) 2020. www.sonsure.com Inc. All rights reserved.
+ * You may obtain more information at
+ *
+ *   http://www.sonsure.com
+ *
+ * Designed By Selfly Lee (selfly@live.com)
+ */
+
+package com.sonsure.commons.bean;
+
+import com.sonsure.commons.exception.SonsureBeanException;
+import com.sonsure.commons.utils.ClassUtils;
+
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * 同名属性的拷贝计划，每对(源类, 目标类, 忽略属性)生成一次，生成后不可变
+ * <p>
+ * 生成时完成属性匹配和转换器选择，getter、setter使用{@link IntrospectionCache}中编译好的函数对象，
+ * 拷贝时只需遍历数组，不再查找属性、判断忽略和匹配转换器。
+ * 转换器的选择只取决于两边的属性类型和属性名，与逐个对象判断的结果一致；转换器变化后需要重新生成。
+ * 转换后再按setter参数类型做{@link ClassUtils#toParameterValue(Object, Class)}转换。
+ * 两边都是基本类型、且不需要转换或使用的是{@link NumberConverter}时，直接在基本类型之间拷贝，不产生包装对象。
+ *
+ * @author liyd
+ */
+final class CopyPlan {
+
+    private final PropertyCopy[] properties;
+
+    private CopyPlan(PropertyCopy[] properties) {
+        this.properties = properties;
+    }
+
+    /**
+     * 生成拷贝计划
+     *
+     * @param sourceClass      the source class
+     * @param targetClass      the target class
+     * @param ignoreProperties 忽略的属性
+     * @param beanKit          提供转换器
+     * @return the copy plan
+     */
+    static CopyPlan create(Class<?> sourceClass, Class<?> targetClass, Set<String> ignoreProperties,
+                           BeanKitInst beanKit) {
+        List<PropertyCopy> properties = new ArrayList<>();
+        IntrospectionCache sourceCache = IntrospectionCache.forClass(sourceClass);
+        IntrospectionCache targetCache = IntrospectionCache.forClass(targetClass);
+        for (PropertyDescriptor targetPd : targetCache.getPropertyDescriptors()) {
+            Method writeMethod = targetPd.getWriteMethod();
+            if (writeMethod == null || ignoreProperties.contains(targetPd.getName())) {
+                continue;
+            }
+            PropertyDescriptor sourcePd = sourceCache.getPropertyDescriptor(targetPd.getName());
+            if (sourcePd == null || sourcePd.getReadMethod() == null) {
+                continue;
+            }
+            TypeConverter converter = beanKit.findConverter(sourcePd.getPropertyType(), targetPd.getPropertyType(),
+                    targetPd.getName());
+            Class<?> parameterType = writeMethod.getParameterTypes()[0];
+            BiConsumer<Object, Object> primitiveCopier = null;
+            if (isPrimitiveCopy(sourcePd.getReadMethod().getReturnType(), parameterType, converter)) {
+                primitiveCopier = PropertyAccessors.primitiveCopier(sourcePd.getReadMethod(), writeMethod);
+            }
+            properties.add(new PropertyCopy(targetPd.getName(), sourcePd.getPropertyType(),
+                    targetPd.getPropertyType(), parameterType, converter,
+                    sourceCache.getGetter(sourcePd.getName()), targetCache.getSetter(targetPd.getName()),
+                    primitiveCopier));
+        }
+        return new CopyPlan(properties.toArray(new PropertyCopy[0]));
+    }
+
+    /**
+     * 基本类型之间的强制转换与{@link NumberConverter}的结果一致，boolean、char只在类型相同时直接拷贝，
+     * 注册了其它转换器时仍然交给转换器
+     */
+    private static boolean isPrimitiveCopy(Class<?> returnType, Class<?> parameterType, TypeConverter converter) {
+        if (!returnType.isPrimitive() || !parameterType.isPrimitive()) {
+            return false;
+        }
+        if (returnType == parameterType) {
+            return converter == null;
+        }
+        return converter != null && converter.getClass() == NumberConverter.class
+                && isNumeric(returnType) && isNumeric(parameterType);
+    }
+
+    private static boolean isNumeric(Class<?> primitiveType) {
+        return primitiveType != boolean.class && primitiveType != char.class && primitiveType != void.class;
+    }
+
+    /**
+     * 拷贝属性，源属性值为null时跳过
+     *
+     * @param source the source
+     * @param target the target
+     */
+    void copy(Object source, Object target) {
+        for (PropertyCopy property : properties) {
+            if (property.primitiveCopier != null) {
+                try {
+                    property.primitiveCopier.accept(source, target);
+                } catch (RuntimeException e) {
+                    throw new SonsureBeanException("拷贝属性失败:" + property.name, e);
+                }
+                continue;
+            }
+            Object value;
+            try {
+                value = property.getter.apply(source);
+            } catch (RuntimeException e) {
+                throw new SonsureBeanException("读取属性失败:" + property.name, e);
+            }
+            if (value == null) {
+                continue;
+            }
+            if (property.converter != null) {
+                value = property.converter.convert(property.sourceType, property.targetType, value);
+            }
+            try {
+                property.setter.accept(target, ClassUtils.toParameterValue(value, property.parameterType));
+            } catch (RuntimeException e) {
+                throw new SonsureBeanException("写入属性失败:" + property.name, e);
+            }
+        }
+    }
+
+    /**
+     * 一对属性的读写和转换
+     */
+    private static final class PropertyCopy {
+
+        final String name;
+
+        final Class<?> sourceType;
+
+        final Class<?> targetType;
+
+        final Class<?> parameterType;
+
+        /** 转换器，不需要转换时为null */
+        final TypeConverter converter;
+
+        final Function<Object, Object> getter;
+
+        final BiConsumer<Object, Object> setter;
+
+        /** 基本类型之间直接拷贝，接收(source, target)，不适用时为null */
+        final BiConsumer<Object, Object> primitiveCopier;
+
+        PropertyCopy(String name, Class<?> sourceType, Class<?> targetType, Class<?> parameterType,
+                     TypeConverter converter, Function<Object, Object> getter, BiConsumer<Object, Object> setter,
+                     BiConsumer<Object, Object> primitiveCopier) {
+            this.name = name;
+            this.sourceType = sourceType;
+            this.targetType = targetType;
+            this.parameterType = parameterType;
+            this.converter = converter;
+            this.getter = getter;
+            this.setter = setter;
+            this.primitiveCopier = primitiveCopier;
+        }
+    }
+
+    /**
+     * 缓存key
+     */
+    static final class Key {
+
+        private final Class<?> sourceClass;
+
+        private final Class<?> targetClass;
+
+        private final Set<String> ignoreProperties;
+
+        private final int hash;
+
+        Key(Class<?> sourceClass, Class<?> targetClass, Set<String> ignoreProperties) {
+            this.sourceClass = sourceClass;
+            this.targetClass = targetClass;
+            this.ignoreProperties = ignoreProperties;
+            this.hash = Objects.hash(sourceClass, targetClass, ignoreProperties);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return sourceClass == key.sourceClass && targetClass == key.targetClass
+                    && ignoreProperties.equals(key.ignoreProperties);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2020. www.sonsure.com Inc. All rights reserved.
+ * You may obtain more information at
+ *
+ *   http://www.sonsure.com
+ *
+ * Designed By Selfly Lee (selfly@live.com)
+ */
+
+package com.sonsure.commons.bean;
+
+import com.sonsure.commons.exception.SonsureBeanException;
+import com.sonsure.commons.spring.ConcurrentReferenceHashMap;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Modifier;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * 类的实例化缓存
+ * <p>
+ * 每个类第一次实例化时查找无参构造方法并编译成{@link Supplier}，之后创建实例只是一次普通的方法调用，
+ * 访问检查与{@link Class#newInstance()}一致（类和无参构造方法都须是public），但只在第一次做。构造方法抛出的异常原样抛出，受检异常包装成{@link SonsureBeanException}。
+ *
+ * @author liyd
+ */
+public final class InstantiatorCache {
+
+    /**
+     * 编译后的构造方法，与{@link IntrospectionCache#classCache}一样使用软引用的并发map
+     */
+    private static final Map<Class<?>, Supplier<Object>> INSTANTIATORS = new ConcurrentReferenceHashMap<>();
+
+    private InstantiatorCache() {
+    }
+
+    /**
+     * 获取类的实例化函数，抽象类、接口、没有无参构造方法或者类和无参构造方法不是public时抛出{@link SonsureBeanException}。
+     * 与{@link Class#newInstance()}的访问检查一致，不会实例化构造方法为private的单例或工具类
+     *
+     * @param <T>   the type parameter
+     * @param clazz the clazz
+     * @return the supplier
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> Supplier<T> forClass(Class<T> clazz) {
+        Supplier<Object> instantiator = INSTANTIATORS.get(clazz);
+        if (instantiator == null) {
+            instantiator = PropertyAccessors.instantiator(getConstructor(clazz));
+            INSTANTIATORS.put(clazz, instantiator);
+        }
+        return (Supplier<T>) instantiator;
+    }
+
+    private static Constructor<?> getConstructor(Class<?> clazz) {
+        if (clazz.isInterface() || clazz.isArray() || clazz.isPrimitive()
+                || Modifier.isAbstract(clazz.getModifiers())) {
+            throw new SonsureBeanException("不能实例化接口、抽象类、数组或基本类型:" + clazz.getName());
+        }
+        Constructor<?> constructor;
+        try {
+            constructor = clazz.getDeclaredConstructor();
+        } catch (NoSuchMethodException e) {
+            String message = clazz.isMemberClass() && !Modifier.isStatic(clazz.getModifiers())
+                    ? "非静态内部类没有无参构造方法，无法实例化:" : "没有无参构造方法，无法实例化:";
+            throw new SonsureBeanException(message + clazz.getName(), e);
+        }
+        if (!Modifier.isPublic(clazz.getModifiers()) || !Modifier.isPublic(constructor.getModifiers())) {
+            throw new SonsureBeanException("类或无参构造方法不是public，无法实例化:" + clazz.getName());
+        }
+        return constructor;
+    }
+}
@@ -10,6 +10,7 @@
 package com.sonsure.commons.bean;
 
 import com.sonsure.commons.exception.SonsureBeanException;
+import com.sonsure.commons.spring.ConcurrentReferenceHashMap;
 import org.apache.commons.lang3.StringUtils;
 
 import java.beans.BeanInfo;
@@ -18,6 +19,9 @@ import java.beans.Introspector;
 import java.beans.PropertyDescriptor;
 import java.lang.ref.Reference;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
 
 /**
  * JavaBean信息缓存
@@ -31,15 +35,27 @@ public class IntrospectionCache {
     /**
      * 缓存的BeanInfo信息，一个Bean根据stopClass的不同可能存有多个BeanInfo
      * 子map根据stopClass进行缓存
+     * <p>
+     * 使用软引用的并发map，查找不加锁；缓存的信息引用了类本身，WeakHashMap的key永远不会被回收，
+     * 软引用在内存不足时整条清除，类和类加载器可以被卸载
      */
-    public static final Map<Class<?>, Map<Class<?>, Object>> classCache = Collections
-            .synchronizedMap(new WeakHashMap<Class<?>, Map<Class<?>, Object>>());
+    public static final Map<Class<?>, Map<Class<?>, Object>> classCache = new ConcurrentReferenceHashMap<>();
 
     /**
      * 类的属性信息，key为属性名
      */
     private final Map<String, PropertyDescriptor> propertyDescriptorCache;
 
+    /**
+     * 编译后的getter，第一次使用时生成，key为属性名
+     */
+    private final Map<String, Function<Object, Object>> getterCache = new ConcurrentHashMap<>();
+
+    /**
+     * 编译后的setter，第一次使用时生成，key为属性名
+     */
+    private final Map<String, BiConsumer<Object, Object>> setterCache = new ConcurrentHashMap<>();
+
     /**
      * Instantiates a new Introspection cache.
      *
@@ -100,8 +116,11 @@ public class IntrospectionCache {
 
         Map<Class<?>, Object> map = classCache.get(beanClass);
         if (map == null) {
-            map = new HashMap<>();
-            classCache.put(beanClass, map);
+            map = new ConcurrentHashMap<>(4);
+            Map<Class<?>, Object> existing = classCache.putIfAbsent(beanClass, map);
+            if (existing != null) {
+                map = existing;
+            }
         }
         //未指定stopClass时使用自身做为key，使用Object.class会和stopClass=Object.class冲突
         //例如第一次未指定stopClass默认到了Object.class，第二次到自身如果该类未继承任何类就是stopClass=Object.class，
@@ -117,7 +136,15 @@ public class IntrospectionCache {
         }
         if (introspectionCache == null) {
             introspectionCache = new IntrospectionCache(beanClass, stopClass);
-            map.put(stopCls, introspectionCache);
+            if (value == null) {
+                //并发创建时使用先放入的
+                Object existing = map.putIfAbsent(stopCls, introspectionCache);
+                if (existing instanceof IntrospectionCache) {
+                    introspectionCache = (IntrospectionCache) existing;
+                }
+            } else {
+                map.put(stopCls, introspectionCache);
+            }
         }
         return introspectionCache;
     }
@@ -157,4 +184,32 @@ public class IntrospectionCache {
         return pd;
     }
 
+    /**
+     * 获取编译后的getter，调用时不再经过反射
+     *
+     * @param name the name
+     * @return 属性不存在或不可读时为null
+     */
+    public Function<Object, Object> getGetter(String name) {
+        PropertyDescriptor pd = getPropertyDescriptor(name);
+        if (pd == null || pd.getReadMethod() == null) {
+            return null;
+        }
+        return getterCache.computeIfAbsent(pd.getName(), key -> PropertyAccessors.getter(pd.getReadMethod()));
+    }
+
+    /**
+     * 获取编译后的setter，调用时不再经过反射，值的类型需要与参数类型一致
+     *
+     * @param name the name
+     * @return 属性不存在或不可写时为null
+     */
+    public BiConsumer<Object, Object> getSetter(String name) {
+        PropertyDescriptor pd = getPropertyDescriptor(name);
+        if (pd == null || pd.getWriteMethod() == null) {
+            return null;
+        }
+        return setterCache.computeIfAbsent(pd.getName(), key -> PropertyAccessors.setter(pd.getWriteMethod()));
+    }
+
 }
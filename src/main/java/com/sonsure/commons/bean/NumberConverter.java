@@ -9,21 +9,25 @@
 
 package com.sonsure.commons.bean;
 
-import java.util.Arrays;
-import java.util.List;
-
 /**
  * @author liyd
  * @date 16/4/27
  */
 public class NumberConverter implements TypeConverter {
 
-    private static final List<Class<?>> SUPPORT_CLASSES = Arrays.asList(byte.class, short.class, int.class, long.class, float.class, double.class);
-
     @Override
     public boolean isSupport(Class<?> sourceClass, Class<?> targetClass, String fieldName) {
-        return sourceClass != targetClass && (Number.class.isAssignableFrom(sourceClass) || SUPPORT_CLASSES.contains(sourceClass))
-                && (Number.class.isAssignableFrom(targetClass) || SUPPORT_CLASSES.contains(targetClass));
+        return sourceClass != targetClass && isNumber(sourceClass) && isNumber(targetClass);
+    }
+
+    /**
+     * Number子类或byte、short、int、long、float、double
+     */
+    private static boolean isNumber(Class<?> clazz) {
+        if (clazz.isPrimitive()) {
+            return clazz != boolean.class && clazz != char.class && clazz != void.class;
+        }
+        return Number.class.isAssignableFrom(clazz);
     }
 
     @Override
@@ -0,0 +1,285 @@
+/*
+ * Copyright (c) 2020. www.sonsure.com Inc. All rights reserved.
+ * You may obtain more information at
+ *
+ *   http://www.sonsure.com
+ *
+ * Designed By Selfly Lee (selfly@live.com)
+ */
+
+package com.sonsure.commons.bean;
+
+import com.sonsure.commons.exception.SonsureBeanException;
+import com.sonsure.commons.utils.ClassUtils;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 把getter、setter和无参构造方法编译成函数对象
+ * <p>
+ * 优先用{@link LambdaMetafactory}生成实现类，调用与手写代码一样可以被内联；
+ * 方法或类不是public、或者类对当前类加载器不可见(生成的类无法链接)时退回到{@link MethodHandle}，
+ * 仍然失败时使用反射调用。
+ *
+ * @author liyd
+ */
+final class PropertyAccessors {
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    private PropertyAccessors() {
+    }
+
+    /**
+     * 编译getter
+     *
+     * @param readMethod the read method
+     * @return the function
+     */
+    @SuppressWarnings("unchecked")
+    static Function<Object, Object> getter(Method readMethod) {
+        Class<?> declaringClass = readMethod.getDeclaringClass();
+        Class<?> returnType = readMethod.getReturnType();
+        if (isLambdaAccessible(readMethod, returnType)) {
+            try {
+                MethodHandle handle = LOOKUP.unreflect(readMethod);
+                CallSite site = LambdaMetafactory.metafactory(LOOKUP, "apply",
+                        MethodType.methodType(Function.class), MethodType.methodType(Object.class, Object.class),
+                        handle, MethodType.methodType(wrap(returnType), declaringClass));
+                return (Function<Object, Object>) site.getTarget().invoke();
+            } catch (Throwable e) {
+                //退回到MethodHandle
+            }
+        }
+        MethodHandle handle = unreflect(readMethod);
+        if (handle == null) {
+            return bean -> ClassUtils.invokeMethod(readMethod, bean);
+        }
+        MethodHandle getter = handle.asType(MethodType.methodType(Object.class, Object.class));
+        return bean -> {
+            try {
+                return (Object) getter.invokeExact(bean);
+            } catch (Throwable e) {
+                throw rethrow(readMethod, e);
+            }
+        };
+    }
+
+    /**
+     * 编译setter，参数类型不匹配时抛出{@link ClassCastException}
+     *
+     * @param writeMethod the write method
+     * @return the bi consumer
+     */
+    @SuppressWarnings("unchecked")
+    static BiConsumer<Object, Object> setter(Method writeMethod) {
+        Class<?> declaringClass = writeMethod.getDeclaringClass();
+        Class<?> parameterType = writeMethod.getParameterTypes()[0];
+        if (isLambdaAccessible(writeMethod, parameterType)) {
+            try {
+                MethodHandle handle = LOOKUP.unreflect(writeMethod);
+                CallSite site = LambdaMetafactory.metafactory(LOOKUP, "accept",
+                        MethodType.methodType(BiConsumer.class),
+                        MethodType.methodType(void.class, Object.class, Object.class),
+                        handle, MethodType.methodType(void.class, declaringClass, wrap(parameterType)));
+                BiConsumer<Object, Object> setter = (BiConsumer<Object, Object>) site.getTarget().invoke();
+                return parameterType.isPrimitive() ? widening(writeMethod, setter, handle) : setter;
+            } catch (Throwable e) {
+                //退回到MethodHandle
+            }
+        }
+        MethodHandle handle = unreflect(writeMethod);
+        if (handle == null) {
+            return (bean, value) -> ClassUtils.invokeMethod(writeMethod, bean, value);
+        }
+        MethodHandle setter = handle.asType(MethodType.methodType(void.class, Object.class, Object.class));
+        return (bean, value) -> {
+            try {
+                setter.invokeExact(bean, value);
+            } catch (Throwable e) {
+                throw rethrow(writeMethod, e);
+            }
+        };
+    }
+
+    /**
+     * 生成的实现类对基本类型参数只接受对应的包装类型，其它包装类型交给MethodHandle，
+     * 与{@link Method#invoke(Object, Object...)}一样做基本类型拓宽，如Integer传给double参数
+     *
+     * @param writeMethod 参数为基本类型的setter
+     * @param setter      生成的实现
+     * @param handle      setter的方法句柄
+     * @return the bi consumer
+     */
+    private static BiConsumer<Object, Object> widening(Method writeMethod, BiConsumer<Object, Object> setter,
+                                                       MethodHandle handle) {
+        Class<?> wrapperType = wrap(writeMethod.getParameterTypes()[0]);
+        MethodHandle widening = handle.asType(MethodType.methodType(void.class, Object.class, Object.class));
+        return (bean, value) -> {
+            if (value == null || value.getClass() == wrapperType) {
+                setter.accept(bean, value);
+                return;
+            }
+            try {
+                widening.invokeExact(bean, value);
+            } catch (Throwable e) {
+                throw rethrow(writeMethod, e);
+            }
+        };
+    }
+
+    /**
+     * 把基本类型的getter和setter组合成一次拷贝，值在方法句柄内部按Java的强制转换规则转换，不产生包装对象
+     *
+     * @param readMethod  返回基本类型的getter
+     * @param writeMethod 参数为基本类型的setter
+     * @return 接收(source, target)，无法访问方法时为null
+     */
+    static BiConsumer<Object, Object> primitiveCopier(Method readMethod, Method writeMethod) {
+        MethodHandle getter = unreflect(readMethod);
+        MethodHandle setter = unreflect(writeMethod);
+        if (getter == null || setter == null) {
+            return null;
+        }
+        Class<?> parameterType = writeMethod.getParameterTypes()[0];
+        getter = MethodHandles.explicitCastArguments(getter,
+                MethodType.methodType(parameterType, readMethod.getDeclaringClass()));
+        //(target, source) -> setter(target, getter(source))，再调整参数顺序和类型
+        MethodHandle copier = MethodHandles.filterArguments(setter, 1, getter);
+        copier = MethodHandles.permuteArguments(copier, MethodType.methodType(void.class,
+                readMethod.getDeclaringClass(), writeMethod.getDeclaringClass()), 1, 0);
+        MethodHandle handle = copier.asType(MethodType.methodType(void.class, Object.class, Object.class));
+        return (source, target) -> {
+            try {
+                handle.invokeExact(source, target);
+            } catch (Throwable e) {
+                throw rethrow(writeMethod, e);
+            }
+        };
+    }
+
+    /**
+     * 编译无参构造方法
+     *
+     * @param constructor the constructor
+     * @return the supplier
+     */
+    @SuppressWarnings("unchecked")
+    static Supplier<Object> instantiator(Constructor<?> constructor) {
+        Class<?> declaringClass = constructor.getDeclaringClass();
+        //声明了受检异常时生成的实现类会把它原样抛出，交给下面的MethodHandle包装
+        if (Modifier.isPublic(constructor.getModifiers()) && Modifier.isPublic(declaringClass.getModifiers())
+                && isVisible(declaringClass) && !throwsChecked(constructor)) {
+            try {
+                MethodHandle handle = LOOKUP.unreflectConstructor(constructor);
+                CallSite site = LambdaMetafactory.metafactory(LOOKUP, "get",
+                        MethodType.methodType(Supplier.class), MethodType.methodType(Object.class),
+                        handle, MethodType.methodType(declaringClass));
+                return (Supplier<Object>) site.getTarget().invoke();
+            } catch (Throwable e) {
+                //退回到MethodHandle
+            }
+        }
+        MethodHandle handle;
+        try {
+            handle = LOOKUP.unreflectConstructor(constructor).asType(MethodType.methodType(Object.class));
+        } catch (IllegalAccessException | RuntimeException e) {
+            return () -> {
+                try {
+                    return constructor.newInstance();
+                } catch (InvocationTargetException e1) {
+                    throw rethrow(constructor.getName(), e1.getCause());
+                } catch (ReflectiveOperationException e1) {
+                    throw rethrow(constructor.getName(), e1);
+                }
+            };
+        }
+        return () -> {
+            try {
+                return (Object) handle.invokeExact();
+            } catch (Throwable e) {
+                throw rethrow(constructor.getName(), e);
+            }
+        };
+    }
+
+    private static boolean throwsChecked(Constructor<?> constructor) {
+        for (Class<?> exceptionType : constructor.getExceptionTypes()) {
+            if (!RuntimeException.class.isAssignableFrom(exceptionType) && !Error.class.isAssignableFrom(exceptionType)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 生成的实现类在当前类加载器中链接，方法所在类和属性类型都需要可见
+     */
+    private static boolean isLambdaAccessible(Method method, Class<?> propertyType) {
+        return Modifier.isPublic(method.getModifiers())
+                && Modifier.isPublic(method.getDeclaringClass().getModifiers())
+                && isVisible(method.getDeclaringClass()) && isVisible(propertyType);
+    }
+
+    private static boolean isVisible(Class<?> clazz) {
+        while (clazz.isArray()) {
+            clazz = clazz.getComponentType();
+        }
+        if (clazz.isPrimitive()) {
+            return true;
+        }
+        ClassLoader classLoader = PropertyAccessors.class.getClassLoader();
+        try {
+            return Class.forName(clazz.getName(), false, classLoader) == clazz;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    private static MethodHandle unreflect(Method method) {
+        try {
+            ClassUtils.methodAccessible(method);
+            return LOOKUP.unreflect(method);
+        } catch (IllegalAccessException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static RuntimeException rethrow(Method method, Throwable e) {
+        return rethrow(method.getName(), e);
+    }
+
+    private static RuntimeException rethrow(String name, Throwable e) {
+        if (e instanceof RuntimeException) {
+            return (RuntimeException) e;
+        }
+        if (e instanceof Error) {
+            throw (Error) e;
+        }
+        return new SonsureBeanException("执行方法失败:" + name, e);
+    }
+
+    /**
+     * 基本类型转为包装类型
+     *
+     * @param type the type
+     * @return the class
+     */
+    static Class<?> wrap(Class<?> type) {
+        if (!type.isPrimitive()) {
+            return type;
+        }
+        return MethodType.methodType(type).wrap().returnType();
+    }
+}
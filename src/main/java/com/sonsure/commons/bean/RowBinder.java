@@ -0,0 +1,253 @@
+/*
+ * Copyright (c) 2020. www.sonsure.com Inc. All rights reserved.
+ * You may obtain more information at
+ *
+ *   http://www.sonsure.com
+ *
+ * Designed By Selfly Lee (selfly@live.com)
+ */
+
+package com.sonsure.commons.bean;
+
+import com.sonsure.commons.exception.SonsureBeanException;
+import com.sonsure.commons.model.Model;
+import com.sonsure.commons.utils.ClassUtils;
+import com.sonsure.commons.utils.NameUtils;
+import org.apache.commons.lang3.StringUtils;
+
+import java.beans.PropertyDescriptor;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+
+/**
+ * map转bean的绑定器，每组(key列表, bean类, 分隔符)生成一次
+ * <p>
+ * 生成时完成key到属性名的转换、属性查找和setter编译，按key在map中的位置保存，查询结果的每一行按相同顺序遍历时
+ * 只需比较key即可取到对应列。转换器取决于值的实际类型，每列缓存最近一次值类型对应的转换器，同一列类型不变时不再匹配。
+ * 出现生成时没有的key时按原方式处理，结果与逐个属性处理一致。
+ *
+ * @author liyd
+ */
+final class RowBinder<R> {
+
+    private final Class<R> beanClass;
+
+    private final Character delimiter;
+
+    private final boolean model;
+
+    private final BeanKitInst beanKit;
+
+    /**
+     * 按生成时的key顺序排列的列
+     */
+    private final Column[] columns;
+
+    /**
+     * key不在原位置时按key查找
+     */
+    private final Map<String, Column> columnMap;
+
+    private RowBinder(Class<R> beanClass, Character delimiter, BeanKitInst beanKit, List<String> keys) {
+        this.beanClass = beanClass;
+        this.delimiter = delimiter;
+        this.model = Model.class.isAssignableFrom(beanClass);
+        this.beanKit = beanKit;
+        this.columns = new Column[keys.size()];
+        this.columnMap = new HashMap<>(keys.size() * 4 / 3 + 1);
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = newColumn(keys.get(i));
+            columnMap.put(columns[i].key, columns[i]);
+        }
+    }
+
+    /**
+     * 生成绑定器
+     *
+     * @param <R>       the type parameter
+     * @param beanClass the bean class
+     * @param delimiter the delimiter
+     * @param beanKit   提供转换器
+     * @param keys      map中的key，按遍历顺序
+     * @return the row binder
+     */
+    static <R> RowBinder<R> create(Class<R> beanClass, Character delimiter, BeanKitInst beanKit, List<String> keys) {
+        return new RowBinder<>(beanClass, delimiter, beanKit, keys);
+    }
+
+    /**
+     * 生成不带预先解析列的绑定器，每个key在绑定时按原方式处理，用于单个map的转换，不需要复制key列表和缓存
+     *
+     * @param <R>       the type parameter
+     * @param beanClass the bean class
+     * @param delimiter the delimiter
+     * @param beanKit   提供转换器
+     * @return the row binder
+     */
+    static <R> RowBinder<R> direct(Class<R> beanClass, Character delimiter, BeanKitInst beanKit) {
+        return new RowBinder<>(beanClass, delimiter, beanKit, Collections.emptyList());
+    }
+
+    private Column newColumn(String key) {
+        String name = key;
+        if (delimiter != null) {
+            name = StringUtils.indexOf(name, delimiter) != -1 ? NameUtils.getCamelName(name, delimiter) : name
+                    .toLowerCase();
+        }
+        IntrospectionCache introspectionCache = IntrospectionCache.forClass(beanClass);
+        PropertyDescriptor pd = introspectionCache.getPropertyDescriptor(name);
+        if (pd == null || pd.getWriteMethod() == null) {
+            return new Column(key, name, null, null, null);
+        }
+        return new Column(key, name, pd.getPropertyType(), pd.getWriteMethod().getParameterTypes()[0],
+                introspectionCache.getSetter(pd.getName()));
+    }
+
+    /**
+     * 把map中的值写入bean，值为null的key跳过，每处理一个key后回调一次consumer
+     *
+     * @param <T>      the type parameter
+     * @param srcMap   the src map
+     * @param bean     the bean
+     * @param consumer the consumer
+     * @return the bean
+     */
+    <T extends Map<String, ?>> R bind(T srcMap, R bean, BiConsumer<T, R> consumer) {
+        int index = 0;
+        for (Map.Entry<String, ?> entry : srcMap.entrySet()) {
+            String key = entry.getKey();
+            Column column = index < columns.length && columns[index].key.equals(key) ? columns[index]
+                    : columnMap.get(key);
+            index++;
+            Object value = entry.getValue();
+            if (value == null) {
+                continue;
+            }
+            if (column == null) {
+                column = newColumn(key);
+            }
+            if (column.setter == null) {
+                if (model) {
+                    ((Model) bean).addProperty(column.name, value);
+                }
+            } else {
+                value = column.convert(value, beanKit);
+                try {
+                    column.setter.accept(bean, ClassUtils.toParameterValue(value, column.parameterType));
+                } catch (RuntimeException e) {
+                    throw new SonsureBeanException("写入属性失败:" + column.name, e);
+                }
+            }
+            if (consumer != null) {
+                consumer.accept(srcMap, bean);
+            }
+        }
+        return bean;
+    }
+
+    /**
+     * 一个key对应的属性
+     */
+    private static final class Column {
+
+        final String key;
+
+        /** 属性名 */
+        final String name;
+
+        final Class<?> propertyType;
+
+        final Class<?> parameterType;
+
+        /** 属性不存在或不可写时为null */
+        final BiConsumer<Object, Object> setter;
+
+        /** 最近一次值类型对应的转换器 */
+        volatile Conversion conversion;
+
+        Column(String key, String name, Class<?> propertyType, Class<?> parameterType,
+               BiConsumer<Object, Object> setter) {
+            this.key = key;
+            this.name = name;
+            this.propertyType = propertyType;
+            this.parameterType = parameterType;
+            this.setter = setter;
+        }
+
+        Object convert(Object value, BeanKitInst beanKit) {
+            Class<?> valueClass = value.getClass();
+            Conversion c = conversion;
+            if (c == null || c.valueClass != valueClass) {
+                c = new Conversion(valueClass, beanKit.findConverter(valueClass, propertyType, name));
+                conversion = c;
+            }
+            return c.converter == null ? value : c.converter.convert(valueClass, propertyType, value);
+        }
+    }
+
+    /**
+     * 值类型和转换器，不需要转换时converter为null
+     */
+    private static final class Conversion {
+
+        final Class<?> valueClass;
+
+        final TypeConverter converter;
+
+        Conversion(Class<?> valueClass, TypeConverter converter) {
+            this.valueClass = valueClass;
+            this.converter = converter;
+        }
+    }
+
+    /**
+     * 缓存key
+     */
+    static final class Key {
+
+        private final Class<?> beanClass;
+
+        private final Character delimiter;
+
+        private final List<String> keys;
+
+        private final int hash;
+
+        Key(Class<?> beanClass, Character delimiter, Iterable<String> keys) {
+            this.beanClass = beanClass;
+            this.delimiter = delimiter;
+            List<String> list = new ArrayList<>();
+            for (String key : keys) {
+                list.add(key);
+            }
+            this.keys = list;
+            this.hash = Objects.hash(beanClass, delimiter, list);
+        }
+
+        List<String> getKeys() {
+            return keys;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return beanClass == key.beanClass && Objects.equals(delimiter, key.delimiter) && keys.equals(key.keys);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
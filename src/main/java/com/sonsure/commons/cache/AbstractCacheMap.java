@@ -9,30 +9,70 @@
 
 package com.sonsure.commons.cache;
 
+import com.sonsure.commons.exception.SonsureCommonsException;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * 缓存map抽象实现
  * 
  * Created by liyd on 7/24/14.
  */
-public abstract class AbstractCacheMap<K, V> implements CacheMap<K, V> {
+public abstract class AbstractCacheMap<K, V> implements CacheMap<K, V>, ExpirySweeper.Target {
+
+    /**
+     * slf4j在pom中是optional的依赖，缓存不能要求使用方一定引入，使用jdk自带的日志
+     */
+    private static final Logger LOGGER = Logger.getLogger(AbstractCacheMap.class.getName());
 
-    class CacheObject<K2, V2> {
+    /**
+     * {@link #forEachEntry(EntryConsumer)}每次持有读锁时取出的对象数
+     */
+    static final int FOR_EACH_CHUNK = 256;
+
+    class CacheObject<K2, V2> extends TimerWheel.Node {
         CacheObject(K2 key, V2 value, long liveTime) {
             this.key = key;
-            this.cachedObject = value;
+            this.cachedObject = valueStrength == ValueStrength.STRONG || value == null ? value
+                    : newValueReference(this, value);
             this.liveTime = liveTime;
-            this.lastAccess = System.currentTimeMillis();
+            this.lastAccess = ticker.read();
+            this.expireTime = lastAccess + liveTime;
         }
 
         /** 缓存key */
         final K2 key;
 
-        /** 缓存对象 */
-        final V2 cachedObject;
+        /** 缓存对象，引用强度不是STRONG时为{@link ValueReference} */
+        final Object cachedObject;
 
         /** 最后访问时间 */
         long     lastAccess;
@@ -43,18 +83,44 @@ public abstract class AbstractCacheMap<K, V> implements CacheMap<K, V> {
         /** 对象存活时间(time-to-live) */
         long     liveTime;
 
+        /** 权重，未设置权重计算时为0 */
+        int      weight;
+
         public boolean isExpired() {
             if (liveTime == 0) {
                 return false;
             }
-            return (lastAccess + liveTime) < System.currentTimeMillis();
+            return expireTime < ticker.read();
         }
 
         public V2 getObject() {
             //当过缓存时间时失败，而不是每访问一次就重新计算
 //            lastAccess = System.currentTimeMillis();
             accessCount++;
-            return cachedObject;
+            return value();
+        }
+
+        /**
+         * 获取缓存的值，不计访问次数，值已被回收时为null
+         *
+         * @return
+         */
+        @SuppressWarnings("unchecked")
+        V2 value() {
+            Object value = cachedObject;
+            if (value instanceof ValueReference) {
+                return (V2) ((Reference<?>) value).get();
+            }
+            return (V2) value;
+        }
+
+        /**
+         * 软引用或弱引用的值是否已被回收
+         *
+         * @return
+         */
+        boolean isCollected() {
+            return cachedObject instanceof ValueReference && ((Reference<?>) cachedObject).get() == null;
         }
     }
 
@@ -70,6 +136,15 @@ public abstract class AbstractCacheMap<K, V> implements CacheMap<K, V> {
     /** 写锁 */
     private final Lock                   writeLock = cacheLock.writeLock();
 
+    /** 值的引用强度 */
+    private ValueStrength                valueStrength = ValueStrength.STRONG;
+
+    /** 值被回收的引用 */
+    private final ReferenceQueue<Object> referenceQueue = new ReferenceQueue<>();
+
+    /** 读操作缓冲区 */
+    private final ReadBuffer<CacheObject<K, V>> readBuffer = new ReadBuffer<>();
+
     /** 最大缓存大小 , 0表示无限制 */
     protected int                        cacheSize;
 
@@ -79,6 +154,42 @@ public abstract class AbstractCacheMap<K, V> implements CacheMap<K, V> {
     /** 是否设置默认过期时间 */
     protected boolean                    existCustomExpire;
 
+    /** 时间源 */
+    private volatile Ticker              ticker = Ticker.systemTicker();
+
+    /** 按过期时间组织对象的时间轮 */
+    private TimerWheel                   timerWheel = new TimerWheel(ticker.read());
+
+    /** 后台清理任务 */
+    private ExpirySweeper                expirySweeper;
+
+    /** 统计计数器，为null时不统计 */
+    private volatile StatsCounter        statsCounter;
+
+    /** 权重计算，为null时按对象个数限制 */
+    private Weigher<? super K, ? super V> weigher;
+
+    /** 最大总权重 */
+    private long                         maximumWeight;
+
+    /** 当前总权重 */
+    private long                         totalWeight;
+
+    /** 删除回调 */
+    private volatile RemovalListener<? super K, ? super V> removalListener;
+
+    /** 执行删除回调的执行器 */
+    private volatile Executor            removalExecutor;
+
+    /** 接收因大小被淘汰的对象，TieredCacheMap用来写入下一级 */
+    private volatile EntryConsumer<? super K, ? super V> evictionConsumer;
+
+    /** 执行evictionConsumer的执行器 */
+    private volatile Executor            evictionExecutor;
+
+    /** 写锁下产生、等待释放锁后分发的删除通知 */
+    private final Queue<RemovalNotification<K, V>> pendingNotifications = new ConcurrentLinkedQueue<>();
+
     /**
      * 获取最大缓存大小
      * 
@@ -108,6 +219,380 @@ public abstract class AbstractCacheMap<K, V> implements CacheMap<K, V> {
         return defaultExpire;
     }
 
+    /**
+     * 设置权重计算，之后缓存按总权重限制大小，超过最大权重时按淘汰策略删除对象直到放得下，
+     * 单个权重超过最大权重的对象不会被缓存。cacheSize大于0时仍同时限制对象个数。
+     * 需要在放入对象前设置
+     *
+     * @param weigher       权重计算，如{@link Weighers#heapSize()}
+     * @param maximumWeight 最大总权重
+     * @return
+     */
+    public AbstractCacheMap<K, V> setWeigher(Weigher<? super K, ? super V> weigher, long maximumWeight) {
+        if (weigher == null) {
+            throw new IllegalArgumentException("weigher不能为空");
+        }
+        if (maximumWeight <= 0) {
+            throw new IllegalArgumentException("maximumWeight必须大于0");
+        }
+        writeLock.lock();
+        try {
+            if (!cacheMap.isEmpty()) {
+                throw new SonsureCommonsException("缓存中已有对象，不能再设置权重计算");
+            }
+            this.weigher = weigher;
+            this.maximumWeight = maximumWeight;
+        } finally {
+            unlockWrite();
+        }
+        return this;
+    }
+
+    /**
+     * 最大总权重，未设置权重计算时为0
+     *
+     * @return
+     */
+    public long getMaximumWeight() {
+        return maximumWeight;
+    }
+
+    /**
+     * 当前总权重，未设置权重计算时为0
+     *
+     * @return
+     */
+    public long getTotalWeight() {
+        readLock.lock();
+        try {
+            return totalWeight;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * 设置时间源，需要在放入对象前设置。使用{@link Ticker#coarseTicker()}可以避免每次读取都获取系统时间
+     *
+     * @param ticker the ticker
+     * @return
+     */
+    public AbstractCacheMap<K, V> setTicker(Ticker ticker) {
+        if (ticker == null) {
+            throw new IllegalArgumentException("ticker不能为空");
+        }
+        writeLock.lock();
+        try {
+            if (!cacheMap.isEmpty()) {
+                throw new SonsureCommonsException("缓存中已有对象，不能再设置时间源");
+            }
+            this.ticker = ticker;
+            this.timerWheel = new TimerWheel(ticker.read());
+        } finally {
+            unlockWrite();
+        }
+        return this;
+    }
+
+    /**
+     * 设置值的引用强度，需要在放入对象前设置
+     * <p>
+     * 使用软引用或弱引用时GC可以回收缓存的值，被回收的对象在下次写操作或{@link #cleanUp()}时删除，
+     * 删除原因为{@link RemovalCause#COLLECTED}，删除前仍计入{@link #size()}。读到已回收的对象按未命中处理。
+     * 值的比较不受影响，key仍是强引用
+     *
+     * @param valueStrength 引用强度
+     * @return
+     */
+    public AbstractCacheMap<K, V> setValueStrength(ValueStrength valueStrength) {
+        if (valueStrength == null) {
+            throw new IllegalArgumentException("valueStrength不能为空");
+        }
+        writeLock.lock();
+        try {
+            if (!cacheMap.isEmpty()) {
+                throw new SonsureCommonsException("缓存中已有对象，不能再设置引用强度");
+            }
+            this.valueStrength = valueStrength;
+        } finally {
+            unlockWrite();
+        }
+        return this;
+    }
+
+    /**
+     * 获取值的引用强度
+     *
+     * @return
+     */
+    public ValueStrength getValueStrength() {
+        return valueStrength;
+    }
+
+    /**
+     * 获取时间源
+     *
+     * @return
+     */
+    public Ticker getTicker() {
+        return ticker;
+    }
+
+    /**
+     * 设置删除回调，在{@link ForkJoinPool#commonPool()}中执行
+     *
+     * @param removalListener 删除回调，为null时取消
+     * @return
+     */
+    public AbstractCacheMap<K, V> setRemovalListener(RemovalListener<? super K, ? super V> removalListener) {
+        return setRemovalListener(removalListener, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * 设置删除回调
+     * <p>
+     * 淘汰、过期、删除和替换都会回调。通知在写锁下只入队，释放写锁后整批提交给执行器，回调不会延长持锁时间。
+     * 执行器为{@code Runnable::run}时在触发删除的线程上同步回调
+     *
+     * @param removalListener 删除回调，为null时取消
+     * @param executor        执行回调的执行器
+     * @return
+     */
+    public AbstractCacheMap<K, V> setRemovalListener(RemovalListener<? super K, ? super V> removalListener,
+                                                     Executor executor) {
+        if (executor == null) {
+            throw new IllegalArgumentException("executor不能为空");
+        }
+        this.removalExecutor = executor;
+        this.removalListener = removalListener;
+        return this;
+    }
+
+    /**
+     * 设置因大小被淘汰对象的接收者，与删除回调一样在释放写锁后提交给执行器
+     *
+     * @param consumer 为null时取消
+     * @param executor the executor
+     */
+    void setEvictionConsumer(EntryConsumer<? super K, ? super V> consumer, Executor executor) {
+        this.evictionExecutor = executor;
+        this.evictionConsumer = consumer;
+    }
+
+    /**
+     * 分批遍历未过期的对象，consumer在锁外调用
+     * <p>
+     * 读锁下只复制一次key的引用，之后每批在读锁下取出最多{@link #FOR_EACH_CHUNK}个对象的值和过期时间放入缓冲区，
+     * 释放锁后再交给consumer，序列化、写文件等慢操作不会阻塞写入，写线程排队时也不会阻塞后来的读。
+     * 遍历期间删除的对象跳过，更新的对象取最新的值，新加入的对象不包含在内；顺序与遍历开始时一致。
+     *
+     * @param consumer
+     */
+    @SuppressWarnings("unchecked")
+    void forEachEntry(EntryConsumer<? super K, ? super V> consumer) {
+        Object[] keys;
+        readLock.lock();
+        try {
+            keys = cacheMap.keySet().toArray();
+        } finally {
+            readLock.unlock();
+        }
+        Object[] values = new Object[Math.min(FOR_EACH_CHUNK, keys.length)];
+        long[] expireTimes = new long[values.length];
+        for (int start = 0; start < keys.length; start += FOR_EACH_CHUNK) {
+            int end = Math.min(start + FOR_EACH_CHUNK, keys.length);
+            readLock.lock();
+            try {
+                for (int i = start; i < end; i++) {
+                    CacheObject<K, V> co = cacheMap.get(keys[i]);
+                    V value = co == null ? null : co.value();
+                    if (co == null || co.isExpired() || (value == null && co.isCollected())) {
+                        //已不存在的对象key置空，下面跳过
+                        keys[i] = null;
+                        continue;
+                    }
+                    values[i - start] = value;
+                    expireTimes[i - start] = co.liveTime == 0 ? 0 : co.expireTime;
+                }
+            } finally {
+                readLock.unlock();
+            }
+            for (int i = start; i < end; i++) {
+                if (keys[i] != null) {
+                    consumer.accept((K) keys[i], (V) values[i - start], expireTimes[i - start]);
+                }
+                values[i - start] = null;
+            }
+        }
+    }
+
+    /**
+     * 把未过期的对象及剩余存活时间写入快照，只在分批取出对象时短暂持有读锁，序列化和写出在锁外进行
+     *
+     * @param out             输出流，不会被关闭
+     * @param keySerializer   key序列化
+     * @param valueSerializer value序列化
+     * @return 写入的对象数
+     */
+    public int writeSnapshot(OutputStream out, Serializer<K> keySerializer, Serializer<V> valueSerializer) {
+        //先处理缓冲的读取，快照中的顺序才是准确的访问顺序
+        cleanUp();
+        return CacheSnapshot.write(this, out, keySerializer, valueSerializer);
+    }
+
+    /**
+     * 写入快照文件，先写临时文件再替换，写入失败不会破坏已有的快照
+     *
+     * @param file            快照文件
+     * @param keySerializer   key序列化
+     * @param valueSerializer value序列化
+     * @return 写入的对象数
+     */
+    public int writeSnapshot(File file, Serializer<K> keySerializer, Serializer<V> valueSerializer) {
+        Path target = file.toPath();
+        Path tmp = target.resolveSibling(file.getName() + ".tmp");
+        try {
+            int count;
+            try (OutputStream out = Files.newOutputStream(tmp)) {
+                count = writeSnapshot(out, keySerializer, valueSerializer);
+            }
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return count;
+        } catch (IOException e) {
+            throw new SonsureCommonsException("写入缓存快照失败:" + file, e);
+        }
+    }
+
+    /**
+     * 读取快照放入缓存，在{@link ForkJoinPool#commonPool()}中并行反序列化
+     *
+     * @param in              输入流，不会被关闭
+     * @param keySerializer   key序列化
+     * @param valueSerializer value序列化
+     * @return 放入的对象数
+     */
+    public int loadSnapshot(InputStream in, Serializer<K> keySerializer, Serializer<V> valueSerializer) {
+        return loadSnapshot(in, keySerializer, valueSerializer, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * 读取快照放入缓存，按快照中的顺序放入，剩余存活时间扣除快照写入后经过的时间
+     *
+     * @param in              输入流，不会被关闭
+     * @param keySerializer   key序列化
+     * @param valueSerializer value序列化
+     * @param executor        反序列化的执行器
+     * @return 放入的对象数
+     */
+    public int loadSnapshot(InputStream in, Serializer<K> keySerializer, Serializer<V> valueSerializer,
+                            Executor executor) {
+        if (executor == null) {
+            throw new IllegalArgumentException("executor不能为空");
+        }
+        return CacheSnapshot.load(this, in, keySerializer, valueSerializer, executor);
+    }
+
+    /**
+     * 读取快照文件放入缓存，文件不存在时返回0
+     *
+     * @param file            快照文件
+     * @param keySerializer   key序列化
+     * @param valueSerializer value序列化
+     * @return 放入的对象数
+     */
+    public int loadSnapshot(File file, Serializer<K> keySerializer, Serializer<V> valueSerializer) {
+        if (!file.exists()) {
+            return 0;
+        }
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            return loadSnapshot(in, keySerializer, valueSerializer);
+        } catch (IOException e) {
+            throw new SonsureCommonsException("读取缓存快照失败:" + file, e);
+        }
+    }
+
+    /**
+     * 开启统计，开启前的操作不会被统计
+     *
+     * @return
+     */
+    public AbstractCacheMap<K, V> recordStats() {
+        if (statsCounter == null) {
+            statsCounter = new StatsCounter();
+        }
+        return this;
+    }
+
+    /**
+     * 是否开启了统计
+     *
+     * @return
+     */
+    public boolean isRecordingStats() {
+        return statsCounter != null;
+    }
+
+    /**
+     * 获取统计快照，未开启统计时返回{@link CacheStats#EMPTY}
+     *
+     * @return
+     */
+    public CacheStats getStats() {
+        StatsCounter counter = statsCounter;
+        return counter == null ? CacheStats.EMPTY : counter.snapshot();
+    }
+
+    /**
+     * 开启统计并注册到平台MBeanServer，ObjectName为com.sonsure.commons.cache:type=CacheStats,name=名称
+     *
+     * @param name 缓存名称
+     * @return 注册的ObjectName
+     */
+    public ObjectName registerStatsMBean(String name) {
+        recordStats();
+        try {
+            ObjectName objectName = statsObjectName(name);
+            MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            if (mBeanServer.isRegistered(objectName)) {
+                mBeanServer.unregisterMBean(objectName);
+            }
+            mBeanServer.registerMBean(new CacheStatsMXBeanImpl(this), objectName);
+            return objectName;
+        } catch (JMException e) {
+            throw new SonsureCommonsException("注册缓存统计MBean失败:" + name, e);
+        }
+    }
+
+    /**
+     * 注销统计MBean
+     *
+     * @param name 缓存名称
+     */
+    public void unregisterStatsMBean(String name) {
+        try {
+            ObjectName objectName = statsObjectName(name);
+            MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            if (mBeanServer.isRegistered(objectName)) {
+                mBeanServer.unregisterMBean(objectName);
+            }
+        } catch (JMException e) {
+            throw new SonsureCommonsException("注销缓存统计MBean失败:" + name, e);
+        }
+    }
+
+    private static ObjectName statsObjectName(String name) throws MalformedObjectNameException {
+        return new ObjectName("com.sonsure.commons.cache:type=CacheStats,name=" + ObjectName.quote(name));
+    }
+
+    /**
+     * 统计计数器，未开启统计时为null
+     *
+     * @return
+     */
+    StatsCounter getStatsCounter() {
+        return statsCounter;
+    }
+
     /**
      * 是否需要清除过期对象
      *
@@ -135,61 +620,626 @@ public abstract class AbstractCacheMap<K, V> implements CacheMap<K, V> {
      * @param expire  过期时间
      */
     public void put(K key, V value, long expire) {
+        boolean stored;
         writeLock.lock();
         try {
-            CacheObject<K, V> co = new CacheObject<K, V>(key, value, expire);
-            if (expire != 0) {
-                existCustomExpire = true;
+            drainReadBuffer();
+            expireEntries();
+            stored = putLocked(key, value, expire);
+        } finally {
+            unlockWrite();
+        }
+        //超过权重限制未放入的不计入放入次数，与putAll一致
+        StatsCounter counter = statsCounter;
+        if (counter != null && stored) {
+            counter.recordPut();
+        }
+    }
+
+    /**
+     * key当前对应的仍是expected时才放入，expected为null表示key不存在(或已过期、已被回收)时才放入。
+     * 用于刷新等异步加载，加载期间被删除或放入了新值时丢弃加载的结果
+     *
+     * @param key      the key
+     * @param expected 期望的当前缓存对象
+     * @param value    the value
+     * @param expire   过期时间
+     * @return 是否放入
+     */
+    boolean compareAndPut(K key, CacheObject<K, V> expected, V value, long expire) {
+        boolean stored;
+        writeLock.lock();
+        try {
+            drainReadBuffer();
+            expireEntries();
+            CacheObject<K, V> current = cacheMap.get(key);
+            boolean absent = current == null || current.isExpired() || current.isCollected();
+            if (expected == null ? !absent : current != expected) {
+                return false;
             }
-            if (isFull()) {
-                eliminate();
+            stored = putLocked(key, value, expire);
+        } finally {
+            unlockWrite();
+        }
+        StatsCounter counter = statsCounter;
+        if (counter != null && stored) {
+            counter.recordPut();
+        }
+        return stored;
+    }
+
+    /**
+     * 放入缓存对象，调用方需持有写锁并已回放读缓冲区、删除过期对象
+     *
+     * @return 超过权重限制未放入时返回false
+     */
+    private boolean putLocked(K key, V value, long expire) {
+        CacheObject<K, V> co = newCacheObject(key, value, expire);
+        if (expire != 0) {
+            existCustomExpire = true;
+        }
+        if (weigher != null) {
+            co.weight = weigh(key, value);
+            if (co.weight > maximumWeight) {
+                //放不下，同时删除旧值避免读到过时数据
+                removeObject(key, RemovalCause.SIZE);
+                return false;
+            }
+        }
+        //替换已存在的key不会增加大小
+        //按权重限制时可能需要淘汰多个对象
+        while (needEliminate(co)) {
+            if (eliminateCache() == 0) {
+                break;
+            }
+        }
+        putObject(co);
+        return true;
+    }
+
+    /**
+     * 批量添加缓存对象，整批只加一次写锁，全部放入后再按淘汰策略删除超出的对象
+     *
+     * @param map
+     */
+    @Override
+    public void putAll(Map<? extends K, ? extends V> map) {
+        if (map.isEmpty()) {
+            return;
+        }
+        //超过权重限制未放入的不计入放入次数
+        int stored = 0;
+        writeLock.lock();
+        try {
+            drainReadBuffer();
+            expireEntries();
+            for (Map.Entry<? extends K, ? extends V> entry : map.entrySet()) {
+                CacheObject<K, V> co = newCacheObject(entry.getKey(), entry.getValue(), defaultExpire);
+                if (weigher != null) {
+                    co.weight = weigh(co.key, entry.getValue());
+                    if (co.weight > maximumWeight) {
+                        removeObject(co.key, RemovalCause.SIZE);
+                        continue;
+                    }
+                }
+                putObject(co);
+                stored++;
+            }
+            while (isOverLimit()) {
+                if (eliminateCache() == 0) {
+                    break;
+                }
             }
-            cacheMap.put(key, co);
         } finally {
-            writeLock.unlock();
+            unlockWrite();
+        }
+        StatsCounter counter = statsCounter;
+        if (counter != null && stored > 0) {
+            counter.recordPuts(stored);
         }
     }
 
+    /**
+     * 是否超过了大小或权重限制
+     *
+     * @return
+     */
+    private boolean isOverLimit() {
+        if (cacheSize > 0 && cacheMap.size() > cacheSize) {
+            return true;
+        }
+        return weigher != null && totalWeight > maximumWeight;
+    }
+
+    /**
+     * 计算权重
+     *
+     * @param key
+     * @param value
+     * @return
+     */
+    private int weigh(K key, V value) {
+        int weight = weigher.weigh(key, value);
+        if (weight < 0) {
+            throw new IllegalArgumentException("权重不能为负数:" + weight);
+        }
+        return weight;
+    }
+
+    /**
+     * 放入对象前是否需要淘汰，替换已存在的key时扣除旧对象
+     *
+     * @param co
+     * @return
+     */
+    private boolean needEliminate(CacheObject<K, V> co) {
+        CacheObject<K, V> old = cacheMap.get(co.key);
+        if (cacheSize > 0 && old == null && cacheMap.size() >= cacheSize) {
+            return true;
+        }
+        return weigher != null && totalWeight - (old == null ? 0 : old.weight) + co.weight > maximumWeight;
+    }
+
+    /**
+     * 创建缓存对象，子类需要在缓存对象上维护额外信息时覆盖
+     *
+     * @param key
+     * @param value
+     * @param expire
+     * @return
+     */
+    protected CacheObject<K, V> newCacheObject(K key, V value, long expire) {
+        return new CacheObject<K, V>(key, value, expire);
+    }
+
+    /**
+     * 放入缓存对象，调用方需持有写锁
+     *
+     * @param co
+     */
+    protected void putObject(CacheObject<K, V> co) {
+        CacheObject<K, V> old = cacheMap.put(co.key, co);
+        totalWeight += co.weight;
+        if (old != null) {
+            totalWeight -= old.weight;
+            timerWheel.deschedule(old);
+            onRemove(old);
+            afterRemoval(old, RemovalCause.REPLACED);
+        }
+        if (co.liveTime != 0) {
+            timerWheel.schedule(co);
+        }
+        onPut(co);
+    }
+
+    /**
+     * 删除缓存对象，调用方需持有写锁
+     *
+     * @param key
+     * @param cause 删除原因
+     * @return 被删除的对象
+     */
+    protected CacheObject<K, V> removeObject(K key, RemovalCause cause) {
+        CacheObject<K, V> co = cacheMap.remove(key);
+        if (co != null) {
+            totalWeight -= co.weight;
+            timerWheel.deschedule(co);
+            onRemove(co);
+            afterRemoval(co, cause);
+        }
+        return co;
+    }
+
+    /**
+     * 对象删除后的统计
+     *
+     * @param co
+     * @param cause
+     */
+    private void afterRemoval(CacheObject<K, V> co, RemovalCause cause) {
+        StatsCounter counter = statsCounter;
+        if (counter != null && cause.isEviction()) {
+            counter.recordEviction(cause);
+        }
+        if (removalListener != null || (evictionConsumer != null && cause == RemovalCause.SIZE)) {
+            pendingNotifications.add(new RemovalNotification<>(co.key, co.value(), cause,
+                    co.liveTime == 0 ? 0 : co.expireTime));
+        }
+    }
+
+    /**
+     * 释放写锁并分发写锁下产生的删除通知
+     */
+    private void unlockWrite() {
+        writeLock.unlock();
+        if (!pendingNotifications.isEmpty()) {
+            dispatchNotifications();
+        }
+    }
+
+    /**
+     * 取出所有待分发的通知，作为一个任务提交给执行器，保持同一批通知的顺序
+     */
+    private void dispatchNotifications() {
+        List<RemovalNotification<K, V>> notifications = new ArrayList<>();
+        RemovalNotification<K, V> notification;
+        while ((notification = pendingNotifications.poll()) != null) {
+            notifications.add(notification);
+        }
+        if (notifications.isEmpty()) {
+            return;
+        }
+        EntryConsumer<? super K, ? super V> consumer = evictionConsumer;
+        if (consumer != null) {
+            List<RemovalNotification<K, V>> evictions = new ArrayList<>(notifications.size());
+            for (RemovalNotification<K, V> n : notifications) {
+                //值已被回收的无法写入下一级
+                if (n.cause == RemovalCause.SIZE && n.value != null) {
+                    evictions.add(n);
+                }
+            }
+            if (!evictions.isEmpty()) {
+                evictionExecutor.execute(() -> {
+                    for (RemovalNotification<K, V> n : evictions) {
+                        try {
+                            consumer.accept(n.key, n.value, n.expireTime);
+                        } catch (RuntimeException e) {
+                            LOGGER.log(Level.WARNING, "淘汰对象转交失败, key:" + n.key, e);
+                        }
+                    }
+                });
+            }
+        }
+        RemovalListener<? super K, ? super V> listener = removalListener;
+        if (listener == null) {
+            return;
+        }
+        removalExecutor.execute(() -> {
+            for (RemovalNotification<K, V> n : notifications) {
+                try {
+                    listener.onRemoval(n.key, n.value, n.cause);
+                } catch (RuntimeException e) {
+                    //回调失败只记录日志，不影响同批的其它回调，执行器是当前线程时也不会让已成功的写操作抛出异常
+                    LOGGER.log(Level.WARNING, "缓存删除回调执行失败, key:" + n.key + ", cause:" + n.cause, e);
+                }
+            }
+        });
+    }
+
+    /**
+     * 推进时间轮，删除已过期和值已被回收的对象，调用方需持有写锁
+     *
+     * @return 删除的对象数
+     */
+    protected int expireEntries() {
+        int purged = purgeCollected();
+        if (!isNeedClearExpiredObject()) {
+            return purged;
+        }
+        int[] count = {purged};
+        timerWheel.advance(ticker.read(), node -> {
+            @SuppressWarnings("unchecked")
+            CacheObject<K, V> co = (CacheObject<K, V>) node;
+            if (cacheMap.get(co.key) == co) {
+                removeObject(co.key, RemovalCause.EXPIRED);
+                count[0]++;
+            }
+        });
+        return count[0];
+    }
+
+    /**
+     * 删除引用队列中值已被回收的对象，调用方需持有写锁
+     *
+     * @return 删除的对象数
+     */
+    @SuppressWarnings("unchecked")
+    private int purgeCollected() {
+        int count = 0;
+        Reference<?> reference;
+        while ((reference = referenceQueue.poll()) != null) {
+            CacheObject<K, V> co = (CacheObject<K, V>) ((ValueReference) reference).getCacheObject();
+            //对象可能已被删除或替换
+            if (cacheMap.get(co.key) == co) {
+                removeObject(co.key, RemovalCause.COLLECTED);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 清除key对应值的引用并放入引用队列，模拟值被GC回收，用于测试
+     *
+     * @param key the key
+     * @return 值为软引用或弱引用且成功放入引用队列时返回true
+     */
+    boolean collectValue(K key) {
+        readLock.lock();
+        try {
+            CacheObject<K, V> co = cacheMap.get(key);
+            if (co == null || !(co.cachedObject instanceof ValueReference)) {
+                return false;
+            }
+            Reference<?> reference = (Reference<?>) co.cachedObject;
+            //jdk8的enqueue不会清除引用
+            reference.clear();
+            return reference.enqueue();
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * 创建值的引用
+     *
+     * @param co    所属的缓存对象
+     * @param value the value
+     * @return
+     */
+    private Reference<Object> newValueReference(CacheObject<?, ?> co, Object value) {
+        if (valueStrength == ValueStrength.WEAK) {
+            return new WeakValueReference(co, value, referenceQueue);
+        }
+        return new SoftValueReference(co, value, referenceQueue);
+    }
+
+    /**
+     * 对象放入缓存后回调，在写锁下调用
+     *
+     * @param co
+     */
+    protected void onPut(CacheObject<K, V> co) {
+    }
+
+    /**
+     * 对象从缓存删除后回调，在写锁下调用
+     *
+     * @param co
+     */
+    protected void onRemove(CacheObject<K, V> co) {
+    }
+
     /**
      * 获取缓存对象
-     * 
+     *
      * @param key
      * @return
      */
     public V get(K key) {
+        CacheObject<K, V> co = getCacheObject(key, true);
+        return co == null ? null : co.getObject();
+    }
+
+    /**
+     * 批量获取缓存对象，整批只加一次读锁
+     *
+     * @param keys
+     * @return
+     */
+    @Override
+    public Map<K, V> getAll(Collection<? extends K> keys) {
+        Map<K, CacheObject<K, V>> cacheObjects = getCacheObjects(keys, true);
+        Map<K, V> result = new LinkedHashMap<>(cacheObjects.size() * 4 / 3 + 1);
+        for (Map.Entry<K, CacheObject<K, V>> entry : cacheObjects.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().getObject());
+        }
+        return result;
+    }
+
+    /**
+     * 批量获取未过期的缓存对象，结果顺序与keys一致，读到的过期对象在一次写锁下删除
+     *
+     * @param keys
+     * @param recordStats 是否计入命中统计
+     * @return
+     */
+    Map<K, CacheObject<K, V>> getCacheObjects(Collection<? extends K> keys, boolean recordStats) {
+        StatsCounter counter = recordStats ? statsCounter : null;
+        Map<K, CacheObject<K, V>> result = new LinkedHashMap<>(keys.size() * 4 / 3 + 1);
+        List<CacheObject<K, V>> expired = null;
+        boolean drain = false;
         readLock.lock();
         try {
-            CacheObject<K, V> co = cacheMap.get(key);
+            for (K key : keys) {
+                CacheObject<K, V> co = cacheMap.get(key);
+                if (co == null) {
+                    continue;
+                }
+                if (co.isExpired() || co.isCollected()) {
+                    if (expired == null) {
+                        expired = new ArrayList<>();
+                    }
+                    expired.add(co);
+                    continue;
+                }
+                if (isAccessOrder() && readBuffer.offer(co)) {
+                    drain = true;
+                }
+                result.put(key, co);
+            }
+        } finally {
+            readLock.unlock();
+            if (drain) {
+                tryDrainReadBuffer();
+            }
+        }
+        if (counter != null) {
+            counter.recordHits(result.size());
+            counter.recordMisses(keys.size() - result.size());
+        }
+        if (expired != null) {
+            writeLock.lock();
+            try {
+                for (CacheObject<K, V> co : expired) {
+                    if (cacheMap.get(co.key) == co) {
+                        removeObject(co.key, co.isExpired() ? RemovalCause.EXPIRED : RemovalCause.COLLECTED);
+                    }
+                }
+            } finally {
+                unlockWrite();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 获取未过期的缓存对象
+     * <p>
+     * 读锁下只做查找，不修改缓存结构；访问记录写入读缓冲区，由持有写锁的线程批量回放
+     *
+     * @param key
+     * @param recordStats 是否计入命中统计
+     * @return
+     */
+    CacheObject<K, V> getCacheObject(K key, boolean recordStats) {
+        StatsCounter counter = recordStats ? statsCounter : null;
+        CacheObject<K, V> co;
+        boolean drain = false;
+        readLock.lock();
+        try {
+            co = cacheMap.get(key);
             if (co == null) {
+                if (counter != null) {
+                    counter.recordMiss();
+                }
                 return null;
             }
-            if (co.isExpired() == true) {
-                cacheMap.remove(key);
-                return null;
+            if (!co.isExpired() && !co.isCollected()) {
+                if (isAccessOrder()) {
+                    drain = readBuffer.offer(co);
+                }
+                if (counter != null) {
+                    counter.recordHit();
+                }
+                return co;
             }
-
-            return co.getObject();
         } finally {
             readLock.unlock();
+            if (drain) {
+                tryDrainReadBuffer();
+            }
+        }
+        if (counter != null) {
+            counter.recordMiss();
+        }
+
+        //过期或值已被回收的对象需要在写锁下删除
+        writeLock.lock();
+        try {
+            if (cacheMap.get(key) == co) {
+                removeObject(key, co.isExpired() ? RemovalCause.EXPIRED : RemovalCause.COLLECTED);
+            }
+        } finally {
+            unlockWrite();
+        }
+        return null;
+    }
+
+    /**
+     * 是否需要记录访问顺序，需要时读操作会被记录并回放到{@link #onAccess(CacheObject)}
+     *
+     * @return
+     */
+    protected boolean isAccessOrder() {
+        return false;
+    }
+
+    /**
+     * 回放一次读操作，在写锁下调用
+     *
+     * @param co
+     */
+    protected void onAccess(CacheObject<K, V> co) {
+    }
+
+    /**
+     * 尝试回放读缓冲区，写锁被占用时直接放弃，由下一次写操作回放
+     */
+    private void tryDrainReadBuffer() {
+        if (writeLock.tryLock()) {
+            try {
+                drainReadBuffer();
+            } finally {
+                unlockWrite();
+            }
+        }
+    }
+
+    /**
+     * 回放读缓冲区，调用方需持有写锁
+     */
+    protected void drainReadBuffer() {
+        if (isAccessOrder()) {
+            readBuffer.drainTo(this::onAccess);
         }
     }
 
     /**
-     * 回收对象
+     * 回收对象，先删除过期对象，仍然满时再按淘汰策略删除
      *
      * @return
      */
     public final int eliminate() {
         writeLock.lock();
         try {
-            return eliminateCache();
+            drainReadBuffer();
+            int count = expireEntries();
+            while (isFull()) {
+                int eliminated = eliminateCache();
+                if (eliminated == 0) {
+                    break;
+                }
+                count += eliminated;
+                if (weigher == null) {
+                    break;
+                }
+            }
+            return count;
         } finally {
-            writeLock.unlock();
+            unlockWrite();
         }
     }
 
     /**
-     * 淘汰对象具体实现
+     * 回放读缓冲区并删除过期对象，后台清理任务定时调用
+     */
+    @Override
+    public void cleanUp() {
+        writeLock.lock();
+        try {
+            drainReadBuffer();
+            expireEntries();
+        } finally {
+            unlockWrite();
+        }
+    }
+
+    /**
+     * 开启后台定时清理过期对象，否则过期对象只在写操作和读取到时才会被删除
+     *
+     * @param interval 清理间隔(毫秒)
+     */
+    public synchronized void startExpirySweeper(long interval) {
+        if (interval <= 0) {
+            throw new IllegalArgumentException("interval必须大于0");
+        }
+        stopExpirySweeper();
+        expirySweeper = ExpirySweeper.start(this, interval);
+    }
+
+    /**
+     * 停止后台定时清理
+     */
+    public synchronized void stopExpirySweeper() {
+        if (expirySweeper != null) {
+            expirySweeper.stop();
+            expirySweeper = null;
+        }
+    }
+
+    /**
+     * 按淘汰策略删除对象的具体实现，过期对象已由时间轮删除，在写锁下调用
      *
      * @return
      */
@@ -201,6 +1251,9 @@ public abstract class AbstractCacheMap<K, V> implements CacheMap<K, V> {
      * @return
      */
     public boolean isFull() {
+        if (weigher != null && totalWeight >= maximumWeight) {
+            return true;
+        }
         //无限制
         if (cacheSize == 0) {
             return false;
@@ -216,9 +1269,26 @@ public abstract class AbstractCacheMap<K, V> implements CacheMap<K, V> {
     public void remove(K key) {
         writeLock.lock();
         try {
-            cacheMap.remove(key);
+            removeObject(key, RemovalCause.EXPLICIT);
+        } finally {
+            unlockWrite();
+        }
+    }
+
+    /**
+     * 批量移除缓存对象，整批只加一次写锁
+     *
+     * @param keys
+     */
+    @Override
+    public void removeAll(Collection<? extends K> keys) {
+        writeLock.lock();
+        try {
+            for (K key : keys) {
+                removeObject(key, RemovalCause.EXPLICIT);
+            }
         } finally {
-            writeLock.unlock();
+            unlockWrite();
         }
     }
 
@@ -228,9 +1298,16 @@ public abstract class AbstractCacheMap<K, V> implements CacheMap<K, V> {
     public void clear() {
         writeLock.lock();
         try {
+            drainReadBuffer();
+            for (CacheObject<K, V> co : cacheMap.values()) {
+                onRemove(co);
+                afterRemoval(co, RemovalCause.EXPLICIT);
+            }
             cacheMap.clear();
+            timerWheel.clear();
+            totalWeight = 0;
         } finally {
-            writeLock.unlock();
+            unlockWrite();
         }
     }
 
@@ -250,4 +1327,69 @@ public abstract class AbstractCacheMap<K, V> implements CacheMap<K, V> {
     public boolean isEmpty() {
         return size() == 0;
     }
+
+    /**
+     * 值的软引用或弱引用，被回收后通过引用队列找到所属的缓存对象
+     */
+    private interface ValueReference {
+
+        Object getCacheObject();
+    }
+
+    /**
+     * 值的软引用
+     */
+    private final class SoftValueReference extends SoftReference<Object> implements ValueReference {
+
+        private final CacheObject<?, ?> cacheObject;
+
+        SoftValueReference(CacheObject<?, ?> cacheObject, Object value, ReferenceQueue<Object> queue) {
+            super(value, queue);
+            this.cacheObject = cacheObject;
+        }
+
+        @Override
+        public Object getCacheObject() {
+            return cacheObject;
+        }
+    }
+
+    /**
+     * 值的弱引用
+     */
+    private final class WeakValueReference extends WeakReference<Object> implements ValueReference {
+
+        private final CacheObject<?, ?> cacheObject;
+
+        WeakValueReference(CacheObject<?, ?> cacheObject, Object value, ReferenceQueue<Object> queue) {
+            super(value, queue);
+            this.cacheObject = cacheObject;
+        }
+
+        @Override
+        public Object getCacheObject() {
+            return cacheObject;
+        }
+    }
+
+    /**
+     * 删除通知
+     */
+    private static final class RemovalNotification<K, V> {
+
+        final K key;
+
+        final V value;
+
+        final RemovalCause cause;
+
+        final long expireTime;
+
+        RemovalNotification(K key, V value, RemovalCause cause, long expireTime) {
+            this.key = key;
+            this.value = value;
+            this.cause = cause;
+            this.expireTime = expireTime;
+        }
+    }
 }
@@ -9,6 +9,10 @@
 
 package com.sonsure.commons.cache;
 
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 /**
  * 缓存MAP接口
  *
@@ -55,6 +59,45 @@ public interface CacheMap<K, V> {
      */
     public V get(K key);
 
+    /**
+     * 批量查找缓存对象，结果只包含找到的key，顺序与keys一致
+     *
+     * @param keys
+     * @return
+     */
+    public default Map<K, V> getAll(Collection<? extends K> keys) {
+        Map<K, V> result = new LinkedHashMap<>();
+        for (K key : keys) {
+            V value = get(key);
+            if (value != null) {
+                result.put(key, value);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 批量添加缓存对象,其在缓存中生存时间为默认值
+     *
+     * @param map
+     */
+    public default void putAll(Map<? extends K, ? extends V> map) {
+        for (Map.Entry<? extends K, ? extends V> entry : map.entrySet()) {
+            put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * 批量删除缓存对象
+     *
+     * @param keys
+     */
+    public default void removeAll(Collection<? extends K> keys) {
+        for (K key : keys) {
+            remove(key);
+        }
+    }
+
     /**
      * 淘汰对象
      *
@@ -0,0 +1,229 @@
+/*
+ * Copyright (c) 2020. www.sonsure.com Inc. All rights reserved.
+ * You may obtain more information at
+ *
+ *   http://www.sonsure.com
+ *
+ * Designed By Selfly Lee (selfly@live.com)
+ */
+
+package com.sonsure.commons.cache;
+
+import com.sonsure.commons.exception.SonsureCommonsException;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * 缓存快照的读写
+ * <p>
+ * 文件格式：魔数、版本、写入时缓存{@link Ticker}的时间，之后每个对象依次为key长度、key、value长度、value、剩余存活时间(毫秒，0表示永不过期)，
+ * keyLen为-1表示结束。写入时按{@link AbstractCacheMap#forEachEntry(EntryConsumer)}分批取出对象，在锁外序列化写出，
+ * 不复制整个缓存，也不会在写文件期间阻塞缓存的读写；
+ * 读取时在当前线程顺序读出字节，按批提交给执行器并行反序列化，再按文件中的顺序放入缓存，LRU等策略的先后顺序得以保留。
+ * 剩余存活时间会扣除快照写入到读取之间经过的时间，经过的时间和剩余存活时间都按缓存的{@link Ticker}计算，已过期的对象不会放入。
+ *
+ * @author liyd
+ */
+final class CacheSnapshot {
+
+    private static final int MAGIC = 0x53434D53;
+
+    private static final int VERSION = 1;
+
+    private static final int END = -1;
+
+    /**
+     * 每批反序列化的对象数
+     */
+    private static final int BATCH_SIZE = 256;
+
+    private CacheSnapshot() {
+    }
+
+    /**
+     * 写入快照
+     *
+     * @param cacheMap        the cache map
+     * @param out             输出流，不会被关闭
+     * @param keySerializer   key序列化
+     * @param valueSerializer value序列化
+     * @return 写入的对象数
+     */
+    static <K, V> int write(AbstractCacheMap<K, V> cacheMap, OutputStream out, Serializer<K> keySerializer,
+                            Serializer<V> valueSerializer) {
+        DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(out, 64 * 1024));
+        int[] count = new int[1];
+        try {
+            dos.writeInt(MAGIC);
+            dos.writeInt(VERSION);
+            Ticker ticker = cacheMap.getTicker();
+            dos.writeLong(ticker.read());
+            cacheMap.forEachEntry((key, value, expireTime) -> {
+                long remaining = 0;
+                if (expireTime != 0) {
+                    remaining = expireTime - ticker.read();
+                    if (remaining <= 0) {
+                        return;
+                    }
+                }
+                byte[] keyBytes = keySerializer.serialize(key);
+                byte[] valueBytes = valueSerializer.serialize(value);
+                try {
+                    dos.writeInt(keyBytes.length);
+                    dos.write(keyBytes);
+                    dos.writeInt(valueBytes.length);
+                    dos.write(valueBytes);
+                    dos.writeLong(remaining);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                count[0]++;
+            });
+            dos.writeInt(END);
+            dos.flush();
+        } catch (IOException | UncheckedIOException e) {
+            throw new SonsureCommonsException("写入缓存快照失败", e);
+        }
+        return count[0];
+    }
+
+    /**
+     * 读取快照放入缓存
+     *
+     * @param cacheMap        the cache map
+     * @param in              输入流，不会被关闭
+     * @param keySerializer   key序列化
+     * @param valueSerializer value序列化
+     * @param executor        反序列化的执行器
+     * @return 放入的对象数
+     */
+    static <K, V> int load(AbstractCacheMap<K, V> cacheMap, InputStream in, Serializer<K> keySerializer,
+                           Serializer<V> valueSerializer, Executor executor) {
+        DataInputStream dis = new DataInputStream(new BufferedInputStream(in, 64 * 1024));
+        //限制同时在反序列化的批数，避免快照比内存大时全部读入
+        int maxInFlight = Math.max(2, ForkJoinPool.getCommonPoolParallelism() * 2);
+        ArrayDeque<CompletableFuture<List<Entry<K, V>>>> inFlight = new ArrayDeque<>();
+        int count = 0;
+        try {
+            if (dis.readInt() != MAGIC) {
+                throw new SonsureCommonsException("不是缓存快照文件");
+            }
+            int version = dis.readInt();
+            if (version != VERSION) {
+                throw new SonsureCommonsException("不支持的缓存快照版本:" + version);
+            }
+            long elapsed = Math.max(0, cacheMap.getTicker().read() - dis.readLong());
+            boolean end = false;
+            while (!end) {
+                List<byte[]> records = new ArrayList<>(BATCH_SIZE * 2);
+                List<Long> expires = new ArrayList<>(BATCH_SIZE);
+                while (expires.size() < BATCH_SIZE) {
+                    int keyLen = dis.readInt();
+                    if (keyLen == END) {
+                        end = true;
+                        break;
+                    }
+                    byte[] keyBytes = readBytes(dis, keyLen);
+                    byte[] valueBytes = readBytes(dis, dis.readInt());
+                    long remaining = dis.readLong();
+                    if (remaining != 0) {
+                        remaining -= elapsed;
+                        if (remaining <= 0) {
+                            continue;
+                        }
+                    }
+                    records.add(keyBytes);
+                    records.add(valueBytes);
+                    expires.add(remaining);
+                }
+                if (expires.isEmpty()) {
+                    continue;
+                }
+                inFlight.add(CompletableFuture.supplyAsync(
+                        () -> deserialize(records, expires, keySerializer, valueSerializer), executor));
+                if (inFlight.size() >= maxInFlight) {
+                    count += putEntries(cacheMap, inFlight.poll());
+                }
+            }
+            while (!inFlight.isEmpty()) {
+                count += putEntries(cacheMap, inFlight.poll());
+            }
+        } catch (EOFException e) {
+            throw new SonsureCommonsException("缓存快照文件不完整", e);
+        } catch (IOException e) {
+            throw new SonsureCommonsException("读取缓存快照失败", e);
+        } finally {
+            for (CompletableFuture<?> future : inFlight) {
+                future.cancel(false);
+            }
+        }
+        return count;
+    }
+
+    private static byte[] readBytes(DataInputStream dis, int len) throws IOException {
+        if (len < 0) {
+            throw new SonsureCommonsException("缓存快照文件已损坏");
+        }
+        byte[] bytes = new byte[len];
+        dis.readFully(bytes);
+        return bytes;
+    }
+
+    private static <K, V> List<Entry<K, V>> deserialize(List<byte[]> records, List<Long> expires,
+                                                         Serializer<K> keySerializer, Serializer<V> valueSerializer) {
+        List<Entry<K, V>> entries = new ArrayList<>(expires.size());
+        for (int i = 0; i < expires.size(); i++) {
+            K key = keySerializer.deserialize(records.get(i * 2));
+            V value = valueSerializer.deserialize(records.get(i * 2 + 1));
+            entries.add(new Entry<>(key, value, expires.get(i)));
+        }
+        return entries;
+    }
+
+    private static <K, V> int putEntries(AbstractCacheMap<K, V> cacheMap,
+                                         CompletableFuture<List<Entry<K, V>>> future) {
+        List<Entry<K, V>> entries;
+        try {
+            entries = future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+        for (Entry<K, V> entry : entries) {
+            cacheMap.put(entry.key, entry.value, entry.expire);
+        }
+        return entries.size();
+    }
+
+    private static final class Entry<K, V> {
+
+        final K key;
+
+        final V value;
+
+        final long expire;
+
+        Entry(K key, V value, long expire) {
+            this.key = key;
+            this.value = value;
+            this.expire = expire;
+        }
+    }
+}
@@ -0,0 +1,240 @@
+/*
+ * Copyright (c) 2020. www.sonsure.com Inc. All rights reserved.
+ * You may obtain more information at
+ *
+ *   http://www.sonsure.com
+ *
+ * Designed By Selfly Lee (selfly@live.com)
+ */
+
+package com.sonsure.commons.cache;
+
+import java.io.Serializable;
+
+/**
+ * 缓存统计快照，不可变
+ *
+ * @author liyd
+ */
+public final class CacheStats implements Serializable {
+
+    private static final long serialVersionUID = -6182637352406158374L;
+
+    /**
+     * 未开启统计时返回的空快照
+     */
+    public static final CacheStats EMPTY = new CacheStats(0, 0, 0, 0, 0, 0, 0, 0, 0);
+
+    private final long hitCount;
+
+    private final long missCount;
+
+    private final long putCount;
+
+    private final long sizeEvictionCount;
+
+    private final long expiredEvictionCount;
+
+    private final long collectedEvictionCount;
+
+    private final long loadSuccessCount;
+
+    private final long loadFailureCount;
+
+    private final long totalLoadTime;
+
+    public CacheStats(long hitCount, long missCount, long putCount, long sizeEvictionCount, long expiredEvictionCount,
+                      long collectedEvictionCount, long loadSuccessCount, long loadFailureCount, long totalLoadTime) {
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.putCount = putCount;
+        this.sizeEvictionCount = sizeEvictionCount;
+        this.expiredEvictionCount = expiredEvictionCount;
+        this.collectedEvictionCount = collectedEvictionCount;
+        this.loadSuccessCount = loadSuccessCount;
+        this.loadFailureCount = loadFailureCount;
+        this.totalLoadTime = totalLoadTime;
+    }
+
+    /**
+     * 请求次数
+     *
+     * @return the request count
+     */
+    public long getRequestCount() {
+        return hitCount + missCount;
+    }
+
+    /**
+     * 命中次数
+     *
+     * @return the hit count
+     */
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * 未命中次数
+     *
+     * @return the miss count
+     */
+    public long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * 命中率，没有请求时为1
+     *
+     * @return the hit rate
+     */
+    public double getHitRate() {
+        long requestCount = getRequestCount();
+        return requestCount == 0 ? 1.0 : (double) hitCount / requestCount;
+    }
+
+    /**
+     * 未命中率，没有请求时为0
+     *
+     * @return the miss rate
+     */
+    public double getMissRate() {
+        long requestCount = getRequestCount();
+        return requestCount == 0 ? 0.0 : (double) missCount / requestCount;
+    }
+
+    /**
+     * 放入次数
+     *
+     * @return the put count
+     */
+    public long getPutCount() {
+        return putCount;
+    }
+
+    /**
+     * 淘汰次数，包括超过大小、过期和值被GC回收
+     *
+     * @return the eviction count
+     */
+    public long getEvictionCount() {
+        return sizeEvictionCount + expiredEvictionCount + collectedEvictionCount;
+    }
+
+    /**
+     * 超过缓存大小被淘汰的次数
+     *
+     * @return the size eviction count
+     */
+    public long getSizeEvictionCount() {
+        return sizeEvictionCount;
+    }
+
+    /**
+     * 过期被删除的次数
+     *
+     * @return the expired eviction count
+     */
+    public long getExpiredEvictionCount() {
+        return expiredEvictionCount;
+    }
+
+    /**
+     * 软引用或弱引用的值被GC回收后删除的次数
+     *
+     * @return the collected eviction count
+     */
+    public long getCollectedEvictionCount() {
+        return collectedEvictionCount;
+    }
+
+    /**
+     * 加载成功次数
+     *
+     * @return the load success count
+     */
+    public long getLoadSuccessCount() {
+        return loadSuccessCount;
+    }
+
+    /**
+     * 加载失败次数
+     *
+     * @return the load failure count
+     */
+    public long getLoadFailureCount() {
+        return loadFailureCount;
+    }
+
+    /**
+     * 加载总耗时(纳秒)
+     *
+     * @return the total load time
+     */
+    public long getTotalLoadTime() {
+        return totalLoadTime;
+    }
+
+    /**
+     * 平均每次加载耗时(纳秒)
+     *
+     * @return the average load penalty
+     */
+    public double getAverageLoadPenalty() {
+        long loadCount = loadSuccessCount + loadFailureCount;
+        return loadCount == 0 ? 0.0 : (double) totalLoadTime / loadCount;
+    }
+
+    /**
+     * 两次快照之差，用于计算一段时间内的统计
+     *
+     * @param other 更早的快照
+     * @return the cache stats
+     */
+    public CacheStats minus(CacheStats other) {
+        return new CacheStats(
+                Math.max(0, hitCount - other.hitCount),
+                Math.max(0, missCount - other.missCount),
+                Math.max(0, putCount - other.putCount),
+                Math.max(0, sizeEvictionCount - other.sizeEvictionCount),
+                Math.max(0, expiredEvictionCount - other.expiredEvictionCount),
+                Math.max(0, collectedEvictionCount - other.collectedEvictionCount),
+                Math.max(0, loadSuccessCount - other.loadSuccessCount),
+                Math.max(0, loadFailureCount - other.loadFailureCount),
+                Math.max(0, totalLoadTime - other.totalLoadTime));
+    }
+
+    /**
+     * 两次快照之和，用于合并多个缓存的统计
+     *
+     * @param other the other
+     * @return the cache stats
+     */
+    public CacheStats plus(CacheStats other) {
+        return new CacheStats(
+                hitCount + other.hitCount,
+                missCount + other.missCount,
+                putCount + other.putCount,
+                sizeEvictionCount + other.sizeEvictionCount,
+                expiredEvictionCount + other.expiredEvictionCount,
+                collectedEvictionCount + other.collectedEvictionCount,
+                loadSuccessCount + other.loadSuccessCount,
+                loadFailureCount + other.loadFailureCount,
+                totalLoadTime + other.totalLoadTime);
+    }
+
+    @Override
+    public String toString() {
+        return "CacheStats{" +
+                "hitCount=" + hitCount +
+                ", missCount=" + missCount +
+                ", putCount=" + putCount +
+                ", sizeEvictionCount=" + sizeEvictionCount +
+                ", expiredEvictionCount=" + expiredEvictionCount +
+                ", collectedEvictionCount=" + collectedEvictionCount +
+                ", loadSuccessCount=" + loadSuccessCount +
+                ", loadFailureCount=" + loadFailureCount +
+                ", totalLoadTime=" + totalLoadTime +
+                '}';
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2020. www.sonsure.com Inc. All rights reserved.
+ * You may obtain more information at
+ *
+ *   http://www.sonsure.com
+ *
+ * Designed By Selfly Lee (selfly@live.com)
+ */
+
+package com.sonsure.commons.cache;
+
+/**
+ * 缓存统计的JMX接口
+ *
+ * @author liyd
+ */
+public interface CacheStatsMXBean {
+
+    /**
+     * 当前缓存大小
+     *
+     * @return the size
+     */
+    int getSize();
+
+    /**
+     * 最大缓存大小
+     *
+     * @return the cache size
+     */
+    int getCacheSize();
+
+    long getRequestCount();
+
+    long getHitCount();
+
+    long getMissCount();
+
+    double getHitRate();
+
+    long getPutCount();
+
+    long getEvictionCount();
+
+    long getSizeEvictionCount();
+
+    long getExpiredEvictionCount();
+
+    long getCollectedEvictionCount();
+
+    long getLoadSuccessCount();
+
+    long getLoadFailureCount();
+
+    /**
+     * 平均每次加载耗时(纳秒)
+     *
+     * @return the average load penalty
+     */
+    double getAverageLoadPenalty();
+}
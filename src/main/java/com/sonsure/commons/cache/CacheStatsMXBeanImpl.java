@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2020. www.sonsure.com Inc. All rights reserved.
+ * You may obtain more information at
+ *
+ *   http://www.sonsure.com
+ *
+ * Designed By Selfly Lee (selfly@live.com)
+ */
+
+package com.sonsure.commons.cache;
+
+/**
+ * 缓存统计的JMX实现，每次读取属性都取最新快照
+ *
+ * @author liyd
+ */
+final class CacheStatsMXBeanImpl implements CacheStatsMXBean {
+
+    private final AbstractCacheMap<?, ?> cacheMap;
+
+    CacheStatsMXBeanImpl(AbstractCacheMap<?, ?> cacheMap) {
+        this.cacheMap = cacheMap;
+    }
+
+    @Override
+    public int getSize() {
+        return cacheMap.size();
+    }
+
+    @Override
+    public int getCacheSize() {
+        return cacheMap.getCacheSize();
+    }
+
+    @Override
+    public long getRequestCount() {
+        return cacheMap.getStats().getRequestCount();
+    }
+
+    @Override
+    public long getHitCount() {
+        return cacheMap.getStats().getHitCount();
+    }
+
+    @Override
+    public long getMissCount() {
+        return cacheMap.getStats().getMissCount();
+    }
+
+    @Override
+    public double getHitRate() {
+        return cacheMap.getStats().getHitRate();
+    }
+
+    @Override
+    public long getPutCount() {
+        return cacheMap.getStats().getPutCount();
+    }
+
+    @Override
+    public long getEvictionCount() {
+        return cacheMap.getStats().getEvictionCount();
+    }
+
+    @Override
+    public long getSizeEvictionCount() {
+        return cacheMap.getStats().getSizeEvictionCount();
+    }
+
+    @Override
+    public long getExpiredEvictionCount() {
+        return cacheMap.getStats().getExpiredEvictionCount();
+    }
+
+    @Override
+    public long getCollectedEvictionCount() {
+        return cacheMap.getStats().getCollectedEvictionCount();
+    }
+
+    @Override
+    public long getLoadSuccessCount() {
+        return cacheMap.getStats().getLoadSuccessCount();
+    }
+
+    @Override
+    public long getLoadFailureCount() {
+        return cacheMap.getStats().getLoadFailureCount();
+    }
+
+    @Override
+    public double getAverageLoadPenalty() {
+        return cacheMap.getStats().getAverageLoadPenalty();
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright (c) 2020. www.sonsure.com Inc. All rights reserved.
+ * You may obtain more information at
+ *
+ *   http://www.sonsure.com
+ *
+ * Designed By Selfly Lee (selfly@live.com)
+ */
+
+package com.sonsure.commons.cache;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 由后台线程定时更新的粗粒度时钟
+ *
+ * @author liyd
+ */
+final class CoarseTicker implements Ticker {
+
+    static final CoarseTicker INSTANCE = new CoarseTicker();
+
+    /**
+     * 更新间隔
+     */
+    private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private volatile long now = System.currentTimeMillis();
+
+    private CoarseTicker() {
+        Thread thread = new Thread(this::tick, "sonsure-cache-ticker");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void tick() {
+        while (true) {
+            now = System.currentTimeMillis();
+            LockSupport.parkNanos(this, TICK_NANOS);
+        }
+    }
+
+    @Override
+    public long read() {
+        return now;
+    }
+}
@@ -0,0 +1,466 @@
+/*
+ * Copyright (c) 2020. www.sonsure.com Inc. All rights reserved.
+ * You may obtain more information at
+ *
+ *   http://www.sonsure.com
+ *
+ * Designed By Selfly Lee (selfly@live.com)
+ */
+
+package com.sonsure.commons.cache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * 分段锁的并发缓存实现
+ * <p>
+ * 按key的hash将数据分散到多个独立加锁的段中，每个段是一个指定淘汰策略的{@link AbstractCacheMap}，
+ * 不同段上的写操作互不阻塞。淘汰在段内进行，因此LRU/LFU/FIFO顺序只在段内严格成立。
+ *
+ * @author liyd
+ */
+public class ConcurrentCacheMap<K, V> implements CacheMap<K, V> {
+
+    /**
+     * 默认并发级别
+     */
+    private static final int DEFAULT_CONCURRENCY_LEVEL = 16;
+
+    /**
+     * 最大段数
+     */
+    private static final int MAX_SEGMENTS = 1 << 16;
+
+    /**
+     * 段
+     */
+    private final AbstractCacheMap<K, V>[] segments;
+
+    /**
+     * 计算段下标时hash右移的位数，使用高位避免和段内HashMap使用的低位相关
+     */
+    private final int segmentShift;
+
+    /**
+     * 段下标掩码
+     */
+    private final int segmentMask;
+
+    /**
+     * 淘汰策略
+     */
+    private final EvictionPolicy evictionPolicy;
+
+    /**
+     * 最大缓存大小 , 0表示无限制
+     */
+    private final int cacheSize;
+
+    /**
+     * 默认过期时间, 0表示永不过期
+     */
+    private final long defaultExpire;
+
+    /**
+     * 最大总权重，0表示未按权重限制
+     */
+    private long maximumWeight;
+
+    /**
+     * 构造方法
+     *
+     * @param evictionPolicy the eviction policy
+     * @param cacheSize      the cache size
+     * @param defaultExpire  the default expire
+     */
+    public ConcurrentCacheMap(EvictionPolicy evictionPolicy, int cacheSize, long defaultExpire) {
+        this(evictionPolicy, cacheSize, defaultExpire, DEFAULT_CONCURRENCY_LEVEL);
+    }
+
+    /**
+     * 构造方法
+     *
+     * @param evictionPolicy   the eviction policy
+     * @param cacheSize        the cache size
+     * @param defaultExpire    the default expire
+     * @param concurrencyLevel 预计并发写入的线程数，会向上取整为2的幂作为段数
+     */
+    @SuppressWarnings("unchecked")
+    public ConcurrentCacheMap(EvictionPolicy evictionPolicy, int cacheSize, long defaultExpire, int concurrencyLevel) {
+        if (evictionPolicy == null) {
+            throw new IllegalArgumentException("evictionPolicy不能为空");
+        }
+        if (concurrencyLevel <= 0) {
+            throw new IllegalArgumentException("concurrencyLevel必须大于0");
+        }
+        this.evictionPolicy = evictionPolicy;
+        this.cacheSize = cacheSize;
+        this.defaultExpire = defaultExpire;
+
+        int level = Math.min(concurrencyLevel, MAX_SEGMENTS);
+        //有大小限制时每段至少容纳一个元素
+        if (cacheSize > 0) {
+            level = Math.min(level, cacheSize);
+        }
+        int shift = 0;
+        int segmentCount = 1;
+        while (segmentCount < level) {
+            segmentCount <<= 1;
+            shift++;
+        }
+        if (cacheSize > 0 && segmentCount > cacheSize) {
+            segmentCount >>>= 1;
+            shift--;
+        }
+        this.segmentShift = 32 - shift;
+        this.segmentMask = segmentCount - 1;
+        this.segments = (AbstractCacheMap<K, V>[]) new AbstractCacheMap<?, ?>[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            //余数分摊到前面的段，保证总大小与cacheSize一致
+            int segmentSize = cacheSize == 0 ? 0 : cacheSize / segmentCount + (i < cacheSize % segmentCount ? 1 : 0);
+            this.segments[i] = evictionPolicy.newCacheMap(segmentSize, defaultExpire);
+        }
+    }
+
+    /**
+     * 根据key获取所在的段
+     *
+     * @param key the key
+     * @return the segment
+     */
+    protected AbstractCacheMap<K, V> segmentFor(Object key) {
+        return segments[segmentIndex(key)];
+    }
+
+    /**
+     * 根据key获取所在段的下标
+     *
+     * @param key the key
+     * @return the int
+     */
+    private int segmentIndex(Object key) {
+        if (segmentMask == 0) {
+            return 0;
+        }
+        int h = key == null ? 0 : key.hashCode();
+        //再散列，与ConcurrentHashMap相同的方式
+        h += (h << 15) ^ 0xffffcd7d;
+        h ^= (h >>> 10);
+        h += (h << 3);
+        h ^= (h >>> 6);
+        h += (h << 2) + (h << 14);
+        h ^= (h >>> 16);
+        return (h >>> segmentShift) & segmentMask;
+    }
+
+    /**
+     * 设置权重计算，最大总权重平均分到每个段，淘汰在段内进行
+     *
+     * @param weigher       权重计算
+     * @param maximumWeight 最大总权重，不能小于段数
+     * @return the concurrent cache map
+     * @see AbstractCacheMap#setWeigher(Weigher, long)
+     */
+    public ConcurrentCacheMap<K, V> setWeigher(Weigher<? super K, ? super V> weigher, long maximumWeight) {
+        if (maximumWeight < segments.length) {
+            throw new IllegalArgumentException("maximumWeight不能小于段数:" + segments.length);
+        }
+        for (int i = 0; i < segments.length; i++) {
+            long segmentWeight = maximumWeight / segments.length + (i < maximumWeight % segments.length ? 1 : 0);
+            segments[i].setWeigher(weigher, segmentWeight);
+        }
+        this.maximumWeight = maximumWeight;
+        return this;
+    }
+
+    /**
+     * 所有段设置同一个值引用强度
+     *
+     * @param valueStrength 引用强度
+     * @return the concurrent cache map
+     * @see AbstractCacheMap#setValueStrength(ValueStrength)
+     */
+    public ConcurrentCacheMap<K, V> setValueStrength(ValueStrength valueStrength) {
+        for (AbstractCacheMap<K, V> segment : segments) {
+            segment.setValueStrength(valueStrength);
+        }
+        return this;
+    }
+
+    /**
+     * 所有段设置同一个时间源，需要在放入对象前设置
+     *
+     * @param ticker the ticker
+     * @return the concurrent cache map
+     * @see AbstractCacheMap#setTicker(Ticker)
+     */
+    public ConcurrentCacheMap<K, V> setTicker(Ticker ticker) {
+        for (AbstractCacheMap<K, V> segment : segments) {
+            segment.setTicker(ticker);
+        }
+        return this;
+    }
+
+    /**
+     * 所有段设置同一个删除回调
+     *
+     * @param removalListener 删除回调，为null时取消
+     * @param executor        执行回调的执行器
+     * @return the concurrent cache map
+     * @see AbstractCacheMap#setRemovalListener(RemovalListener, Executor)
+     */
+    public ConcurrentCacheMap<K, V> setRemovalListener(RemovalListener<? super K, ? super V> removalListener,
+                                                       Executor executor) {
+        for (AbstractCacheMap<K, V> segment : segments) {
+            segment.setRemovalListener(removalListener, executor);
+        }
+        return this;
+    }
+
+    /**
+     * 所有段开启统计
+     *
+     * @return the concurrent cache map
+     * @see AbstractCacheMap#recordStats()
+     */
+    public ConcurrentCacheMap<K, V> recordStats() {
+        for (AbstractCacheMap<K, V> segment : segments) {
+            segment.recordStats();
+        }
+        return this;
+    }
+
+    /**
+     * 是否开启了统计
+     *
+     * @return the boolean
+     */
+    public boolean isRecordingStats() {
+        return segments[0].isRecordingStats();
+    }
+
+    /**
+     * 合并所有段的统计快照，未开启统计时返回{@link CacheStats#EMPTY}
+     *
+     * @return the stats
+     */
+    public CacheStats getStats() {
+        if (!isRecordingStats()) {
+            return CacheStats.EMPTY;
+        }
+        CacheStats stats = CacheStats.EMPTY;
+        for (AbstractCacheMap<K, V> segment : segments) {
+            stats = stats.plus(segment.getStats());
+        }
+        return stats;
+    }
+
+    /**
+     * 最大总权重，未设置权重计算时为0
+     *
+     * @return the maximum weight
+     */
+    public long getMaximumWeight() {
+        return maximumWeight;
+    }
+
+    /**
+     * 当前总权重
+     *
+     * @return the total weight
+     */
+    public long getTotalWeight() {
+        long totalWeight = 0;
+        for (AbstractCacheMap<K, V> segment : segments) {
+            totalWeight += segment.getTotalWeight();
+        }
+        return totalWeight;
+    }
+
+    /**
+     * 获取淘汰策略
+     *
+     * @return the eviction policy
+     */
+    public EvictionPolicy getEvictionPolicy() {
+        return evictionPolicy;
+    }
+
+    /**
+     * 获取段数
+     *
+     * @return the segment count
+     */
+    public int getSegmentCount() {
+        return segments.length;
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        for (AbstractCacheMap<K, V> segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    @Override
+    public long getDefaultExpire() {
+        return defaultExpire;
+    }
+
+    @Override
+    public void put(K key, V value) {
+        segmentFor(key).put(key, value);
+    }
+
+    @Override
+    public void put(K key, V value, long expire) {
+        segmentFor(key).put(key, value, expire);
+    }
+
+    @Override
+    public V get(K key) {
+        return segmentFor(key).get(key);
+    }
+
+    /**
+     * 按段分组，每段只加一次锁，结果顺序与keys一致
+     *
+     * @param keys the keys
+     * @return the all
+     */
+    @Override
+    public Map<K, V> getAll(Collection<? extends K> keys) {
+        if (segmentMask == 0) {
+            return segments[0].getAll(keys);
+        }
+        List<K>[] groups = groupBySegment(keys);
+        Map<K, V> found = new HashMap<>(keys.size() * 4 / 3 + 1);
+        for (int i = 0; i < groups.length; i++) {
+            if (groups[i] != null) {
+                found.putAll(segments[i].getAll(groups[i]));
+            }
+        }
+        Map<K, V> result = new LinkedHashMap<>(found.size() * 4 / 3 + 1);
+        for (K key : keys) {
+            V value = found.get(key);
+            if (value != null) {
+                result.put(key, value);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 按段分组，每段只加一次锁
+     *
+     * @param map the map
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public void putAll(Map<? extends K, ? extends V> map) {
+        if (segmentMask == 0) {
+            segments[0].putAll(map);
+            return;
+        }
+        Map<K, V>[] groups = (Map<K, V>[]) new Map<?, ?>[segments.length];
+        for (Map.Entry<? extends K, ? extends V> entry : map.entrySet()) {
+            int index = segmentIndex(entry.getKey());
+            if (groups[index] == null) {
+                groups[index] = new LinkedHashMap<>();
+            }
+            groups[index].put(entry.getKey(), entry.getValue());
+        }
+        for (int i = 0; i < groups.length; i++) {
+            if (groups[i] != null) {
+                segments[i].putAll(groups[i]);
+            }
+        }
+    }
+
+    /**
+     * 按段分组，每段只加一次锁
+     *
+     * @param keys the keys
+     */
+    @Override
+    public void removeAll(Collection<? extends K> keys) {
+        if (segmentMask == 0) {
+            segments[0].removeAll(keys);
+            return;
+        }
+        List<K>[] groups = groupBySegment(keys);
+        for (int i = 0; i < groups.length; i++) {
+            if (groups[i] != null) {
+                segments[i].removeAll(groups[i]);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<K>[] groupBySegment(Collection<? extends K> keys) {
+        List<K>[] groups = (List<K>[]) new List<?>[segments.length];
+        for (K key : keys) {
+            int index = segmentIndex(key);
+            if (groups[index] == null) {
+                groups[index] = new ArrayList<>();
+            }
+            groups[index].add(key);
+        }
+        return groups;
+    }
+
+    @Override
+    public int eliminate() {
+        int count = 0;
+        for (AbstractCacheMap<K, V> segment : segments) {
+            count += segment.eliminate();
+        }
+        return count;
+    }
+
+    @Override
+    public boolean isFull() {
+        if (maximumWeight > 0 && getTotalWeight() >= maximumWeight) {
+            return true;
+        }
+        if (cacheSize == 0) {
+            return false;
+        }
+        return size() >= cacheSize;
+    }
+
+    @Override
+    public void remove(K key) {
+        segmentFor(key).remove(key);
+    }
+
+    @Override
+    public void clear() {
+        for (AbstractCacheMap<K, V> segment : segments) {
+            segment.clear();
+        }
+    }
+
+    @Override
+    public int getCacheSize() {
+        return cacheSize;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        for (AbstractCacheMap<K, V> segment : segments) {
+            if (!segment.isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,610 @@
+/*
+ * Copyright (c) 2020. www.sonsure.com Inc. All rights reserved.
+ * You may obtain more information at
+ *
+ *   http://www.sonsure.com
+ *
+ * Designed By Selfly Lee (selfly@live.com)
+ */
+
+package com.sonsure.commons.cache;
+
+import com.sonsure.commons.exception.SonsureCommonsException;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+/**
+ * 基于内存映射文件的磁盘存储
+ * <p>
+ * 数据只追加写入固定大小的段文件，写满后新建一个段，删除写入墓碑记录。内存中的索引保存每个key最新记录的位置，
+ * 打开时按段顺序扫描记录重建索引，遇到长度为0或校验失败的记录即认为该段结束。
+ * 段数超过上限时整段丢弃最旧的段；有效数据比例低的段由{@link #compact(double)}把有效记录复制到当前段后删除。
+ * 删除的段会主动释放内存映射，磁盘空间随即回收；运行环境不允许释放时要等GC回收映射后才会释放。
+ * <p>
+ * 记录格式：记录长度(int)、CRC32(int)、过期时间(long)、key长度(int)、value长度(int，-1表示墓碑)、key、value
+ *
+ * @author liyd
+ */
+final class DiskStore<K> {
+
+    /**
+     * 段文件后缀
+     */
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    /**
+     * 记录头长度
+     */
+    private static final int HEADER_SIZE = 24;
+
+    /**
+     * 墓碑记录的value长度
+     */
+    private static final int TOMBSTONE = -1;
+
+    /**
+     * 压缩时每复制多少条记录释放一次锁
+     */
+    private static final int COMPACT_BATCH = 64;
+
+    private final File directory;
+
+    private final int segmentSize;
+
+    private final int maxSegments;
+
+    private final Serializer<K> keySerializer;
+
+    private final Ticker ticker;
+
+    /** 按编号排序的段 */
+    private final TreeMap<Integer, Segment> segments = new TreeMap<>();
+
+    private final Map<K, Location> index = new HashMap<>();
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Lock readLock = lock.readLock();
+
+    private final Lock writeLock = lock.writeLock();
+
+    /** 当前写入的段 */
+    private Segment active;
+
+    /**
+     * 打开目录下的存储，已有的段文件会被扫描重建索引
+     *
+     * @param directory     目录
+     * @param segmentSize   段文件大小
+     * @param maxSegments   最大段数
+     * @param keySerializer key序列化
+     * @param ticker        判断过期的时间源
+     */
+    DiskStore(File directory, int segmentSize, int maxSegments, Serializer<K> keySerializer, Ticker ticker) {
+        if (segmentSize <= HEADER_SIZE) {
+            throw new IllegalArgumentException("segmentSize必须大于" + HEADER_SIZE);
+        }
+        if (maxSegments < 2) {
+            throw new IllegalArgumentException("maxSegments不能小于2");
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new SonsureCommonsException("创建缓存目录失败:" + directory);
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.maxSegments = maxSegments;
+        this.keySerializer = keySerializer;
+        this.ticker = ticker;
+        recover();
+    }
+
+    private void recover() {
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(SEGMENT_SUFFIX));
+        if (files != null) {
+            Arrays.sort(files);
+            for (File file : files) {
+                String name = file.getName();
+                int id;
+                try {
+                    id = Integer.parseInt(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+                } catch (NumberFormatException e) {
+                    continue;
+                }
+                Segment segment = openSegment(id, file);
+                segments.put(id, segment);
+                scan(segment);
+            }
+        }
+        if (segments.isEmpty()) {
+            active = newSegment(0);
+        } else {
+            active = segments.lastEntry().getValue();
+        }
+    }
+
+    /**
+     * 扫描段内记录重建索引
+     *
+     * @param segment
+     */
+    private void scan(Segment segment) {
+        int position = 0;
+        while (true) {
+            Record record = readRecord(segment, position);
+            if (record == null) {
+                break;
+            }
+            K key = keySerializer.deserialize(record.key);
+            if (record.valueLength == TOMBSTONE) {
+                unindex(key);
+            } else {
+                index(key, new Location(segment, position, record.length, record.expireTime));
+            }
+            position += record.length;
+        }
+        segment.writePosition = position;
+    }
+
+    /**
+     * 写入记录
+     *
+     * @param key        the key
+     * @param value      the value
+     * @param expireTime 过期的时间点，0表示永不过期
+     * @return 记录超过段大小时不写入，返回false
+     */
+    boolean put(K key, byte[] value, long expireTime) {
+        byte[] keyBytes = keySerializer.serialize(key);
+        int length = HEADER_SIZE + keyBytes.length + value.length;
+        if (length > segmentSize) {
+            remove(key);
+            return false;
+        }
+        writeLock.lock();
+        try {
+            int position = append(keyBytes, value, value.length, expireTime, length);
+            index(key, new Location(active, position, length, expireTime));
+            return true;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * 读取未过期的记录
+     *
+     * @param key the key
+     * @return 不存在或已过期时返回null
+     */
+    Value get(K key) {
+        readLock.lock();
+        try {
+            Location location = index.get(key);
+            if (location == null || location.isExpired(ticker.read())) {
+                return null;
+            }
+            ByteBuffer buffer = location.segment.buffer.duplicate();
+            buffer.position(location.position + 20);
+            int keyLength = buffer.getInt(location.position + 16);
+            int valueLength = buffer.getInt();
+            byte[] value = new byte[valueLength];
+            buffer.position(location.position + HEADER_SIZE + keyLength);
+            buffer.get(value);
+            return new Value(value, location);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * 是否包含key，不判断是否过期
+     *
+     * @param key the key
+     * @return the boolean
+     */
+    boolean contains(K key) {
+        readLock.lock();
+        try {
+            return index.containsKey(key);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * 删除记录，写入墓碑保证重新打开后不会恢复
+     *
+     * @param key the key
+     */
+    void remove(K key) {
+        writeLock.lock();
+        try {
+            if (index.containsKey(key)) {
+                unindex(key);
+                byte[] keyBytes = keySerializer.serialize(key);
+                append(keyBytes, null, TOMBSTONE, 0, HEADER_SIZE + keyBytes.length);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * 仍是读取时的那条记录时才删除，读取后写入的新记录不受影响
+     *
+     * @param key      the key
+     * @param expected {@link #get(Object)}读取到的值
+     * @return 是否删除
+     */
+    boolean remove(K key, Value expected) {
+        writeLock.lock();
+        try {
+            if (index.get(key) != expected.location) {
+                return false;
+            }
+            unindex(key);
+            byte[] keyBytes = keySerializer.serialize(key);
+            append(keyBytes, null, TOMBSTONE, 0, HEADER_SIZE + keyBytes.length);
+            return true;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * 记录数
+     *
+     * @return the int
+     */
+    int size() {
+        readLock.lock();
+        try {
+            return index.size();
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * 删除所有段文件
+     */
+    void clear() {
+        writeLock.lock();
+        try {
+            index.clear();
+            for (Segment segment : new ArrayList<>(segments.values())) {
+                deleteSegment(segment);
+            }
+            active = newSegment(0);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * 压缩有效数据比例低于阈值的段，当前写入的段除外
+     *
+     * @param threshold 有效数据比例阈值
+     * @return 删除的段数
+     */
+    int compact(double threshold) {
+        List<Segment> candidates = new ArrayList<>();
+        readLock.lock();
+        try {
+            for (Segment segment : segments.values()) {
+                if (segment != active && segment.liveBytes < segment.writePosition * threshold) {
+                    candidates.add(segment);
+                }
+            }
+        } finally {
+            readLock.unlock();
+        }
+        int count = 0;
+        for (Segment segment : candidates) {
+            if (compactSegment(segment)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 把段内仍被索引指向的记录复制到当前段，然后删除该段。段已不再写入，分批加锁复制，不长时间阻塞读写
+     *
+     * @param segment
+     * @return
+     */
+    private boolean compactSegment(Segment segment) {
+        int position = 0;
+        long now = ticker.read();
+        while (true) {
+            writeLock.lock();
+            try {
+                if (segments.get(segment.id) != segment) {
+                    //已被整段丢弃
+                    return false;
+                }
+                for (int i = 0; i < COMPACT_BATCH; i++) {
+                    Record record = position < segment.writePosition ? readRecord(segment, position) : null;
+                    if (record == null) {
+                        deleteSegment(segment);
+                        return true;
+                    }
+                    K key = keySerializer.deserialize(record.key);
+                    Location location = index.get(key);
+                    if (record.valueLength == TOMBSTONE) {
+                        //更早的段中可能还有该key的记录，保留墓碑
+                        if (location == null && segment != segments.firstEntry().getValue()) {
+                            append(record.key, null, TOMBSTONE, 0, record.length);
+                        }
+                    } else if (location != null && location.segment == segment && location.position == position) {
+                        if (location.isExpired(now)) {
+                            unindex(key);
+                        } else {
+                            byte[] value = new byte[record.valueLength];
+                            ByteBuffer buffer = segment.buffer.duplicate();
+                            buffer.position(position + HEADER_SIZE + record.key.length);
+                            buffer.get(value);
+                            int newPosition = append(record.key, value, value.length, record.expireTime, record.length);
+                            //先建立索引，写入时换段丢弃了正在压缩的段也不能留下没有索引的副本，否则重新打开时会被恢复
+                            index(key, new Location(active, newPosition, record.length, record.expireTime));
+                            if (segments.get(segment.id) != segment) {
+                                return false;
+                            }
+                        }
+                    }
+                    position += record.length;
+                }
+            } finally {
+                writeLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * 写入磁盘并关闭文件
+     */
+    void close() {
+        writeLock.lock();
+        try {
+            for (Segment segment : segments.values()) {
+                segment.close();
+            }
+            segments.clear();
+            index.clear();
+            //映射已释放，关闭后再写入直接失败而不是访问已释放的内存
+            active = null;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * 追加记录，调用方需持有写锁
+     *
+     * @return 记录在当前段的位置
+     */
+    private int append(byte[] key, byte[] value, int valueLength, long expireTime, int length) {
+        if (active.writePosition + length > segmentSize) {
+            active = newSegment(active.id + 1);
+            while (segments.size() > maxSegments) {
+                dropSegment(segments.firstEntry().getValue());
+            }
+        }
+        int position = active.writePosition;
+        ByteBuffer buffer = active.buffer.duplicate();
+        buffer.position(position + 8);
+        buffer.putLong(expireTime);
+        buffer.putInt(key.length);
+        buffer.putInt(valueLength);
+        buffer.put(key);
+        if (value != null) {
+            buffer.put(value);
+        }
+        buffer.putInt(position + 4, checksum(active, position, length));
+        //长度最后写入，非0表示记录完整
+        buffer.putInt(position, length);
+        active.writePosition += length;
+        return position;
+    }
+
+    /**
+     * 读取记录头和key
+     *
+     * @return 到达段末尾或记录损坏时返回null
+     */
+    private Record readRecord(Segment segment, int position) {
+        if (position + HEADER_SIZE > segmentSize) {
+            return null;
+        }
+        ByteBuffer buffer = segment.buffer.duplicate();
+        int length = buffer.getInt(position);
+        if (length < HEADER_SIZE || position + length > segmentSize) {
+            return null;
+        }
+        if (buffer.getInt(position + 4) != checksum(segment, position, length)) {
+            return null;
+        }
+        buffer.position(position + 8);
+        long expireTime = buffer.getLong();
+        int keyLength = buffer.getInt();
+        int valueLength = buffer.getInt();
+        if (keyLength < 0 || HEADER_SIZE + keyLength + Math.max(valueLength, 0) != length) {
+            return null;
+        }
+        byte[] key = new byte[keyLength];
+        buffer.get(key);
+        return new Record(length, expireTime, key, valueLength);
+    }
+
+    private static int checksum(Segment segment, int position, int length) {
+        ByteBuffer buffer = segment.buffer.duplicate();
+        buffer.position(position + 8);
+        buffer.limit(position + length);
+        CRC32 crc = new CRC32();
+        crc.update(buffer);
+        return (int) crc.getValue();
+    }
+
+    private void index(K key, Location location) {
+        Location old = index.put(key, location);
+        location.segment.liveBytes += location.length;
+        if (old != null) {
+            old.segment.liveBytes -= old.length;
+        }
+    }
+
+    private void unindex(K key) {
+        Location old = index.remove(key);
+        if (old != null) {
+            old.segment.liveBytes -= old.length;
+        }
+    }
+
+    /**
+     * 丢弃整段，段内仍有效的记录一起删除
+     *
+     * @param segment
+     */
+    private void dropSegment(Segment segment) {
+        Iterator<Location> iterator = index.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().segment == segment) {
+                iterator.remove();
+            }
+        }
+        deleteSegment(segment);
+    }
+
+    private void deleteSegment(Segment segment) {
+        segments.remove(segment.id);
+        segment.close();
+        if (!segment.file.delete()) {
+            segment.file.deleteOnExit();
+        }
+    }
+
+    private Segment newSegment(int id) {
+        File file = new File(directory, String.format("%010d%s", id, SEGMENT_SUFFIX));
+        if (file.exists() && !file.delete()) {
+            throw new SonsureCommonsException("删除旧的段文件失败:" + file);
+        }
+        Segment segment = openSegment(id, file);
+        segments.put(id, segment);
+        return segment;
+    }
+
+    private Segment openSegment(int id, File file) {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            FileChannel channel = raf.getChannel();
+            //映射建立后关闭文件不影响读写
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+            return new Segment(id, file, buffer);
+        } catch (IOException e) {
+            throw new SonsureCommonsException("打开段文件失败:" + file, e);
+        }
+    }
+
+    /**
+     * 读取到的值
+     */
+    static final class Value {
+
+        final byte[] value;
+
+        /** 过期的时间点，0表示永不过期 */
+        final long expireTime;
+
+        /** 读取时的记录位置 */
+        private final Location location;
+
+        Value(byte[] value, Location location) {
+            this.value = value;
+            this.expireTime = location.expireTime;
+            this.location = location;
+        }
+    }
+
+    private static final class Segment {
+
+        final int id;
+
+        final File file;
+
+        final MappedByteBuffer buffer;
+
+        int writePosition;
+
+        /** 仍被索引指向的记录长度之和 */
+        long liveBytes;
+
+        Segment(int id, File file, MappedByteBuffer buffer) {
+            this.id = id;
+            this.file = file;
+            this.buffer = buffer;
+        }
+
+        /**
+         * 写入磁盘并释放映射，调用方需持有写锁，之后不能再访问buffer
+         */
+        void close() {
+            buffer.force();
+            DirectBuffers.release(buffer);
+        }
+    }
+
+    private static final class Location {
+
+        final Segment segment;
+
+        final int position;
+
+        final int length;
+
+        final long expireTime;
+
+        Location(Segment segment, int position, int length, long expireTime) {
+            this.segment = segment;
+            this.position = position;
+            this.length = length;
+            this.expireTime = expireTime;
+        }
+
+        boolean isExpired(long now) {
+            return expireTime != 0 && expireTime < now;
+        }
+    }
+
+    private static final class Record {
+
+        final int length;
+
+        final long expireTime;
+
+        final byte[] key;
+
+        final int valueLength;
+
+        Record(int length, long expireTime, byte[] key, int valueLength) {
+            this.length = length;
+            this.expireTime = expireTime;
+            this.key = key;
+            this.valueLength = valueLength;
+        }
+    }
+}
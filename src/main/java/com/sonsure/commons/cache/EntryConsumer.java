@@ -0,0 +1,28 @@
+/*
+ * Copyright (c) 2020. www.sonsure.com Inc. All rights reserved.
+ * You may obtain more information at
+ *
+ *   http://www.sonsure.com
+ *
+ * Designed By Selfly Lee (selfly@live.com)
+ */
+
+package com.sonsure.commons.cache;
+
+/**
+ * 带过期时间的缓存对象访问
+ *
+ * @author liyd
+ */
+@FunctionalInterface
+interface EntryConsumer<K, V> {
+
+    /**
+     * 访问缓存对象
+     *
+     * @param key        the key
+     * @param value      the value
+     * @param expireTime 过期的时间点(毫秒)，0表示永不过期
+     */
+    void accept(K key, V value, long expireTime);
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2020. www.sonsure.com Inc. All rights reserved.
+ * You may obtain more information at
+ *
+ *   http://www.sonsure.com
+ *
+ * Designed By Selfly Lee (selfly@live.com)
+ */
+
+package com.sonsure.commons.cache;
+
+/**
+ * 缓存淘汰策略
+ *
+ * @author liyd
+ */
+public enum EvictionPolicy {
+
+    /**
+     * 最近最少使用
+     */
+    LRU {
+        @Override
+        public <K, V> AbstractCacheMap<K, V> newCacheMap(int cacheSize, long defaultExpire) {
+            return new LRUCache<>(cacheSize, defaultExpire);
+        }
+    },
+
+    /**
+     * 最不经常使用
+     */
+    LFU {
+        @Override
+        public <K, V> AbstractCacheMap<K, V> newCacheMap(int cacheSize, long defaultExpire) {
+            return new LFUCache<>(cacheSize, defaultExpire);
+        }
+    },
+
+    /**
+     * 先进先出
+     */
+    FIFO {
+        @Override
+        public <K, V> AbstractCacheMap<K, V> newCacheMap(int cacheSize, long defaultExpire) {
+            return new FIFOCache<>(cacheSize, defaultExpire);
+        }
+    },
+
+    /**
+     * 窗口加访问频率准入，适合扫描和热点交替的访问模式，必须指定缓存大小
+     */
+    W_TINY_LFU {
+        @Override
+        public <K, V> AbstractCacheMap<K, V> newCacheMap(int cacheSize, long defaultExpire) {
+            return new WTinyLFUCache<>(cacheSize, defaultExpire);
+        }
+    };
+
+    /**
+     * 创建该策略对应的缓存map
+     *
+     * @param <K>           the type parameter
+     * @param <V>           the type parameter
+     * @param cacheSize     最大缓存大小, 0表示无限制
+     * @param defaultExpire 默认过期时间, 0表示永不过期
+     * @return the abstract cache map
+     */
+    public abstract <K, V> AbstractCacheMap<K, V> newCacheMap(int cacheSize, long defaultExpire);
+}
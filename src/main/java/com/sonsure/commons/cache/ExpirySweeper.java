@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2020. www.sonsure.com Inc. All rights reserved.
+ * You may obtain more information at
+ *
+ *   http://www.sonsure.com
+ *
+ * Designed By Selfly Lee (selfly@live.com)
+ */
+
+package com.sonsure.commons.cache;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 后台清理过期对象的任务
+ * <p>
+ * 所有缓存共用一个守护线程，任务只弱引用缓存，缓存被回收后任务自动取消。
+ *
+ * @author liyd
+ */
+final class ExpirySweeper implements Runnable {
+
+    private static volatile ScheduledExecutorService scheduler;
+
+    /**
+     * 包内可见，测试中直接clear模拟缓存被回收
+     */
+    final WeakReference<Target> cacheRef;
+
+    private volatile ScheduledFuture<?> future;
+
+    private ExpirySweeper(Target cacheMap) {
+        this.cacheRef = new WeakReference<>(cacheMap);
+    }
+
+    /**
+     * 启动定时清理
+     *
+     * @param cacheMap the cache map
+     * @param interval 清理间隔(毫秒)
+     * @return the expiry sweeper
+     */
+    static ExpirySweeper start(Target cacheMap, long interval) {
+        ExpirySweeper sweeper = new ExpirySweeper(cacheMap);
+        sweeper.future = getScheduler().scheduleWithFixedDelay(sweeper, interval, interval, TimeUnit.MILLISECONDS);
+        return sweeper;
+    }
+
+    /**
+     * 是否已停止
+     *
+     * @return the boolean
+     */
+    boolean isStopped() {
+        ScheduledFuture<?> f = this.future;
+        return f == null || f.isCancelled();
+    }
+
+    /**
+     * 停止清理
+     */
+    void stop() {
+        ScheduledFuture<?> f = this.future;
+        if (f != null) {
+            f.cancel(false);
+        }
+    }
+
+    @Override
+    public void run() {
+        Target cacheMap = cacheRef.get();
+        if (cacheMap == null) {
+            stop();
+            return;
+        }
+        cacheMap.cleanUp();
+    }
+
+    /**
+     * 需要定时清理的缓存
+     */
+    interface Target {
+
+        /**
+         * 删除过期对象
+         */
+        void cleanUp();
+    }
+
+    private static ScheduledExecutorService getScheduler() {
+        if (scheduler == null) {
+            synchronized (ExpirySweeper.class) {
+                if (scheduler == null) {
+                    ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, r -> {
+                        Thread thread = new Thread(r, "sonsure-cache-sweeper");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                    executor.setRemoveOnCancelPolicy(true);
+                    scheduler = executor;
+                }
+            }
+        }
+        return scheduler;
+    }
+}
@@ -30,32 +30,18 @@ public class FIFOCache<K, V> extends AbstractCacheMap<K, V> {
         cacheMap = new LinkedHashMap<K, CacheObject<K, V>>(cacheSize + 1, 1F, false);
     }
 
+    /**
+     * 删除链表第一个即最早放入的对象
+     */
     @Override
     protected int eliminateCache() {
 
-        int count = 0;
-        K firstKey = null;
-
-        Iterator<CacheObject<K, V>> iterator = cacheMap.values().iterator();
-        while (iterator.hasNext()) {
-            CacheObject<K, V> cacheObject = iterator.next();
-
-            if (cacheObject.isExpired()) {
-                iterator.remove();
-                count++;
-            } else {
-                if (firstKey == null) {
-                    firstKey = cacheObject.key;
-                }
-            }
+        Iterator<K> iterator = cacheMap.keySet().iterator();
+        if (!iterator.hasNext()) {
+            return 0;
         }
-
-        //删除过期对象还是满,继续删除链表第一个
-        if (firstKey != null && isFull()) {
-            cacheMap.remove(firstKey);
-        }
-
-        return count;
+        removeObject(iterator.next(), RemovalCause.SIZE);
+        return 1;
     }
 
 }
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2015 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.sonsure.commons.cache;
+
+/**
+ * 估算访问频率的Count-Min Sketch
+ * <p>
+ * 每个long存放16个4位计数器，一个元素在4个long中各占一个计数器，频率取4个计数器的最小值，最大为15。
+ * 累计增加次数达到缓存大小的10倍时所有计数器减半，使过去的热点逐渐冷却。非线程安全，由调用方加锁。
+ * <p>
+ * 移植自Caffeine(https://github.com/ben-manes/caffeine)的com.github.benmanes.caffeine.cache.FrequencySketch，
+ * 按Apache License 2.0使用，去掉了对Caffeine内部工具类的依赖。
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ * @author liyd
+ */
+final class FrequencySketch {
+
+    private static final long[] SEED = {
+            0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+
+    /**
+     * 每个计数器的最低位
+     */
+    private static final long ONE_MASK = 0x1111111111111111L;
+
+    /**
+     * 计数器右移一位后去掉借到的高位
+     */
+    private static final long RESET_MASK = 0x7777777777777777L;
+
+    private final long[] table;
+
+    private final int tableMask;
+
+    /**
+     * 计数器减半的周期
+     */
+    private final int sampleSize;
+
+    /**
+     * 本周期内的增加次数
+     */
+    private int size;
+
+    /**
+     * 构造方法
+     *
+     * @param maximumSize 缓存大小
+     */
+    FrequencySketch(int maximumSize) {
+        int capacity = Math.max(Integer.highestOneBit(Math.max(maximumSize, 2) - 1) << 1, 8);
+        this.table = new long[Math.min(capacity, 1 << 30)];
+        this.tableMask = table.length - 1;
+        this.sampleSize = (int) Math.min(10L * Math.max(maximumSize, 1), Integer.MAX_VALUE);
+    }
+
+    /**
+     * 估算的访问频率
+     *
+     * @param e the e，可以为null
+     * @return 0-15
+     */
+    int frequency(Object e) {
+        int hash = spread(hash(e));
+        int start = (hash & 3) << 2;
+        int frequency = Integer.MAX_VALUE;
+        for (int i = 0; i < 4; i++) {
+            int index = indexOf(hash, i);
+            int count = (int) ((table[index] >>> ((start + i) << 2)) & 0xfL);
+            frequency = Math.min(frequency, count);
+        }
+        return frequency;
+    }
+
+    /**
+     * 访问频率加1
+     *
+     * @param e the e，可以为null
+     */
+    void increment(Object e) {
+        int hash = spread(hash(e));
+        int start = (hash & 3) << 2;
+        boolean added = false;
+        for (int i = 0; i < 4; i++) {
+            added |= incrementAt(indexOf(hash, i), start + i);
+        }
+        if (added && ++size == sampleSize) {
+            reset();
+        }
+    }
+
+    private boolean incrementAt(int index, int counter) {
+        int offset = counter << 2;
+        long mask = 0xfL << offset;
+        if ((table[index] & mask) != mask) {
+            table[index] += 1L << offset;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 所有计数器减半
+     */
+    private void reset() {
+        int odd = 0;
+        for (int i = 0; i < table.length; i++) {
+            odd += Long.bitCount(table[i] & ONE_MASK);
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        size = (size >>> 1) - (odd >>> 2);
+    }
+
+    private int indexOf(int item, int i) {
+        long hash = (item + SEED[i]) * SEED[i];
+        hash += hash >>> 32;
+        return ((int) hash) & tableMask;
+    }
+
+    /**
+     * null的key按0计算，与{@link ConcurrentCacheMap}选择分段的方式一致
+     */
+    private static int hash(Object e) {
+        return e == null ? 0 : e.hashCode();
+    }
+
+    private static int spread(int x) {
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        return (x >>> 16) ^ x;
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2020. www.sonsure.com Inc. All rights reserved.
+ * You may obtain more information at
+ *
+ *   http://www.sonsure.com
+ *
+ * Designed By Selfly Lee (selfly@live.com)
+ */
+
+package com.sonsure.commons.cache;
+
+import com.sonsure.commons.exception.SonsureCommonsException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+/**
+ * 使用jdk自带序列化的实现，对象需要实现{@link java.io.Serializable}
+ *
+ * @author liyd
+ */
+public class JdkSerializer<T> implements Serializer<T> {
+
+    @Override
+    public byte[] serialize(T obj) {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(256);
+        try (ObjectOutputStream oos = new ObjectOutputStream(bos)) {
+            oos.writeObject(obj);
+        } catch (IOException e) {
+            throw new SonsureCommonsException("序列化对象失败", e);
+        }
+        return bos.toByteArray();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T deserialize(byte[] bytes) {
+        try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return (T) ois.readObject();
+        } catch (IOException | ClassNotFoundException e) {
+            throw new SonsureCommonsException("反序列化对象失败", e);
+        }
+    }
+}
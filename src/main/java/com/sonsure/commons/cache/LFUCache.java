@@ -10,15 +10,30 @@
 package com.sonsure.commons.cache;
 
 import java.util.HashMap;
-import java.util.Iterator;
 
 /**
  * LFU缓存实现
+ * <p>
+ * 相同访问次数的对象放在同一个频率桶中，频率桶按访问次数从小到大组成双向链表，
+ * 访问、插入、删除和淘汰都是O(1)。访问次数相同时淘汰最早进入该频率桶的对象。
+ * <p>
+ * 每次淘汰时把基准次数提高到被淘汰对象的访问次数，新对象从基准次数加1开始，
+ * 相当于原实现中所有对象减去最少访问次数的老化，曾经很热的对象不会永远留在缓存中。
  *
  * Created by liyd on 9/25/14.
  */
 public class LFUCache<K, V> extends AbstractCacheMap<K, V> {
 
+    /**
+     * 频率桶链表的哨兵节点，next为访问次数最少的桶
+     */
+    private final FrequencyNode frequencies = new FrequencyNode(0);
+
+    /**
+     * 老化的基准次数，所有对象的访问次数都不小于它，新对象的次数为它加1
+     */
+    private long ageBase;
+
     /**
      * 构造方法
      *
@@ -30,50 +45,157 @@ public class LFUCache<K, V> extends AbstractCacheMap<K, V> {
         cacheMap = new HashMap<K, CacheObject<K, V>>(cacheSize + 1);
     }
 
+    @Override
+    protected CacheObject<K, V> newCacheObject(K key, V value, long expire) {
+        return new FrequencyObject(key, value, expire);
+    }
+
+    @Override
+    protected boolean isAccessOrder() {
+        return true;
+    }
+
+    @Override
+    protected void onPut(CacheObject<K, V> co) {
+        long frequency = ageBase + 1;
+        //最少的桶次数不小于ageBase，目标桶只可能是第一个或第二个
+        FrequencyNode node = frequencies;
+        if (node.next != frequencies && node.next.frequency < frequency) {
+            node = node.next;
+        }
+        FrequencyNode target = node.next;
+        if (target == frequencies || target.frequency != frequency) {
+            target = new FrequencyNode(frequency);
+            target.linkAfter(node);
+        }
+        target.append((FrequencyObject) co);
+    }
+
     /**
-     * 实现删除过期对象 和 删除访问次数最少的对象 
+     * 访问次数加1，移到下一个频率桶
      *
+     * @param co
+     */
+    @Override
+    protected void onAccess(CacheObject<K, V> co) {
+        if (cacheMap.get(co.key) != co) {
+            //已被删除或替换
+            return;
+        }
+        FrequencyObject fo = (FrequencyObject) co;
+        FrequencyNode node = fo.node;
+        FrequencyNode next = node.next;
+        if (next.frequency != node.frequency + 1) {
+            next = new FrequencyNode(node.frequency + 1);
+            next.linkAfter(node);
+        }
+        node.remove(fo);
+        next.append(fo);
+    }
+
+    @Override
+    protected void onRemove(CacheObject<K, V> co) {
+        FrequencyObject fo = (FrequencyObject) co;
+        if (fo.node != null) {
+            fo.node.remove(fo);
+        }
+    }
+
+    /**
+     * 删除访问次数最少的对象，并把老化基准提高到它的访问次数
      */
     @Override
     protected int eliminateCache() {
-        Iterator<CacheObject<K, V>> iterator = cacheMap.values().iterator();
-        int count = 0;
-        long minAccessCount = Long.MAX_VALUE;
-        while (iterator.hasNext()) {
-            CacheObject<K, V> cacheObject = iterator.next();
-
-            if (cacheObject.isExpired()) {
-                iterator.remove();
-                count++;
-                continue;
-            } else {
-                //记录下最少的访问次数
-                minAccessCount = Math.min(cacheObject.accessCount, minAccessCount);
-            }
+        FrequencyNode first = frequencies.next;
+        if (first == frequencies) {
+            return 0;
         }
+        ageBase = first.frequency;
+        removeObject(first.head.key, RemovalCause.SIZE);
+        return 1;
+    }
+
+    /**
+     * 带频率桶链接的缓存对象
+     */
+    private class FrequencyObject extends CacheObject<K, V> {
+
+        /** 所在频率桶 */
+        FrequencyNode node;
 
-        if (count > 0) {
-            return count;
+        FrequencyObject prev;
+
+        FrequencyObject next;
+
+        FrequencyObject(K key, V value, long liveTime) {
+            super(key, value, liveTime);
         }
+    }
 
-        if (minAccessCount != Long.MAX_VALUE) {
+    /**
+     * 频率桶
+     */
+    private class FrequencyNode {
 
-            iterator = cacheMap.values().iterator();
+        /** 访问次数 */
+        final long frequency;
 
-            while (iterator.hasNext()) {
-                CacheObject<K, V> cacheObject = iterator.next();
+        FrequencyNode prev = this;
 
-                cacheObject.accessCount -= minAccessCount;
+        FrequencyNode next = this;
 
-                if (cacheObject.accessCount <= 0) {
-                    iterator.remove();
-                    count++;
-                }
+        /** 桶内最早进入的对象 */
+        FrequencyObject head;
 
-            }
+        /** 桶内最晚进入的对象 */
+        FrequencyObject tail;
 
+        FrequencyNode(long frequency) {
+            this.frequency = frequency;
         }
 
-        return count;
+        void linkAfter(FrequencyNode node) {
+            this.prev = node;
+            this.next = node.next;
+            node.next.prev = this;
+            node.next = this;
+        }
+
+        void unlink() {
+            prev.next = next;
+            next.prev = prev;
+        }
+
+        void append(FrequencyObject fo) {
+            fo.node = this;
+            fo.prev = tail;
+            fo.next = null;
+            if (tail == null) {
+                head = fo;
+            } else {
+                tail.next = fo;
+            }
+            tail = fo;
+        }
+
+        void remove(FrequencyObject fo) {
+            if (fo.prev == null) {
+                head = fo.next;
+            } else {
+                fo.prev.next = fo.next;
+            }
+            if (fo.next == null) {
+                tail = fo.prev;
+            } else {
+                fo.next.prev = fo.prev;
+            }
+            fo.prev = null;
+            fo.next = null;
+            fo.node = null;
+            //空桶直接摘除
+            if (head == null) {
+                unlink();
+            }
+        }
     }
 }
@@ -11,7 +11,6 @@ package com.sonsure.commons.cache;
 
 import java.util.Iterator;
 import java.util.LinkedHashMap;
-import java.util.Map;
 
 /**
  * LRU缓存实现
@@ -30,59 +29,55 @@ public class LRUCache<K, V> extends AbstractCacheMap<K, V> {
 
         super(cacheSize, defaultExpire);
 
-        //linkedHash已经实现LRU算法 是通过双向链表来实现，
-        // 当某个位置被命中，通过调整链表的指向将该位置调整到头位置，
-        // 新加入的内容直接放在链表头，如此一来，最近被命中的内容就向链表头移动，
-        // 需要替换时，链表最后的位置就是最近最少使用的位置
-        this.cacheMap = new LinkedHashMap<K, CacheObject<K, V>>(cacheSize + 1, 1f, true) {
+        //linkedHashMap按插入顺序维护双向链表，命中的对象在写锁下回放访问时被移到链表尾部，
+        // 需要替换时，链表头部的位置就是最近最少使用的位置。
+        // 不使用accessOrder=true，否则读锁下的get也会修改链表
+        this.cacheMap = new LinkedHashMap<K, CacheObject<K, V>>(cacheSize + 1, 1f, false) {
 
 			private static final long serialVersionUID = 4789439462791125917L;
 
-			@Override
-            protected boolean removeEldestEntry(Map.Entry<K, CacheObject<K, V>> eldest) {
-
-                return LRUCache.this.removeEldestEntry(eldest);
+            @Override
+            public CacheObject<K, V> put(K key, CacheObject<K, V> value) {
+                //更新已存在的key也算一次访问，先删除使其重新链到尾部
+                CacheObject<K, V> old = super.remove(key);
+                super.put(key, value);
+                return old;
             }
-
         };
     }
 
+    @Override
+    protected boolean isAccessOrder() {
+        return true;
+    }
+
     /**
-     * 插入元素时是否需要移除最老的元素(超过缓存大小时)
-     * 
-     * @param eldest
-     * @return
+     * 将被访问的对象移到链表尾部
+     *
+     * @param co
      */
-    private boolean removeEldestEntry(Map.Entry<K, CacheObject<K, V>> eldest) {
-
-        if (cacheSize == 0)
-            return false;
-
-        return size() > cacheSize;
+    @Override
+    protected void onAccess(CacheObject<K, V> co) {
+        if (cacheMap.get(co.key) != co) {
+            //已被删除或替换
+            return;
+        }
+        cacheMap.remove(co.key);
+        cacheMap.put(co.key, co);
     }
 
     /**
-     * 只需要实现清除过期对象就可以了,linkedHashMap已经实现LRU
+     * 删除链表头部最近最少使用的对象
      */
     @Override
     protected int eliminateCache() {
 
-        if (!isNeedClearExpiredObject()) {
+        Iterator<K> iterator = cacheMap.keySet().iterator();
+        if (!iterator.hasNext()) {
             return 0;
         }
-
-        Iterator<CacheObject<K, V>> iterator = cacheMap.values().iterator();
-        int count = 0;
-        while (iterator.hasNext()) {
-            CacheObject<K, V> cacheObject = iterator.next();
-
-            if (cacheObject.isExpired()) {
-                iterator.remove();
-                count++;
-            }
-        }
-
-        return count;
+        removeObject(iterator.next(), RemovalCause.SIZE);
+        return 1;
     }
 
 }
@@ -0,0 +1,405 @@
+/*
+ * Copyright (c) 2020. www.sonsure.com Inc. All rights reserved.
+ * You may obtain more information at
+ *
+ *   http://www.sonsure.com
+ *
+ * Designed By Selfly Lee (selfly@live.com)
+ */
+
+package com.sonsure.commons.cache;
+
+import com.sonsure.commons.exception.SonsureCommonsException;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+
+/**
+ * 支持加载的缓存实现
+ * <p>
+ * 数据存放在指定的{@link AbstractCacheMap}中，淘汰和过期由其决定(LRU、LFU、FIFO)。
+ * 设置了refreshAfterWrite时，写入超过该时间的对象被读取时会触发异步重新加载，重新加载完成前返回旧值。
+ *
+ * @author liyd
+ */
+public class LoadingCache<K, V> implements LoadingCacheMap<K, V> {
+
+    /**
+     * 实际存放数据的缓存
+     */
+    private final AbstractCacheMap<K, V> cacheMap;
+
+    /**
+     * 写入多久后读取时触发异步重新加载(毫秒)，0表示不重新加载
+     */
+    private final long refreshAfterWrite;
+
+    /**
+     * 异步加载的执行器
+     */
+    private final Executor executor;
+
+    /**
+     * 正在加载的key
+     */
+    private final ConcurrentMap<K, CompletableFuture<V>> loadings = new ConcurrentHashMap<>();
+
+    /**
+     * 构造方法
+     *
+     * @param cacheMap the cache map
+     */
+    public LoadingCache(AbstractCacheMap<K, V> cacheMap) {
+        this(cacheMap, 0, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * 构造方法
+     *
+     * @param cacheMap          the cache map
+     * @param refreshAfterWrite 写入多久后读取时触发异步重新加载(毫秒)，0表示不重新加载
+     */
+    public LoadingCache(AbstractCacheMap<K, V> cacheMap, long refreshAfterWrite) {
+        this(cacheMap, refreshAfterWrite, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * 构造方法
+     *
+     * @param cacheMap          the cache map
+     * @param refreshAfterWrite 写入多久后读取时触发异步重新加载(毫秒)，0表示不重新加载
+     * @param executor          异步加载的执行器
+     */
+    public LoadingCache(AbstractCacheMap<K, V> cacheMap, long refreshAfterWrite, Executor executor) {
+        if (cacheMap == null || executor == null) {
+            throw new IllegalArgumentException("cacheMap和executor不能为空");
+        }
+        this.cacheMap = cacheMap;
+        this.refreshAfterWrite = refreshAfterWrite;
+        this.executor = executor;
+    }
+
+    @Override
+    public V get(K key, Function<? super K, ? extends V> loader) {
+        AbstractCacheMap<K, V>.CacheObject<K, V> co = cacheMap.getCacheObject(key, true);
+        if (co != null) {
+            V value = co.getObject();
+            //值可能在命中后被GC回收，此时重新加载
+            if (value != null || !co.isCollected()) {
+                refreshIfNeeded(key, co, loader);
+                return value;
+            }
+        }
+        CompletableFuture<V> future = new CompletableFuture<>();
+        CompletableFuture<V> loading = loadings.putIfAbsent(key, future);
+        if (loading != null) {
+            return join(loading);
+        }
+        //当前线程负责加载
+        load(key, loader, future, false, null);
+        return join(future);
+    }
+
+    @Override
+    public Map<K, V> getAll(Collection<? extends K> keys,
+                            Function<? super Set<K>, ? extends Map<? extends K, ? extends V>> loader) {
+        Map<K, AbstractCacheMap<K, V>.CacheObject<K, V>> hits = cacheMap.getCacheObjects(keys, true);
+        Map<K, CompletableFuture<V>> owned = new LinkedHashMap<>();
+        Map<K, CompletableFuture<V>> waiting = new LinkedHashMap<>();
+        for (K key : keys) {
+            AbstractCacheMap<K, V>.CacheObject<K, V> co = hits.get(key);
+            if (co != null) {
+                refreshIfNeeded(key, co, k -> loader.apply(Collections.singleton(k)).get(k));
+                continue;
+            }
+            if (owned.containsKey(key) || waiting.containsKey(key)) {
+                continue;
+            }
+            CompletableFuture<V> future = new CompletableFuture<>();
+            CompletableFuture<V> loading = loadings.putIfAbsent(key, future);
+            if (loading != null) {
+                waiting.put(key, loading);
+            } else {
+                owned.put(key, future);
+            }
+        }
+        if (!owned.isEmpty()) {
+            loadAll(owned, loader);
+        }
+        Map<K, V> result = new LinkedHashMap<>(keys.size() * 4 / 3 + 1);
+        for (K key : keys) {
+            AbstractCacheMap<K, V>.CacheObject<K, V> co = hits.get(key);
+            V value;
+            if (co != null) {
+                value = co.getObject();
+            } else {
+                CompletableFuture<V> future = owned.get(key);
+                value = join(future != null ? future : waiting.get(key));
+            }
+            if (value != null) {
+                result.put(key, value);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 当前线程负责加载的key合并调用一次loader，完成后才从正在加载中移除
+     */
+    private void loadAll(Map<K, CompletableFuture<V>> owned,
+                         Function<? super Set<K>, ? extends Map<? extends K, ? extends V>> loader) {
+        try {
+            //上一次加载可能刚好在抢占之前完成
+            Map<K, AbstractCacheMap<K, V>.CacheObject<K, V>> loaded = cacheMap.getCacheObjects(owned.keySet(), false);
+            Set<K> missing = new LinkedHashSet<>(owned.keySet());
+            missing.removeAll(loaded.keySet());
+            Map<K, V> values = new LinkedHashMap<>();
+            if (!missing.isEmpty()) {
+                Map<? extends K, ? extends V> result = loadValues(missing, loader);
+                if (result != null) {
+                    for (K key : missing) {
+                        V value = result.get(key);
+                        if (value != null) {
+                            values.put(key, value);
+                        }
+                    }
+                }
+                cacheMap.putAll(values);
+            }
+            for (Map.Entry<K, CompletableFuture<V>> entry : owned.entrySet()) {
+                AbstractCacheMap<K, V>.CacheObject<K, V> co = loaded.get(entry.getKey());
+                entry.getValue().complete(co != null ? co.getObject() : values.get(entry.getKey()));
+            }
+        } catch (Throwable e) {
+            for (CompletableFuture<V> future : owned.values()) {
+                future.completeExceptionally(e);
+            }
+        } finally {
+            for (Map.Entry<K, CompletableFuture<V>> entry : owned.entrySet()) {
+                loadings.remove(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    @Override
+    public CompletableFuture<V> getAsync(K key, Function<? super K, ? extends V> loader) {
+        AbstractCacheMap<K, V>.CacheObject<K, V> co = cacheMap.getCacheObject(key, true);
+        if (co != null) {
+            refreshIfNeeded(key, co, loader);
+            return CompletableFuture.completedFuture(co.getObject());
+        }
+        return loadAsync(key, loader, false);
+    }
+
+    @Override
+    public CompletableFuture<V> refresh(K key, Function<? super K, ? extends V> loader) {
+        return loadAsync(key, loader, true);
+    }
+
+    /**
+     * 写入时间超过refreshAfterWrite时触发异步重新加载
+     */
+    private void refreshIfNeeded(K key, AbstractCacheMap<K, V>.CacheObject<K, V> co, Function<? super K, ? extends V> loader) {
+        if (refreshAfterWrite > 0 && cacheMap.getTicker().read() - co.lastAccess >= refreshAfterWrite) {
+            loadAsync(key, loader, true);
+        }
+    }
+
+    /**
+     * 在执行器中加载，已经在加载的key直接返回正在进行的加载
+     */
+    private CompletableFuture<V> loadAsync(K key, Function<? super K, ? extends V> loader, boolean reload) {
+        CompletableFuture<V> future = new CompletableFuture<>();
+        CompletableFuture<V> loading = loadings.putIfAbsent(key, future);
+        if (loading != null) {
+            return loading;
+        }
+        //刷新只替换触发刷新时的对象
+        AbstractCacheMap<K, V>.CacheObject<K, V> expected = reload ? cacheMap.getCacheObject(key, false) : null;
+        try {
+            executor.execute(() -> load(key, loader, future, reload, expected));
+        } catch (Throwable e) {
+            loadings.remove(key, future);
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * 执行加载并放入缓存，完成后才从正在加载中移除，保证等待者能从缓存或future中拿到结果
+     *
+     * @param reload false时先检查缓存，上一次加载可能刚好在抢占之前完成；true时沿用原对象的存活时间，
+     *               刷新期间对象被删除或放入了新值时丢弃刷新的结果，避免已失效的数据被写回
+     * @param expected 触发刷新时的缓存对象
+     */
+    private void load(K key, Function<? super K, ? extends V> loader, CompletableFuture<V> future, boolean reload,
+                      AbstractCacheMap<K, V>.CacheObject<K, V> expected) {
+        try {
+            AbstractCacheMap<K, V>.CacheObject<K, V> co = reload ? expected : cacheMap.getCacheObject(key, false);
+            V value;
+            if (co != null && !reload) {
+                value = co.getObject();
+            } else {
+                value = loadValue(key, loader);
+                if (value != null) {
+                    if (reload) {
+                        cacheMap.compareAndPut(key, co, value,
+                                co != null ? co.liveTime : cacheMap.getDefaultExpire());
+                    } else {
+                        cacheMap.put(key, value);
+                    }
+                }
+            }
+            future.complete(value);
+        } catch (Throwable e) {
+            future.completeExceptionally(e);
+        } finally {
+            loadings.remove(key, future);
+        }
+    }
+
+    /**
+     * 调用loader并记录加载耗时
+     */
+    private V loadValue(K key, Function<? super K, ? extends V> loader) {
+        StatsCounter counter = cacheMap.getStatsCounter();
+        if (counter == null) {
+            return loader.apply(key);
+        }
+        long start = System.nanoTime();
+        try {
+            V value = loader.apply(key);
+            counter.recordLoadSuccess(System.nanoTime() - start);
+            return value;
+        } catch (RuntimeException | Error e) {
+            counter.recordLoadFailure(System.nanoTime() - start);
+            throw e;
+        }
+    }
+
+    /**
+     * 调用批量loader并记录加载耗时，一批记为一次加载
+     */
+    private Map<? extends K, ? extends V> loadValues(Set<K> keys,
+                                                     Function<? super Set<K>, ? extends Map<? extends K, ? extends V>> loader) {
+        StatsCounter counter = cacheMap.getStatsCounter();
+        Set<K> unmodifiableKeys = Collections.unmodifiableSet(keys);
+        if (counter == null) {
+            return loader.apply(unmodifiableKeys);
+        }
+        long start = System.nanoTime();
+        try {
+            Map<? extends K, ? extends V> values = loader.apply(unmodifiableKeys);
+            counter.recordLoadSuccess(System.nanoTime() - start);
+            return values;
+        } catch (RuntimeException | Error e) {
+            counter.recordLoadFailure(System.nanoTime() - start);
+            throw e;
+        }
+    }
+
+    private V join(CompletableFuture<V> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new SonsureCommonsException("缓存加载失败", cause);
+        }
+    }
+
+    /**
+     * 获取实际存放数据的缓存
+     *
+     * @return the cache map
+     */
+    public AbstractCacheMap<K, V> getCacheMap() {
+        return cacheMap;
+    }
+
+    @Override
+    public int size() {
+        return cacheMap.size();
+    }
+
+    @Override
+    public long getDefaultExpire() {
+        return cacheMap.getDefaultExpire();
+    }
+
+    @Override
+    public void put(K key, V value) {
+        cacheMap.put(key, value);
+    }
+
+    @Override
+    public void put(K key, V value, long expire) {
+        cacheMap.put(key, value, expire);
+    }
+
+    @Override
+    public V get(K key) {
+        return cacheMap.get(key);
+    }
+
+    @Override
+    public Map<K, V> getAll(Collection<? extends K> keys) {
+        return cacheMap.getAll(keys);
+    }
+
+    @Override
+    public void putAll(Map<? extends K, ? extends V> map) {
+        cacheMap.putAll(map);
+    }
+
+    @Override
+    public void removeAll(Collection<? extends K> keys) {
+        cacheMap.removeAll(keys);
+    }
+
+    @Override
+    public int eliminate() {
+        return cacheMap.eliminate();
+    }
+
+    @Override
+    public boolean isFull() {
+        return cacheMap.isFull();
+    }
+
+    @Override
+    public void remove(K key) {
+        cacheMap.remove(key);
+    }
+
+    @Override
+    public void clear() {
+        cacheMap.clear();
+    }
+
+    @Override
+    public int getCacheSize() {
+        return cacheMap.getCacheSize();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return cacheMap.isEmpty();
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2020. www.sonsure.com Inc. All rights reserved.
+ * You may obtain more information at
+ *
+ *   http://www.sonsure.com
+ *
+ * Designed By Selfly Lee (selfly@live.com)
+ */
+
+package com.sonsure.commons.cache;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * 支持加载的缓存MAP接口
+ * <p>
+ * 缓存未命中时同一个key只会执行一次加载，并发的调用方等待同一个加载结果
+ *
+ * @author liyd
+ */
+public interface LoadingCacheMap<K, V> extends CacheMap<K, V> {
+
+    /**
+     * 查找缓存对象，不存在时使用loader加载并放入缓存
+     *
+     * @param key    the key
+     * @param loader 加载函数，返回null时不缓存
+     * @return the v
+     */
+    V get(K key, Function<? super K, ? extends V> loader);
+
+    /**
+     * 批量查找缓存对象，未命中的key合并后调用一次loader加载并放入缓存，其它线程正在加载的key等待其结果
+     *
+     * @param keys   the keys
+     * @param loader 批量加载函数，参数为需要加载的key，未返回或返回null的key不缓存
+     * @return 顺序与keys一致，不包含没有值的key
+     */
+    Map<K, V> getAll(Collection<? extends K> keys, Function<? super Set<K>, ? extends Map<? extends K, ? extends V>> loader);
+
+    /**
+     * 异步查找缓存对象，不存在时在执行器中使用loader加载并放入缓存
+     *
+     * @param key    the key
+     * @param loader 加载函数，返回null时不缓存
+     * @return the completable future
+     */
+    CompletableFuture<V> getAsync(K key, Function<? super K, ? extends V> loader);
+
+    /**
+     * 异步重新加载，加载完成前读取到的仍是旧值
+     *
+     * @param key    the key
+     * @param loader the loader
+     * @return the completable future
+     */
+    CompletableFuture<V> refresh(K key, Function<? super K, ? extends V> loader);
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2020. www.sonsure.com Inc. All rights reserved.
+ * You may obtain more information at
+ *
+ *   http://www.sonsure.com
+ *
+ * Designed By Selfly Lee (selfly@live.com)
+ */
+
+package com.sonsure.commons.cache;
+
+/**
+ * long类型key的缓存实现，key不装箱，每个对象只占用几个数组元素
+ * <p>
+ * 支持LRU和FIFO淘汰策略，语义与{@link LRUCache}、{@link FIFOCache}一致。
+ * 以{@link CacheMap}接口使用时key会装箱，需要避免装箱时使用long参数的方法。
+ *
+ * @author liyd
+ */
+public class LongKeyCacheMap<V> extends PrimitiveKeyCacheMap<V> implements CacheMap<Long, V> {
+
+    /**
+     * 构造方法，按LRU淘汰
+     *
+     * @param cacheSize     最大缓存大小 , 0表示无限制
+     * @param defaultExpire 默认过期时间, 0表示永不过期
+     */
+    public LongKeyCacheMap(int cacheSize, long defaultExpire) {
+        this(EvictionPolicy.LRU, cacheSize, defaultExpire);
+    }
+
+    /**
+     * 构造方法
+     *
+     * @param evictionPolicy 淘汰策略，只支持LRU和FIFO
+     * @param cacheSize      最大缓存大小 , 0表示无限制
+     * @param defaultExpire  默认过期时间, 0表示永不过期
+     */
+    public LongKeyCacheMap(EvictionPolicy evictionPolicy, int cacheSize, long defaultExpire) {
+        super(evictionPolicy, cacheSize, defaultExpire);
+    }
+
+    /**
+     * 添加缓存对象
+     *
+     * @param key
+     * @param value
+     */
+    public void put(long key, V value) {
+        putValue(key, value, getDefaultExpire());
+    }
+
+    /**
+     * 添加缓存对象
+     *
+     * @param key
+     * @param value
+     * @param expire 过期时间
+     */
+    public void put(long key, V value, long expire) {
+        putValue(key, value, expire);
+    }
+
+    /**
+     * 获取缓存对象
+     *
+     * @param key
+     * @return
+     */
+    public V get(long key) {
+        return getValue(key);
+    }
+
+    /**
+     * 是否包含未过期的key
+     *
+     * @param key
+     * @return
+     */
+    public boolean containsKey(long key) {
+        return containsValue(key);
+    }
+
+    /**
+     * 移除缓存对象
+     *
+     * @param key
+     */
+    public void remove(long key) {
+        removeValue(key);
+    }
+
+    @Override
+    public void put(Long key, V value) {
+        put(key.longValue(), value);
+    }
+
+    @Override
+    public void put(Long key, V value, long expire) {
+        put(key.longValue(), value, expire);
+    }
+
+    @Override
+    public V get(Long key) {
+        return get(key.longValue());
+    }
+
+    @Override
+    public void remove(Long key) {
+        remove(key.longValue());
+    }
+}
@@ -0,0 +1,719 @@
+/*
+ * Copyright (c) 2020. www.sonsure.com Inc. All rights reserved.
+ * You may obtain more information at
+ *
+ *   http://www.sonsure.com
+ *
+ * Designed By Selfly Lee (selfly@live.com)
+ */
+
+package com.sonsure.commons.cache;
+
+import com.sonsure.commons.exception.SonsureCommonsException;
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 堆外字节缓存实现
+ * <p>
+ * value存放在直接内存({@link ByteBuffer#allocateDirect(int)})分配的页中，堆上只保留key和位置索引，
+ * 大量缓存数据不再进入老年代。页按需分配，分配时划给一个大小级别并切成等长的块，
+ * value放入能容纳它的最小级别的块中。每个级别各自用CLOCK算法淘汰：读取只设置访问标记，
+ * 淘汰时跳过并清除有标记的对象，因此读操作只需要读锁。
+ * <p>
+ * 某个级别没有空闲块、没有空闲页且自身没有对象可淘汰时，从对象最多的级别回收一整页，页内对象全部删除。
+ * 过期语义与{@link AbstractCacheMap}一致。超过页大小的value不会被缓存，get返回的是复制出来的新数组。
+ * 不再使用时调用{@link #close()}立即释放直接内存，否则要等页被GC回收。
+ *
+ * @author liyd
+ */
+public class OffHeapCacheMap<K> implements CacheMap<K, byte[]>, ExpirySweeper.Target, Closeable {
+
+    /**
+     * 默认页大小
+     */
+    public static final int DEFAULT_PAGE_SIZE = 1 << 20;
+
+    /**
+     * 最小块大小
+     */
+    private static final int MIN_CHUNK_SIZE = 64;
+
+    /**
+     * 相邻级别块大小的增长因子
+     */
+    private static final double GROWTH_FACTOR = 1.25;
+
+    /** 索引 */
+    private final Map<K, Entry<K>> cacheMap = new HashMap<>();
+
+    /** 读写锁对象 */
+    private final ReentrantReadWriteLock cacheLock = new ReentrantReadWriteLock();
+
+    /** 读锁 */
+    private final Lock readLock = cacheLock.readLock();
+
+    /** 写锁 */
+    private final Lock writeLock = cacheLock.writeLock();
+
+    /** 时间源 */
+    private volatile Ticker ticker = Ticker.systemTicker();
+
+    /** 按过期时间组织对象的时间轮 */
+    private TimerWheel timerWheel = new TimerWheel(ticker.read());
+
+    /** 最大缓存个数, 0表示无限制 */
+    private final int cacheSize;
+
+    /** 默认过期时间, 0表示永不过期 */
+    private final long defaultExpire;
+
+    /** 页大小 */
+    private final int pageSize;
+
+    /** 已分配的页 */
+    private final ByteBuffer[] pages;
+
+    /** 已分配的页数 */
+    private int pageCount;
+
+    /** 已分配但未划给任何级别的页 */
+    private final int[] freePages;
+
+    /** 空闲页数 */
+    private int freePageCount;
+
+    /** 大小级别 */
+    private final SizeClass<K>[] sizeClasses;
+
+    /** 已使用的块内存 */
+    private long usedMemory;
+
+    /** 是否设置默认过期时间 */
+    private boolean existCustomExpire;
+
+    /** 后台清理任务 */
+    private ExpirySweeper expirySweeper;
+
+    /**
+     * 构造方法
+     *
+     * @param cacheSize     最大缓存个数, 0表示无限制
+     * @param defaultExpire 默认过期时间, 0表示永不过期
+     * @param maxMemory     最大直接内存
+     */
+    public OffHeapCacheMap(int cacheSize, long defaultExpire, long maxMemory) {
+        this(cacheSize, defaultExpire, maxMemory, DEFAULT_PAGE_SIZE);
+    }
+
+    /**
+     * 构造方法
+     *
+     * @param cacheSize     最大缓存个数, 0表示无限制
+     * @param defaultExpire 默认过期时间, 0表示永不过期
+     * @param maxMemory     最大直接内存
+     * @param pageSize      页大小，也是能缓存的最大value长度
+     */
+    public OffHeapCacheMap(int cacheSize, long defaultExpire, long maxMemory, int pageSize) {
+        if (pageSize < MIN_CHUNK_SIZE) {
+            throw new IllegalArgumentException("pageSize不能小于" + MIN_CHUNK_SIZE);
+        }
+        if (maxMemory < pageSize) {
+            throw new IllegalArgumentException("maxMemory不能小于pageSize");
+        }
+        long maxPages = maxMemory / pageSize;
+        if (maxPages > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("页数过多，请增大pageSize");
+        }
+        this.cacheSize = cacheSize;
+        this.defaultExpire = defaultExpire;
+        this.pageSize = pageSize;
+        this.pages = new ByteBuffer[(int) maxPages];
+        this.freePages = new int[(int) maxPages];
+        this.sizeClasses = newSizeClasses(pageSize);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <K> SizeClass<K>[] newSizeClasses(int pageSize) {
+        SizeClass<K>[] classes = (SizeClass<K>[]) new SizeClass<?>[8];
+        int count = 0;
+        int chunkSize = MIN_CHUNK_SIZE;
+        while (true) {
+            if (count == classes.length) {
+                classes = Arrays.copyOf(classes, count * 2);
+            }
+            if (chunkSize >= pageSize) {
+                classes[count++] = new SizeClass<>(pageSize, 1);
+                break;
+            }
+            classes[count++] = new SizeClass<>(chunkSize, pageSize / chunkSize);
+            int next = (int) Math.min((long) (chunkSize * GROWTH_FACTOR), pageSize);
+            chunkSize = Math.max(chunkSize + 8, (next + 7) & ~7);
+        }
+        return Arrays.copyOf(classes, count);
+    }
+
+    /**
+     * 设置时间源，需要在放入对象前设置
+     *
+     * @param ticker the ticker
+     * @return the off heap cache map
+     */
+    public OffHeapCacheMap<K> setTicker(Ticker ticker) {
+        if (ticker == null) {
+            throw new IllegalArgumentException("ticker不能为空");
+        }
+        writeLock.lock();
+        try {
+            if (!cacheMap.isEmpty()) {
+                throw new SonsureCommonsException("缓存中已有对象，不能再设置时间源");
+            }
+            this.ticker = ticker;
+            this.timerWheel = new TimerWheel(ticker.read());
+        } finally {
+            writeLock.unlock();
+        }
+        return this;
+    }
+
+    /**
+     * 获取时间源
+     *
+     * @return the ticker
+     */
+    public Ticker getTicker() {
+        return ticker;
+    }
+
+    @Override
+    public int size() {
+        readLock.lock();
+        try {
+            return cacheMap.size();
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public long getDefaultExpire() {
+        return defaultExpire;
+    }
+
+    @Override
+    public int getCacheSize() {
+        return cacheSize;
+    }
+
+    /**
+     * 最大直接内存
+     *
+     * @return
+     */
+    public long getMaxMemory() {
+        return (long) pages.length * pageSize;
+    }
+
+    /**
+     * 已使用的块内存
+     *
+     * @return
+     */
+    public long getUsedMemory() {
+        readLock.lock();
+        try {
+            return usedMemory;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public void put(K key, byte[] value) {
+        this.put(key, value, defaultExpire);
+    }
+
+    @Override
+    public void put(K key, byte[] value, long expire) {
+        if (value == null) {
+            throw new IllegalArgumentException("value不能为空");
+        }
+        writeLock.lock();
+        try {
+            if (expire != 0) {
+                existCustomExpire = true;
+            }
+            expireEntries();
+            removeEntry(key);
+            if (value.length > pageSize) {
+                return;
+            }
+            SizeClass<K> sizeClass = sizeClassFor(value.length);
+            if (cacheSize > 0 && cacheMap.size() >= cacheSize) {
+                evict(sizeClass.size > 0 ? sizeClass : largestClass());
+            }
+            long address = allocate(sizeClass);
+            if (address < 0) {
+                return;
+            }
+            Entry<K> entry = new Entry<>(key, sizeClass, address, value.length, expire, ticker.read());
+            ByteBuffer buffer = pages[entry.page()].duplicate();
+            buffer.position(entry.offset());
+            buffer.put(value);
+            cacheMap.put(key, entry);
+            sizeClass.link(entry);
+            if (expire != 0) {
+                timerWheel.schedule(entry);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public byte[] get(K key) {
+        Entry<K> entry;
+        readLock.lock();
+        try {
+            entry = cacheMap.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (!entry.isExpired(ticker.read())) {
+                entry.referenced = true;
+                byte[] value = new byte[entry.length];
+                //duplicate后各自维护position，多个读线程可以同时读取同一页
+                ByteBuffer buffer = pages[entry.page()].duplicate();
+                buffer.position(entry.offset());
+                buffer.get(value);
+                return value;
+            }
+        } finally {
+            readLock.unlock();
+        }
+
+        //过期对象需要在写锁下删除
+        writeLock.lock();
+        try {
+            if (cacheMap.get(key) == entry) {
+                removeEntry(key);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+        return null;
+    }
+
+    @Override
+    public int eliminate() {
+        writeLock.lock();
+        try {
+            int count = expireEntries();
+            if (isFullInternal()) {
+                count += evict(largestClass());
+            }
+            return count;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void cleanUp() {
+        writeLock.lock();
+        try {
+            expireEntries();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * 开启后台定时清理过期对象，否则过期对象只在写操作和读取到时才会被删除
+     *
+     * @param interval 清理间隔(毫秒)
+     */
+    public synchronized void startExpirySweeper(long interval) {
+        if (interval <= 0) {
+            throw new IllegalArgumentException("interval必须大于0");
+        }
+        stopExpirySweeper();
+        expirySweeper = ExpirySweeper.start(this, interval);
+    }
+
+    /**
+     * 停止后台定时清理
+     */
+    public synchronized void stopExpirySweeper() {
+        if (expirySweeper != null) {
+            expirySweeper.stop();
+            expirySweeper = null;
+        }
+    }
+
+    @Override
+    public boolean isFull() {
+        readLock.lock();
+        try {
+            return isFullInternal();
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * 达到最大个数，或者页已全部分配且没有空闲页
+     *
+     * @return
+     */
+    private boolean isFullInternal() {
+        if (cacheSize > 0 && cacheMap.size() >= cacheSize) {
+            return true;
+        }
+        return pageCount == pages.length && freePageCount == 0;
+    }
+
+    @Override
+    public void remove(K key) {
+        writeLock.lock();
+        try {
+            removeEntry(key);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * 清空缓存，已分配的直接内存保留复用
+     */
+    @Override
+    public void clear() {
+        writeLock.lock();
+        try {
+            cacheMap.clear();
+            timerWheel.clear();
+            for (SizeClass<K> sizeClass : sizeClasses) {
+                sizeClass.reset();
+            }
+            for (int i = 0; i < pageCount; i++) {
+                freePages[i] = i;
+            }
+            freePageCount = pageCount;
+            usedMemory = 0;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * 删除所有对象并立即释放已分配的直接内存，停止后台清理。之后再放入会重新分配页
+     */
+    @Override
+    public void close() {
+        stopExpirySweeper();
+        writeLock.lock();
+        try {
+            clear();
+            for (int i = 0; i < pageCount; i++) {
+                DirectBuffers.release(pages[i]);
+                pages[i] = null;
+            }
+            pageCount = 0;
+            freePageCount = 0;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * 推进时间轮，删除已过期的对象，调用方需持有写锁
+     *
+     * @return 删除的对象数
+     */
+    private int expireEntries() {
+        if (defaultExpire <= 0 && !existCustomExpire) {
+            return 0;
+        }
+        int[] count = new int[1];
+        timerWheel.advance(ticker.read(), node -> {
+            @SuppressWarnings("unchecked")
+            Entry<K> entry = (Entry<K>) node;
+            if (cacheMap.get(entry.key) == entry) {
+                removeEntry(entry.key);
+                count[0]++;
+            }
+        });
+        return count[0];
+    }
+
+    /**
+     * 删除对象并释放块，调用方需持有写锁
+     *
+     * @param key
+     */
+    private void removeEntry(K key) {
+        Entry<K> entry = cacheMap.remove(key);
+        if (entry != null) {
+            timerWheel.deschedule(entry);
+            entry.sizeClass.unlink(entry);
+            entry.sizeClass.free(entry.address);
+            usedMemory -= entry.sizeClass.chunkSize;
+        }
+    }
+
+    /**
+     * 按CLOCK算法淘汰一个对象，调用方需持有写锁
+     *
+     * @param sizeClass
+     * @return 淘汰的对象数
+     */
+    private int evict(SizeClass<K> sizeClass) {
+        if (sizeClass == null || sizeClass.size == 0) {
+            return 0;
+        }
+        Entry<K> victim = sizeClass.nextVictim();
+        removeEntry(victim.key);
+        return 1;
+    }
+
+    /**
+     * 对象最多的级别
+     *
+     * @return
+     */
+    private SizeClass<K> largestClass() {
+        SizeClass<K> largest = null;
+        for (SizeClass<K> sizeClass : sizeClasses) {
+            if (sizeClass.size > 0 && (largest == null || sizeClass.size > largest.size)) {
+                largest = sizeClass;
+            }
+        }
+        return largest;
+    }
+
+    /**
+     * 分配块，依次使用空闲块、空闲页、新页，都没有时淘汰本级别的对象，本级别没有对象时从其它级别回收一页
+     *
+     * @param sizeClass
+     * @return 块地址，无法分配时返回-1
+     */
+    private long allocate(SizeClass<K> sizeClass) {
+        if (sizeClass.freeCount == 0) {
+            int page;
+            if (freePageCount > 0) {
+                page = freePages[--freePageCount];
+            } else if (pageCount < pages.length) {
+                page = pageCount;
+                pages[pageCount++] = ByteBuffer.allocateDirect(pageSize);
+            } else if (sizeClass.size > 0) {
+                evict(sizeClass);
+                page = -1;
+            } else {
+                page = reclaimPage();
+                if (page < 0) {
+                    return -1;
+                }
+            }
+            if (page >= 0) {
+                for (int i = sizeClass.chunksPerPage - 1; i >= 0; i--) {
+                    sizeClass.free(((long) page << 32) | ((long) i * sizeClass.chunkSize));
+                }
+            }
+        }
+        usedMemory += sizeClass.chunkSize;
+        return sizeClass.freeChunks[--sizeClass.freeCount];
+    }
+
+    /**
+     * 从对象最多的级别回收CLOCK指针选中对象所在的页，删除页内所有对象，调用方需持有写锁
+     *
+     * @return 页号，没有可回收的页时返回-1
+     */
+    private int reclaimPage() {
+        SizeClass<K> victimClass = largestClass();
+        if (victimClass == null) {
+            return -1;
+        }
+        int page = victimClass.nextVictim().page();
+        Entry<K> e = victimClass.hand;
+        for (int i = victimClass.size; i > 0; i--) {
+            Entry<K> next = e.next;
+            if (e.page() == page) {
+                removeEntry(e.key);
+            }
+            e = next;
+        }
+        //页内的空闲块不再属于该级别
+        int count = 0;
+        for (int i = 0; i < victimClass.freeCount; i++) {
+            long address = victimClass.freeChunks[i];
+            if ((int) (address >>> 32) != page) {
+                victimClass.freeChunks[count++] = address;
+            }
+        }
+        victimClass.freeCount = count;
+        return page;
+    }
+
+    /**
+     * 能容纳指定长度的最小级别
+     *
+     * @param length
+     * @return
+     */
+    private SizeClass<K> sizeClassFor(int length) {
+        int low = 0;
+        int high = sizeClasses.length - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sizeClasses[mid].chunkSize < length) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return sizeClasses[low];
+    }
+
+    /**
+     * 索引项
+     */
+    private static final class Entry<K> extends TimerWheel.Node {
+
+        final K key;
+
+        final SizeClass<K> sizeClass;
+
+        /** 高32位为页号，低32位为页内偏移 */
+        final long address;
+
+        final int length;
+
+        final long liveTime;
+
+        /** CLOCK访问标记，读锁下设置 */
+        volatile boolean referenced;
+
+        Entry<K> prev;
+
+        Entry<K> next;
+
+        Entry(K key, SizeClass<K> sizeClass, long address, int length, long liveTime, long now) {
+            this.key = key;
+            this.sizeClass = sizeClass;
+            this.address = address;
+            this.length = length;
+            this.liveTime = liveTime;
+            this.expireTime = now + liveTime;
+        }
+
+        int page() {
+            return (int) (address >>> 32);
+        }
+
+        int offset() {
+            return (int) address;
+        }
+
+        boolean isExpired(long now) {
+            if (liveTime == 0) {
+                return false;
+            }
+            return expireTime < now;
+        }
+    }
+
+    /**
+     * 大小级别，维护空闲块和本级别对象的CLOCK环
+     */
+    private static final class SizeClass<K> {
+
+        final int chunkSize;
+
+        final int chunksPerPage;
+
+        long[] freeChunks = new long[16];
+
+        int freeCount;
+
+        /** CLOCK指针，为null时环为空 */
+        Entry<K> hand;
+
+        int size;
+
+        SizeClass(int chunkSize, int chunksPerPage) {
+            this.chunkSize = chunkSize;
+            this.chunksPerPage = chunksPerPage;
+        }
+
+        void free(long address) {
+            if (freeCount == freeChunks.length) {
+                freeChunks = Arrays.copyOf(freeChunks, freeCount * 2);
+            }
+            freeChunks[freeCount++] = address;
+        }
+
+        /**
+         * 插入到指针前，即最后被扫描到的位置
+         */
+        void link(Entry<K> entry) {
+            if (hand == null) {
+                entry.prev = entry;
+                entry.next = entry;
+                hand = entry;
+            } else {
+                Entry<K> h = hand;
+                entry.prev = h.prev;
+                entry.next = h;
+                h.prev.next = entry;
+                h.prev = entry;
+            }
+            size++;
+        }
+
+        void unlink(Entry<K> entry) {
+            if (entry.next == entry) {
+                hand = null;
+            } else {
+                entry.prev.next = entry.next;
+                entry.next.prev = entry.prev;
+                if (hand == entry) {
+                    hand = entry.next;
+                }
+            }
+            entry.prev = null;
+            entry.next = null;
+            size--;
+        }
+
+        /**
+         * 转动指针，清除经过对象的访问标记，返回第一个没有标记的对象
+         */
+        Entry<K> nextVictim() {
+            Entry<K> e = hand;
+            while (e.referenced) {
+                e.referenced = false;
+                e = e.next;
+            }
+            hand = e;
+            return e;
+        }
+
+        void reset() {
+            freeCount = 0;
+            hand = null;
+            size = 0;
+        }
+    }
+}
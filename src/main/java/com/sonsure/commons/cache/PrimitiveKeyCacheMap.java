@@ -0,0 +1,644 @@
+/*
+ * Copyright (c) 2020. www.sonsure.com Inc. All rights reserved.
+ * You may obtain more information at
+ *
+ *   http://www.sonsure.com
+ *
+ * Designed By Selfly Lee (selfly@live.com)
+ */
+
+package com.sonsure.commons.cache;
+
+import com.sonsure.commons.exception.SonsureCommonsException;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 基本类型key缓存的公共实现
+ * <p>
+ * 对象按下标存放在并行数组中，key、value、过期时间和淘汰链表的前后指针各占一个数组，
+ * 哈希表是开放寻址的int数组，存放对象下标，删除时后移填补不留墓碑。没有CacheObject和HashMap.Node，
+ * 查找不装箱，读操作不分配对象。
+ * <p>
+ * LRU的访问顺序与{@link AbstractCacheMap}一样先记录到缓冲区，缓冲区满或写操作时在写锁下回放，
+ * 缓冲区满而写锁被占用时丢弃记录。过期对象在读取到、{@link #cleanUp()}和{@link #eliminate()}时删除，
+ * 放入时只按淘汰顺序删除最早的对象。
+ *
+ * @author liyd
+ */
+abstract class PrimitiveKeyCacheMap<V> implements ExpirySweeper.Target {
+
+    /**
+     * 空下标
+     */
+    private static final int NIL = -1;
+
+    /**
+     * 不限制大小时的初始容量
+     */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * 访问记录缓冲区大小
+     */
+    private static final int READ_BUFFER_SIZE = 128;
+
+    /** 读写锁对象 */
+    private final ReentrantReadWriteLock cacheLock = new ReentrantReadWriteLock();
+
+    /** 读锁 */
+    private final Lock readLock = cacheLock.readLock();
+
+    /** 写锁 */
+    private final Lock writeLock = cacheLock.writeLock();
+
+    /** 最大缓存大小 , 0表示无限制 */
+    private final int cacheSize;
+
+    /** 默认过期时间, 0表示永不过期 */
+    private final long defaultExpire;
+
+    /** 时间源 */
+    private volatile Ticker ticker = Ticker.systemTicker();
+
+    /** 是否按访问顺序淘汰(LRU)，否则按放入顺序(FIFO) */
+    private final boolean accessOrder;
+
+    /** 哈希表，存放对象下标+1，0表示空 */
+    private int[] table;
+
+    /** key */
+    private long[] keys;
+
+    /** value */
+    private Object[] values;
+
+    /** 过期时间，0表示永不过期 */
+    private long[] expireTimes;
+
+    /** 淘汰链表前驱 */
+    private int[] prev;
+
+    /** 淘汰链表后继，空闲下标也用它串成链表 */
+    private int[] next;
+
+    /** 最早的对象 */
+    private int head = NIL;
+
+    /** 最晚的对象 */
+    private int tail = NIL;
+
+    /** 空闲下标链表 */
+    private int freeHead = NIL;
+
+    /** 已使用过的最大下标+1 */
+    private int allocated;
+
+    /** 对象个数 */
+    private int size;
+
+    /** 是否设置默认过期时间 */
+    private boolean existCustomExpire;
+
+    /** 访问记录，存放对象下标+1 */
+    private final int[] readBuffer;
+
+    /** 访问记录写入位置 */
+    private final AtomicInteger readBufferIndex;
+
+    /** 后台清理任务 */
+    private ExpirySweeper expirySweeper;
+
+    /**
+     * 构造方法
+     *
+     * @param evictionPolicy 淘汰策略，只支持LRU和FIFO
+     * @param cacheSize      最大缓存大小 , 0表示无限制
+     * @param defaultExpire  默认过期时间, 0表示永不过期
+     */
+    PrimitiveKeyCacheMap(EvictionPolicy evictionPolicy, int cacheSize, long defaultExpire) {
+        if (evictionPolicy != EvictionPolicy.LRU && evictionPolicy != EvictionPolicy.FIFO) {
+            throw new IllegalArgumentException("只支持LRU和FIFO淘汰策略:" + evictionPolicy);
+        }
+        if (cacheSize < 0) {
+            throw new IllegalArgumentException("cacheSize不能小于0");
+        }
+        this.cacheSize = cacheSize;
+        this.defaultExpire = defaultExpire;
+        this.accessOrder = evictionPolicy == EvictionPolicy.LRU;
+        this.readBuffer = accessOrder ? new int[READ_BUFFER_SIZE] : null;
+        this.readBufferIndex = accessOrder ? new AtomicInteger() : null;
+        int capacity = cacheSize > 0 ? cacheSize : INITIAL_CAPACITY;
+        this.keys = new long[capacity];
+        this.values = new Object[capacity];
+        this.expireTimes = new long[capacity];
+        this.prev = new int[capacity];
+        this.next = new int[capacity];
+        this.table = new int[tableSizeFor(capacity)];
+    }
+
+    /**
+     * 哈希表大小，负载因子不超过0.5
+     *
+     * @param capacity
+     * @return
+     */
+    private static int tableSizeFor(int capacity) {
+        int n = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 2;
+        return n < 0 ? 1 << 30 : n;
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * 设置时间源，需要在放入对象前设置
+     *
+     * @param ticker the ticker
+     */
+    public void setTicker(Ticker ticker) {
+        if (ticker == null) {
+            throw new IllegalArgumentException("ticker不能为空");
+        }
+        writeLock.lock();
+        try {
+            if (size > 0) {
+                throw new SonsureCommonsException("缓存中已有对象，不能再设置时间源");
+            }
+            this.ticker = ticker;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * 获取时间源
+     *
+     * @return the ticker
+     */
+    public Ticker getTicker() {
+        return ticker;
+    }
+
+    /**
+     * 返回默认存活时间
+     *
+     * @return
+     */
+    public long getDefaultExpire() {
+        return defaultExpire;
+    }
+
+    /**
+     * 最大缓存大小
+     *
+     * @return
+     */
+    public int getCacheSize() {
+        return cacheSize;
+    }
+
+    /**
+     * 缓存大小
+     *
+     * @return
+     */
+    public int size() {
+        readLock.lock();
+        try {
+            return size;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * 缓存是否为空
+     *
+     * @return
+     */
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * 缓存是否已满
+     *
+     * @return
+     */
+    public boolean isFull() {
+        if (cacheSize == 0) {
+            return false;
+        }
+        return size() >= cacheSize;
+    }
+
+    /**
+     * 添加缓存对象
+     *
+     * @param key
+     * @param value
+     * @param expire 过期时间
+     */
+    void putValue(long key, V value, long expire) {
+        writeLock.lock();
+        try {
+            if (expire != 0) {
+                existCustomExpire = true;
+            }
+            drainReadBuffer();
+            long expireTime = expire == 0 ? 0 : ticker.read() + expire;
+            int index = indexOf(key);
+            if (index != NIL) {
+                values[index] = value;
+                expireTimes[index] = expireTime;
+                //与LRUCache和FIFOCache一致，替换只在LRU下改变顺序
+                if (accessOrder) {
+                    moveToTail(index);
+                }
+                return;
+            }
+            if (cacheSize > 0 && size >= cacheSize) {
+                removeAt(head);
+            }
+            index = allocate();
+            keys[index] = key;
+            values[index] = value;
+            expireTimes[index] = expireTime;
+            linkLast(index);
+            insertIntoTable(key, index);
+            size++;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * 查找缓存对象，不分配对象
+     *
+     * @param key
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    V getValue(long key) {
+        boolean drain = false;
+        int index;
+        readLock.lock();
+        try {
+            index = indexOf(key);
+            if (index == NIL) {
+                return null;
+            }
+            long expireTime = expireTimes[index];
+            if (expireTime == 0 || expireTime >= ticker.read()) {
+                if (accessOrder) {
+                    drain = recordAccess(index);
+                }
+                return (V) values[index];
+            }
+        } finally {
+            readLock.unlock();
+            if (drain) {
+                tryDrainReadBuffer();
+            }
+        }
+
+        //过期对象需要在写锁下删除
+        writeLock.lock();
+        try {
+            index = indexOf(key);
+            if (index != NIL && isExpired(index, ticker.read())) {
+                removeAt(index);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+        return null;
+    }
+
+    /**
+     * 删除缓存对象
+     *
+     * @param key
+     */
+    void removeValue(long key) {
+        writeLock.lock();
+        try {
+            int index = indexOf(key);
+            if (index != NIL) {
+                removeAt(index);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * 是否包含未过期的key
+     *
+     * @param key
+     * @return
+     */
+    boolean containsValue(long key) {
+        readLock.lock();
+        try {
+            int index = indexOf(key);
+            return index != NIL && !isExpired(index, ticker.read());
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * 删除过期对象，仍然满时删除最早的对象
+     *
+     * @return 删除的对象数
+     */
+    public int eliminate() {
+        writeLock.lock();
+        try {
+            drainReadBuffer();
+            int count = expireEntries();
+            if (cacheSize > 0 && size >= cacheSize) {
+                removeAt(head);
+                count++;
+            }
+            return count;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * 回放访问记录并删除过期对象，后台清理任务定时调用
+     */
+    @Override
+    public void cleanUp() {
+        writeLock.lock();
+        try {
+            drainReadBuffer();
+            expireEntries();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * 开启后台定时清理过期对象，否则过期对象只在读取到或调用{@link #eliminate()}时才会被删除
+     *
+     * @param interval 清理间隔(毫秒)
+     */
+    public synchronized void startExpirySweeper(long interval) {
+        if (interval <= 0) {
+            throw new IllegalArgumentException("interval必须大于0");
+        }
+        stopExpirySweeper();
+        expirySweeper = ExpirySweeper.start(this, interval);
+    }
+
+    /**
+     * 停止后台定时清理
+     */
+    public synchronized void stopExpirySweeper() {
+        if (expirySweeper != null) {
+            expirySweeper.stop();
+            expirySweeper = null;
+        }
+    }
+
+    /**
+     * 清空缓存
+     */
+    public void clear() {
+        writeLock.lock();
+        try {
+            if (accessOrder) {
+                readBufferIndex.set(0);
+            }
+            Arrays.fill(table, 0);
+            Arrays.fill(values, 0, allocated, null);
+            head = NIL;
+            tail = NIL;
+            freeHead = NIL;
+            allocated = 0;
+            size = 0;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * 按淘汰链表顺序扫描删除过期对象，调用方需持有写锁
+     *
+     * @return
+     */
+    private int expireEntries() {
+        if (defaultExpire <= 0 && !existCustomExpire) {
+            return 0;
+        }
+        long now = ticker.read();
+        int count = 0;
+        int index = head;
+        while (index != NIL) {
+            int nextIndex = next[index];
+            if (isExpired(index, now)) {
+                removeAt(index);
+                count++;
+            }
+            index = nextIndex;
+        }
+        return count;
+    }
+
+    private boolean isExpired(int index, long now) {
+        long expireTime = expireTimes[index];
+        return expireTime != 0 && expireTime < now;
+    }
+
+    /**
+     * 记录一次访问，在读锁下调用
+     *
+     * @param index
+     * @return 缓冲区是否已满需要回放
+     */
+    private boolean recordAccess(int index) {
+        int i = readBufferIndex.get();
+        //已满时每个读线程都尝试回放，避免唯一一次tryLock失败后不再回放
+        if (i >= READ_BUFFER_SIZE) {
+            return true;
+        }
+        //计数不超过缓冲区大小，竞争失败直接丢弃
+        if (readBufferIndex.compareAndSet(i, i + 1)) {
+            //写锁获取前所有读锁都已释放，回放时可以看到这里的写入
+            readBuffer[i] = index + 1;
+            return i + 1 >= READ_BUFFER_SIZE;
+        }
+        return false;
+    }
+
+    private void tryDrainReadBuffer() {
+        if (writeLock.tryLock()) {
+            try {
+                drainReadBuffer();
+            } finally {
+                writeLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * 回放访问记录，调用方需持有写锁
+     */
+    private void drainReadBuffer() {
+        if (!accessOrder) {
+            return;
+        }
+        int count = Math.min(readBufferIndex.get(), READ_BUFFER_SIZE);
+        for (int i = 0; i < count; i++) {
+            int index = readBuffer[i] - 1;
+            //记录后可能已被删除，下标被复用时只会影响顺序
+            if (index >= 0 && index < allocated && values[index] != null) {
+                moveToTail(index);
+            }
+        }
+        readBufferIndex.set(0);
+    }
+
+    /**
+     * 查找key所在的下标
+     *
+     * @param key
+     * @return
+     */
+    private int indexOf(long key) {
+        int mask = table.length - 1;
+        int i = hash(key) & mask;
+        while (true) {
+            int e = table[i];
+            if (e == 0) {
+                return NIL;
+            }
+            if (keys[e - 1] == key) {
+                return e - 1;
+            }
+            i = (i + 1) & mask;
+        }
+    }
+
+    private void insertIntoTable(long key, int index) {
+        int mask = table.length - 1;
+        int i = hash(key) & mask;
+        while (table[i] != 0) {
+            i = (i + 1) & mask;
+        }
+        table[i] = index + 1;
+    }
+
+    /**
+     * 从哈希表删除，后面同一探测序列上的对象前移填补空位
+     *
+     * @param key
+     */
+    private void deleteFromTable(long key) {
+        int mask = table.length - 1;
+        int i = hash(key) & mask;
+        while (keys[table[i] - 1] != key) {
+            i = (i + 1) & mask;
+        }
+        int j = i;
+        while (true) {
+            j = (j + 1) & mask;
+            int e = table[j];
+            if (e == 0) {
+                break;
+            }
+            int home = hash(keys[e - 1]) & mask;
+            //home不在(i, j]区间内时可以移到i
+            if (i <= j ? (home <= i || home > j) : (home <= i && home > j)) {
+                table[i] = e;
+                i = j;
+            }
+        }
+        table[i] = 0;
+    }
+
+    private void removeAt(int index) {
+        deleteFromTable(keys[index]);
+        unlink(index);
+        values[index] = null;
+        next[index] = freeHead;
+        freeHead = index;
+        size--;
+    }
+
+    /**
+     * 分配下标，没有空闲下标时扩容
+     *
+     * @return
+     */
+    private int allocate() {
+        if (freeHead != NIL) {
+            int index = freeHead;
+            freeHead = next[index];
+            return index;
+        }
+        if (allocated == keys.length) {
+            grow();
+        }
+        return allocated++;
+    }
+
+    private void grow() {
+        int capacity = keys.length << 1;
+        keys = Arrays.copyOf(keys, capacity);
+        values = Arrays.copyOf(values, capacity);
+        expireTimes = Arrays.copyOf(expireTimes, capacity);
+        prev = Arrays.copyOf(prev, capacity);
+        next = Arrays.copyOf(next, capacity);
+        int tableSize = tableSizeFor(capacity);
+        if (tableSize > table.length) {
+            table = new int[tableSize];
+            for (int index = head; index != NIL; index = next[index]) {
+                insertIntoTable(keys[index], index);
+            }
+        }
+    }
+
+    private void linkLast(int index) {
+        prev[index] = tail;
+        next[index] = NIL;
+        if (tail == NIL) {
+            head = index;
+        } else {
+            next[tail] = index;
+        }
+        tail = index;
+    }
+
+    private void unlink(int index) {
+        int p = prev[index];
+        int n = next[index];
+        if (p == NIL) {
+            head = n;
+        } else {
+            next[p] = n;
+        }
+        if (n == NIL) {
+            tail = p;
+        } else {
+            prev[n] = p;
+        }
+    }
+
+    private void moveToTail(int index) {
+        if (tail != index) {
+            unlink(index);
+            linkLast(index);
+        }
+    }
+}
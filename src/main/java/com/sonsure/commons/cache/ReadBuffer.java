@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2020. www.sonsure.com Inc. All rights reserved.
+ * You may obtain more information at
+ *
+ *   http://www.sonsure.com
+ *
+ * Designed By Selfly Lee (selfly@live.com)
+ */
+
+package com.sonsure.commons.cache;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * 读操作记录缓冲区
+ * <p>
+ * 按线程分条的有界环形缓冲，读线程只做一次CAS追加，不修改缓存结构；
+ * 缓冲满时丢弃记录(访问顺序允许有损)，由持有写锁的线程批量回放。
+ *
+ * @author liyd
+ */
+final class ReadBuffer<E> {
+
+    /**
+     * 每个分条的容量，必须是2的幂
+     */
+    static final int STRIPE_SIZE = 16;
+
+    private static final int STRIPE_MASK = STRIPE_SIZE - 1;
+
+    /**
+     * 分条
+     */
+    private final Stripe<E>[] stripes;
+
+    private final int stripeMask;
+
+    ReadBuffer() {
+        int count = 1;
+        int processors = Runtime.getRuntime().availableProcessors();
+        while (count < processors * 2) {
+            count <<= 1;
+        }
+        this.stripes = newStripes(count);
+        for (int i = 0; i < count; i++) {
+            this.stripes[i] = new Stripe<>();
+        }
+        this.stripeMask = count - 1;
+    }
+
+    /**
+     * 创建分条数组，泛型数组只能通过通配符数组转换
+     *
+     * @param count 分条数
+     * @return the stripe [ ]
+     */
+    @SuppressWarnings("unchecked")
+    private static <E> Stripe<E>[] newStripes(int count) {
+        return (Stripe<E>[]) new Stripe<?>[count];
+    }
+
+    /**
+     * 记录一次读操作
+     *
+     * @param e the e
+     * @return 所在分条已满需要回放时返回true
+     */
+    boolean offer(E e) {
+        long id = Thread.currentThread().getId();
+        int h = (int) (id ^ (id >>> 32)) * 0x9E3779B9;
+        Stripe<E> stripe = stripes[(h ^ (h >>> 16)) & stripeMask];
+        long head = stripe.readCounter;
+        long tail = stripe.writeCounter.get();
+        long size = tail - head;
+        if (size >= STRIPE_SIZE) {
+            return true;
+        }
+        if (stripe.writeCounter.compareAndSet(tail, tail + 1)) {
+            stripe.buffer.lazySet((int) (tail & STRIPE_MASK), e);
+            return size + 1 >= STRIPE_SIZE;
+        }
+        //竞争失败直接丢弃
+        return false;
+    }
+
+    /**
+     * 回放所有记录，调用方需持有写锁
+     *
+     * @param consumer the consumer
+     */
+    void drainTo(Consumer<E> consumer) {
+        for (Stripe<E> stripe : stripes) {
+            long head = stripe.readCounter;
+            long tail = stripe.writeCounter.get();
+            while (head < tail) {
+                int index = (int) (head & STRIPE_MASK);
+                E e = stripe.buffer.get(index);
+                //已占位但还未写入
+                if (e == null) {
+                    break;
+                }
+                stripe.buffer.lazySet(index, null);
+                consumer.accept(e);
+                head++;
+            }
+            stripe.readCounter = head;
+        }
+    }
+
+    private static final class Stripe<E> {
+
+        final AtomicReferenceArray<E> buffer = new AtomicReferenceArray<>(STRIPE_SIZE);
+
+        final AtomicLong writeCounter = new AtomicLong();
+
+        volatile long readCounter;
+    }
+}
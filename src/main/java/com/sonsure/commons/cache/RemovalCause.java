@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2020. www.sonsure.com Inc. All rights reserved.
+ * You may obtain more information at
+ *
+ *   http://www.sonsure.com
+ *
+ * Designed By Selfly Lee (selfly@live.com)
+ */
+
+package com.sonsure.commons.cache;
+
+/**
+ * 缓存对象被删除的原因
+ *
+ * @author liyd
+ */
+public enum RemovalCause {
+
+    /**
+     * 调用remove或clear删除
+     */
+    EXPLICIT(false),
+
+    /**
+     * 相同key放入了新值
+     */
+    REPLACED(false),
+
+    /**
+     * 过期
+     */
+    EXPIRED(true),
+
+    /**
+     * 超过缓存大小被淘汰
+     */
+    SIZE(true),
+
+    /**
+     * 软引用或弱引用的值已被GC回收
+     */
+    COLLECTED(true);
+
+    private final boolean eviction;
+
+    RemovalCause(boolean eviction) {
+        this.eviction = eviction;
+    }
+
+    /**
+     * 是否由缓存自动淘汰，而不是使用方主动删除或替换
+     *
+     * @return the boolean
+     */
+    public boolean isEviction() {
+        return eviction;
+    }
+}
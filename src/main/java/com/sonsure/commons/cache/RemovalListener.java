@@ -0,0 +1,28 @@
+/*
+ * Copyright (c) 2020. www.sonsure.com Inc. All rights reserved.
+ * You may obtain more information at
+ *
+ *   http://www.sonsure.com
+ *
+ * Designed By Selfly Lee (selfly@live.com)
+ */
+
+package com.sonsure.commons.cache;
+
+/**
+ * 缓存对象被删除时的回调，在释放缓存锁之后由指定的执行器调用
+ *
+ * @author liyd
+ */
+@FunctionalInterface
+public interface RemovalListener<K, V> {
+
+    /**
+     * 对象被删除
+     *
+     * @param key   the key
+     * @param value the value
+     * @param cause 删除原因
+     */
+    void onRemoval(K key, V value, RemovalCause cause);
+}
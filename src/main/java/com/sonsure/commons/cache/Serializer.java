@@ -0,0 +1,35 @@
+/*
+ * Copyright (c) 2020. www.sonsure.com Inc. All rights reserved.
+ * You may obtain more information at
+ *
+ *   http://www.sonsure.com
+ *
+ * Designed By Selfly Lee (selfly@live.com)
+ */
+
+package com.sonsure.commons.cache;
+
+/**
+ * 缓存对象序列化，用于写入磁盘
+ *
+ * @author liyd
+ * @see JdkSerializer
+ */
+public interface Serializer<T> {
+
+    /**
+     * 序列化
+     *
+     * @param obj the obj
+     * @return the byte [ ]
+     */
+    byte[] serialize(T obj);
+
+    /**
+     * 反序列化
+     *
+     * @param bytes the bytes
+     * @return the t
+     */
+    T deserialize(byte[] bytes);
+}
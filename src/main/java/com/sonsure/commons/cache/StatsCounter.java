@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2020. www.sonsure.com Inc. All rights reserved.
+ * You may obtain more information at
+ *
+ *   http://www.sonsure.com
+ *
+ * Designed By Selfly Lee (selfly@live.com)
+ */
+
+package com.sonsure.commons.cache;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 缓存统计计数器，使用LongAdder避免多线程下计数成为竞争点
+ *
+ * @author liyd
+ */
+final class StatsCounter {
+
+    private final LongAdder hitCount = new LongAdder();
+
+    private final LongAdder missCount = new LongAdder();
+
+    private final LongAdder putCount = new LongAdder();
+
+    private final LongAdder sizeEvictionCount = new LongAdder();
+
+    private final LongAdder expiredEvictionCount = new LongAdder();
+
+    private final LongAdder collectedEvictionCount = new LongAdder();
+
+    private final LongAdder loadSuccessCount = new LongAdder();
+
+    private final LongAdder loadFailureCount = new LongAdder();
+
+    private final LongAdder totalLoadTime = new LongAdder();
+
+    void recordHit() {
+        hitCount.increment();
+    }
+
+    void recordHits(int count) {
+        hitCount.add(count);
+    }
+
+    void recordMiss() {
+        missCount.increment();
+    }
+
+    void recordMisses(int count) {
+        missCount.add(count);
+    }
+
+    void recordPut() {
+        putCount.increment();
+    }
+
+    void recordPuts(int count) {
+        putCount.add(count);
+    }
+
+    void recordEviction(RemovalCause cause) {
+        if (cause == RemovalCause.SIZE) {
+            sizeEvictionCount.increment();
+        } else if (cause == RemovalCause.EXPIRED) {
+            expiredEvictionCount.increment();
+        } else if (cause == RemovalCause.COLLECTED) {
+            collectedEvictionCount.increment();
+        }
+    }
+
+    void recordLoadSuccess(long loadTime) {
+        loadSuccessCount.increment();
+        totalLoadTime.add(loadTime);
+    }
+
+    void recordLoadFailure(long loadTime) {
+        loadFailureCount.increment();
+        totalLoadTime.add(loadTime);
+    }
+
+    CacheStats snapshot() {
+        return new CacheStats(
+                hitCount.sum(),
+                missCount.sum(),
+                putCount.sum(),
+                sizeEvictionCount.sum(),
+                expiredEvictionCount.sum(),
+                collectedEvictionCount.sum(),
+                loadSuccessCount.sum(),
+                loadFailureCount.sum(),
+                totalLoadTime.sum());
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright (c) 2020. www.sonsure.com Inc. All rights reserved.
+ * You may obtain more information at
+ *
+ *   http://www.sonsure.com
+ *
+ * Designed By Selfly Lee (selfly@live.com)
+ */
+
+package com.sonsure.commons.cache;
+
+/**
+ * 缓存使用的时间源，测试时可以替换为手动推进的实现
+ *
+ * @author liyd
+ */
+@FunctionalInterface
+public interface Ticker {
+
+    /**
+     * 当前时间(毫秒)
+     *
+     * @return the long
+     */
+    long read();
+
+    /**
+     * 使用{@link System#currentTimeMillis()}的时间源
+     *
+     * @return the ticker
+     */
+    static Ticker systemTicker() {
+        return System::currentTimeMillis;
+    }
+
+    /**
+     * 后台线程每毫秒更新一次的时间源，读取只是一次volatile读，精度约1毫秒。
+     * 所有缓存共用一个守护线程，第一次调用时启动
+     *
+     * @return the ticker
+     */
+    static Ticker coarseTicker() {
+        return CoarseTicker.INSTANCE;
+    }
+}
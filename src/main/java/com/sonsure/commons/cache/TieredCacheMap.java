@@ -0,0 +1,276 @@
+/*
+ * Copyright (c) 2020. www.sonsure.com Inc. All rights reserved.
+ * You may obtain more information at
+ *
+ *   http://www.sonsure.com
+ *
+ * Designed By Selfly Lee (selfly@live.com)
+ */
+
+package com.sonsure.commons.cache;
+
+import com.sonsure.commons.exception.SonsureCommonsException;
+
+import java.io.Closeable;
+import java.io.File;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 两级缓存，内存中的{@link AbstractCacheMap}作为一级，磁盘作为二级
+ * <p>
+ * 一级缓存因大小被淘汰的对象在后台线程中序列化后写入二级；一级未命中时从二级读取，放回一级并从二级删除。
+ * 二级由只追加写入的内存映射段文件组成，索引在内存中，后台定时压缩有效数据比例低的段。
+ * 过期时间随对象一起写入二级，读取时同样判断。{@link #close()}时一级中的对象全部写入二级，
+ * 使用同一目录重新创建后可以继续读取。
+ * <p>
+ * 写入二级是异步的：淘汰后、写入完成前读取会短暂未命中；与淘汰同时发生的remove可能使被淘汰的旧值仍留在二级。
+ *
+ * @author liyd
+ */
+public class TieredCacheMap<K, V> implements CacheMap<K, V>, Closeable {
+
+    /**
+     * 默认段文件大小
+     */
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+    /**
+     * 默认最大磁盘空间
+     */
+    public static final long DEFAULT_MAX_DISK_SIZE = 1024L * 1024 * 1024;
+
+    /**
+     * 默认压缩间隔
+     */
+    public static final long DEFAULT_COMPACTION_INTERVAL = 60 * 1000;
+
+    /**
+     * 有效数据比例低于该值的段会被压缩
+     */
+    private static final double COMPACTION_THRESHOLD = 0.5;
+
+    /**
+     * 一级缓存
+     */
+    private final AbstractCacheMap<K, V> memoryCache;
+
+    /**
+     * 二级缓存
+     */
+    private final DiskStore<K> diskStore;
+
+    /**
+     * value序列化
+     */
+    private final Serializer<V> valueSerializer;
+
+    /**
+     * 写入二级和压缩的后台线程，单线程保证写入顺序
+     */
+    private final ScheduledThreadPoolExecutor executor;
+
+    /**
+     * 构造方法
+     *
+     * @param memoryCache     一级缓存
+     * @param directory       二级缓存目录
+     * @param keySerializer   key序列化
+     * @param valueSerializer value序列化
+     */
+    public TieredCacheMap(AbstractCacheMap<K, V> memoryCache, File directory, Serializer<K> keySerializer,
+                          Serializer<V> valueSerializer) {
+        this(memoryCache, directory, keySerializer, valueSerializer, DEFAULT_SEGMENT_SIZE, DEFAULT_MAX_DISK_SIZE,
+                DEFAULT_COMPACTION_INTERVAL);
+    }
+
+    /**
+     * 构造方法
+     *
+     * @param memoryCache        一级缓存
+     * @param directory          二级缓存目录
+     * @param keySerializer      key序列化
+     * @param valueSerializer    value序列化
+     * @param segmentSize        段文件大小，超过的对象不写入二级
+     * @param maxDiskSize        最大磁盘空间，超过时丢弃最旧的段
+     * @param compactionInterval 压缩间隔(毫秒)
+     */
+    public TieredCacheMap(AbstractCacheMap<K, V> memoryCache, File directory, Serializer<K> keySerializer,
+                          Serializer<V> valueSerializer, int segmentSize, long maxDiskSize, long compactionInterval) {
+        if (memoryCache == null || directory == null || keySerializer == null || valueSerializer == null) {
+            throw new IllegalArgumentException("memoryCache、directory和serializer不能为空");
+        }
+        if (compactionInterval <= 0) {
+            throw new IllegalArgumentException("compactionInterval必须大于0");
+        }
+        long maxSegments = Math.max(2, maxDiskSize / segmentSize);
+        this.memoryCache = memoryCache;
+        this.valueSerializer = valueSerializer;
+        this.diskStore = new DiskStore<>(directory, segmentSize, (int) Math.min(maxSegments, Integer.MAX_VALUE),
+                keySerializer, memoryCache.getTicker());
+        this.executor = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread thread = new Thread(r, "sonsure-cache-tiered");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.executor.scheduleWithFixedDelay(() -> diskStore.compact(COMPACTION_THRESHOLD), compactionInterval,
+                compactionInterval, TimeUnit.MILLISECONDS);
+        memoryCache.setEvictionConsumer(this::spill, executor);
+    }
+
+    /**
+     * 写入二级，一级中已有新值时跳过
+     */
+    private void spill(K key, V value, long expireTime) {
+        if (expireTime != 0 && expireTime < memoryCache.getTicker().read()) {
+            return;
+        }
+        if (memoryCache.getCacheObject(key, false) != null) {
+            return;
+        }
+        diskStore.put(key, valueSerializer.serialize(value), expireTime);
+    }
+
+    /**
+     * 获取一级缓存
+     *
+     * @return the memory cache
+     */
+    public AbstractCacheMap<K, V> getMemoryCache() {
+        return memoryCache;
+    }
+
+    /**
+     * 二级缓存中的对象数
+     *
+     * @return the disk size
+     */
+    public int getDiskSize() {
+        return diskStore.size();
+    }
+
+    @Override
+    public int size() {
+        return memoryCache.size() + diskStore.size();
+    }
+
+    @Override
+    public long getDefaultExpire() {
+        return memoryCache.getDefaultExpire();
+    }
+
+    @Override
+    public void put(K key, V value) {
+        memoryCache.put(key, value);
+        diskStore.remove(key);
+    }
+
+    @Override
+    public void put(K key, V value, long expire) {
+        memoryCache.put(key, value, expire);
+        diskStore.remove(key);
+    }
+
+    @Override
+    public V get(K key) {
+        V value = memoryCache.get(key);
+        if (value != null) {
+            return value;
+        }
+        DiskStore.Value stored = diskStore.get(key);
+        if (stored == null) {
+            return null;
+        }
+        long expire = 0;
+        if (stored.expireTime != 0) {
+            expire = stored.expireTime - memoryCache.getTicker().read();
+            if (expire <= 0) {
+                return null;
+            }
+        }
+        value = valueSerializer.deserialize(stored.value);
+        //一级中没有该key时才提升，读取二级期间并发放入的新值不能被旧值覆盖
+        if (!memoryCache.compareAndPut(key, null, value, expire)) {
+            return memoryCache.get(key);
+        }
+        //提升后二级中删除，之后被淘汰时再写回；期间已写入的新记录保留
+        diskStore.remove(key, stored);
+        return value;
+    }
+
+    @Override
+    public int eliminate() {
+        return memoryCache.eliminate();
+    }
+
+    @Override
+    public boolean isFull() {
+        return memoryCache.isFull();
+    }
+
+    @Override
+    public void remove(K key) {
+        memoryCache.remove(key);
+        diskStore.remove(key);
+        //排在已提交的写入之后再删除一次
+        executor.execute(() -> diskStore.remove(key));
+    }
+
+    @Override
+    public void clear() {
+        memoryCache.clear();
+        diskStore.clear();
+        executor.execute(diskStore::clear);
+    }
+
+    @Override
+    public int getCacheSize() {
+        return memoryCache.getCacheSize();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return memoryCache.isEmpty() && diskStore.size() == 0;
+    }
+
+    /**
+     * 压缩二级缓存
+     *
+     * @return 删除的段数
+     */
+    public int compact() {
+        return diskStore.compact(COMPACTION_THRESHOLD);
+    }
+
+    /**
+     * 等待此前被淘汰的对象写入二级，写入在单线程中按提交顺序执行
+     */
+    public void flush() {
+        try {
+            executor.submit(() -> {
+            }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new SonsureCommonsException("等待写入二级缓存失败", e.getCause());
+        }
+    }
+
+    /**
+     * 等待已提交的写入完成，把一级中的对象全部写入二级后关闭，关闭后不能再使用
+     */
+    @Override
+    public void close() {
+        memoryCache.setEvictionConsumer(null, null);
+        executor.shutdown();
+        try {
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        memoryCache.forEachEntry((key, value, expireTime) ->
+                diskStore.put(key, valueSerializer.serialize(value), expireTime));
+        diskStore.close();
+    }
+}
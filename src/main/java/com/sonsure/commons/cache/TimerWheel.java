@@ -0,0 +1,203 @@
+/*
+ * Copyright (c) 2020. www.sonsure.com Inc. All rights reserved.
+ * You may obtain more information at
+ *
+ *   http://www.sonsure.com
+ *
+ * Designed By Selfly Lee (selfly@live.com)
+ */
+
+package com.sonsure.commons.cache;
+
+import java.util.function.Consumer;
+
+/**
+ * 分层时间轮，按过期时间组织缓存对象
+ * <p>
+ * 每层时间轮的桶跨度依次为约1秒、1分钟、1小时、1天、3天，超出范围的放入最后的溢出桶。
+ * 时间推进时只处理经过的桶，桶内未到期的对象重新放入更精细的层，均摊O(1)。
+ * 非线程安全，调用方需持有写锁。
+ *
+ * @author liyd
+ */
+final class TimerWheel {
+
+    /**
+     * 每层桶数
+     */
+    static final int[] BUCKETS = {64, 64, 32, 4, 1};
+
+    /**
+     * 每层单个桶的跨度(毫秒)，取2的幂以便用移位计算
+     */
+    static final long[] SPANS = {
+            1L << 10,
+            1L << 16,
+            1L << 22,
+            1L << 27,
+            1L << 29,
+            1L << 29
+    };
+
+    static final int[] SHIFT = {10, 16, 22, 27, 29};
+
+    /**
+     * 时间轮，每个桶是一个带哨兵的双向循环链表
+     */
+    private final Node[][] wheel;
+
+    /**
+     * 当前时间
+     */
+    private long time;
+
+    TimerWheel(long time) {
+        this.time = time;
+        this.wheel = new Node[BUCKETS.length][];
+        for (int i = 0; i < wheel.length; i++) {
+            wheel[i] = new Node[BUCKETS[i]];
+            for (int j = 0; j < wheel[i].length; j++) {
+                wheel[i][j] = new Sentinel();
+            }
+        }
+    }
+
+    /**
+     * 加入时间轮
+     *
+     * @param node the node
+     */
+    void schedule(Node node) {
+        Node sentinel = findBucket(node.expireTime);
+        link(sentinel, node);
+    }
+
+    /**
+     * 从时间轮移除，未加入时忽略
+     *
+     * @param node the node
+     */
+    void deschedule(Node node) {
+        if (node.nextInWheel == null) {
+            return;
+        }
+        node.prevInWheel.nextInWheel = node.nextInWheel;
+        node.nextInWheel.prevInWheel = node.prevInWheel;
+        node.prevInWheel = null;
+        node.nextInWheel = null;
+    }
+
+    /**
+     * 推进到指定时间，过期的对象交给回调处理
+     *
+     * @param currentTime the current time
+     * @param expired     过期对象回调，对象已从时间轮移除
+     */
+    void advance(long currentTime, Consumer<Node> expired) {
+        long previousTime = this.time;
+        if (currentTime <= previousTime) {
+            return;
+        }
+        this.time = currentTime;
+        for (int i = 0; i < SHIFT.length; i++) {
+            long previousTicks = previousTime >>> SHIFT[i];
+            long currentTicks = currentTime >>> SHIFT[i];
+            if (currentTicks - previousTicks <= 0L) {
+                break;
+            }
+            expire(i, previousTicks, currentTicks - previousTicks, expired);
+        }
+    }
+
+    /**
+     * 清空时间轮
+     */
+    void clear() {
+        for (Node[] buckets : wheel) {
+            for (Node sentinel : buckets) {
+                Node node = sentinel.nextInWheel;
+                while (node != sentinel) {
+                    Node next = node.nextInWheel;
+                    node.prevInWheel = null;
+                    node.nextInWheel = null;
+                    node = next;
+                }
+                sentinel.prevInWheel = sentinel;
+                sentinel.nextInWheel = sentinel;
+            }
+        }
+    }
+
+    /**
+     * 处理一层时间轮中经过的桶
+     */
+    private void expire(int index, long previousTicks, long delta, Consumer<Node> expired) {
+        Node[] timerWheel = wheel[index];
+        int mask = timerWheel.length - 1;
+        int steps = (int) Math.min(1 + delta, timerWheel.length);
+        int start = (int) (previousTicks & mask);
+        int end = start + steps;
+        for (int i = start; i < end; i++) {
+            Node sentinel = timerWheel[i & mask];
+            Node node = sentinel.nextInWheel;
+            //整个桶先摘下来，重新调度的对象可能落回同一个桶
+            sentinel.prevInWheel = sentinel;
+            sentinel.nextInWheel = sentinel;
+            while (node != sentinel) {
+                Node next = node.nextInWheel;
+                node.prevInWheel = null;
+                node.nextInWheel = null;
+                if (node.expireTime < time) {
+                    expired.accept(node);
+                } else {
+                    schedule(node);
+                }
+                node = next;
+            }
+        }
+    }
+
+    /**
+     * 根据过期时间查找所在的桶
+     */
+    private Node findBucket(long expireTime) {
+        long duration = expireTime - time;
+        int length = wheel.length - 1;
+        for (int i = 0; i < length; i++) {
+            if (duration < SPANS[i + 1]) {
+                long ticks = expireTime >>> SHIFT[i];
+                int index = (int) (ticks & (wheel[i].length - 1));
+                return wheel[i][index];
+            }
+        }
+        return wheel[length][0];
+    }
+
+    private static void link(Node sentinel, Node node) {
+        node.prevInWheel = sentinel.prevInWheel;
+        node.nextInWheel = sentinel;
+        sentinel.prevInWheel.nextInWheel = node;
+        sentinel.prevInWheel = node;
+    }
+
+    /**
+     * 时间轮中的节点
+     */
+    abstract static class Node {
+
+        /** 过期时间 */
+        long expireTime;
+
+        Node prevInWheel;
+
+        Node nextInWheel;
+    }
+
+    private static final class Sentinel extends Node {
+
+        Sentinel() {
+            prevInWheel = this;
+            nextInWheel = this;
+        }
+    }
+}
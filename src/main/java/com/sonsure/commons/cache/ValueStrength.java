@@ -0,0 +1,33 @@
+/*
+ * Copyright (c) 2020. www.sonsure.com Inc. All rights reserved.
+ * You may obtain more information at
+ *
+ *   http://www.sonsure.com
+ *
+ * Designed By Selfly Lee (selfly@live.com)
+ */
+
+package com.sonsure.commons.cache;
+
+/**
+ * 缓存值的引用强度
+ *
+ * @author liyd
+ */
+public enum ValueStrength {
+
+    /**
+     * 强引用，只按大小和过期时间删除
+     */
+    STRONG,
+
+    /**
+     * 软引用，内存不足时可被回收
+     */
+    SOFT,
+
+    /**
+     * 弱引用，没有其它强引用时下次GC即被回收
+     */
+    WEAK
+}
@@ -0,0 +1,229 @@
+/*
+ * Copyright (c) 2020. www.sonsure.com Inc. All rights reserved.
+ * You may obtain more information at
+ *
+ *   http://www.sonsure.com
+ *
+ * Designed By Selfly Lee (selfly@live.com)
+ */
+
+package com.sonsure.commons.cache;
+
+import java.util.HashMap;
+
+/**
+ * W-TinyLFU缓存实现
+ * <p>
+ * 新对象先进入占1%容量的LRU窗口，窗口满时最早的对象作为候选，与主区中最该淘汰的对象比较
+ * {@link FrequencySketch}估算的访问频率，频率更高的留下。主区是分段LRU：首次进入的对象在试用段，
+ * 再次访问后进入占主区80%的保护段，保护段满时最早的对象降回试用段。
+ * <p>
+ * 窗口吸收突发的新对象，频率比较使一次性扫描的对象无法挤掉热点，频率计数定期减半使过时的热点逐渐被淘汰。
+ *
+ * @author liyd
+ */
+public class WTinyLFUCache<K, V> extends AbstractCacheMap<K, V> {
+
+    /**
+     * 窗口占比
+     */
+    private static final double WINDOW_RATIO = 0.01;
+
+    /**
+     * 保护段占主区的比例
+     */
+    private static final double PROTECTED_RATIO = 0.8;
+
+    private static final int WINDOW = 0;
+
+    private static final int PROBATION = 1;
+
+    private static final int PROTECTED = 2;
+
+    /** 访问频率 */
+    private final FrequencySketch sketch;
+
+    /** 窗口最大大小 */
+    private final int maxWindow;
+
+    /** 保护段最大大小 */
+    private final int maxProtected;
+
+    /** 窗口、试用段、保护段 */
+    private final Queue window = new Queue();
+
+    private final Queue probation = new Queue();
+
+    private final Queue protectedQueue = new Queue();
+
+    /**
+     * 构造方法
+     *
+     * @param cacheSize     最大缓存大小，必须大于0
+     * @param defaultExpire 默认过期时间, 0表示永不过期
+     */
+    public WTinyLFUCache(int cacheSize, long defaultExpire) {
+        super(cacheSize, defaultExpire);
+        if (cacheSize <= 0) {
+            throw new IllegalArgumentException("W-TinyLFU缓存必须指定cacheSize");
+        }
+        this.maxWindow = Math.max(1, (int) (cacheSize * WINDOW_RATIO));
+        this.maxProtected = (int) ((cacheSize - maxWindow) * PROTECTED_RATIO);
+        this.sketch = new FrequencySketch(cacheSize);
+        cacheMap = new HashMap<K, CacheObject<K, V>>(cacheSize * 4 / 3 + 1);
+    }
+
+    @Override
+    protected CacheObject<K, V> newCacheObject(K key, V value, long expire) {
+        return new Node(key, value, expire);
+    }
+
+    @Override
+    protected boolean isAccessOrder() {
+        return true;
+    }
+
+    /**
+     * 新对象进入窗口，窗口超出时最早的对象移到试用段，缓存已满时淘汰已在放入前完成
+     *
+     * @param co
+     */
+    @Override
+    protected void onPut(CacheObject<K, V> co) {
+        Node node = (Node) co;
+        sketch.increment(node.key);
+        window.append(node, WINDOW);
+        if (window.size > maxWindow) {
+            Node candidate = window.head;
+            window.remove(candidate);
+            probation.append(candidate, PROBATION);
+        }
+    }
+
+    @Override
+    protected void onAccess(CacheObject<K, V> co) {
+        if (cacheMap.get(co.key) != co) {
+            //已被删除或替换
+            return;
+        }
+        Node node = (Node) co;
+        sketch.increment(node.key);
+        if (node.queue == WINDOW) {
+            window.moveToTail(node);
+        } else if (node.queue == PROBATION) {
+            probation.remove(node);
+            protectedQueue.append(node, PROTECTED);
+            if (protectedQueue.size > maxProtected) {
+                Node demoted = protectedQueue.head;
+                protectedQueue.remove(demoted);
+                probation.append(demoted, PROBATION);
+            }
+        } else {
+            protectedQueue.moveToTail(node);
+        }
+    }
+
+    @Override
+    protected void onRemove(CacheObject<K, V> co) {
+        Node node = (Node) co;
+        if (node.queue == WINDOW) {
+            window.remove(node);
+        } else if (node.queue == PROBATION) {
+            probation.remove(node);
+        } else {
+            protectedQueue.remove(node);
+        }
+    }
+
+    /**
+     * 窗口已满时，窗口中最早的对象与主区最该淘汰的对象比较访问频率，淘汰频率低的；频率相同时淘汰候选
+     */
+    @Override
+    protected int eliminateCache() {
+        Node victim = probation.head != null ? probation.head : protectedQueue.head;
+        Node candidate = window.size >= maxWindow ? window.head : null;
+        if (candidate == null && victim == null) {
+            candidate = window.head;
+            if (candidate == null) {
+                return 0;
+            }
+        }
+        if (candidate == null) {
+            removeObject(victim.key, RemovalCause.SIZE);
+        } else if (victim == null) {
+            removeObject(candidate.key, RemovalCause.SIZE);
+        } else if (sketch.frequency(candidate.key) > sketch.frequency(victim.key)) {
+            removeObject(victim.key, RemovalCause.SIZE);
+            window.remove(candidate);
+            probation.append(candidate, PROBATION);
+        } else {
+            removeObject(candidate.key, RemovalCause.SIZE);
+        }
+        return 1;
+    }
+
+    /**
+     * 带队列链接的缓存对象
+     */
+    private class Node extends CacheObject<K, V> {
+
+        /** 所在队列 */
+        int queue;
+
+        Node prev;
+
+        Node next;
+
+        Node(K key, V value, long liveTime) {
+            super(key, value, liveTime);
+        }
+    }
+
+    /**
+     * LRU队列，head最早
+     */
+    private class Queue {
+
+        Node head;
+
+        Node tail;
+
+        int size;
+
+        void append(Node node, int queue) {
+            node.queue = queue;
+            node.prev = tail;
+            node.next = null;
+            if (tail == null) {
+                head = node;
+            } else {
+                tail.next = node;
+            }
+            tail = node;
+            size++;
+        }
+
+        void remove(Node node) {
+            if (node.prev == null) {
+                head = node.next;
+            } else {
+                node.prev.next = node.next;
+            }
+            if (node.next == null) {
+                tail = node.prev;
+            } else {
+                node.next.prev = node.prev;
+            }
+            node.prev = null;
+            node.next = null;
+            size--;
+        }
+
+        void moveToTail(Node node) {
+            if (tail != node) {
+                remove(node);
+                append(node, node.queue);
+            }
+        }
+    }
+}
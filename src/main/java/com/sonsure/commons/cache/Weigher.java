@@ -0,0 +1,29 @@
+/*
+ * Copyright (c) 2020. www.sonsure.com Inc. All rights reserved.
+ * You may obtain more information at
+ *
+ *   http://www.sonsure.com
+ *
+ * Designed By Selfly Lee (selfly@live.com)
+ */
+
+package com.sonsure.commons.cache;
+
+/**
+ * 计算缓存对象权重，设置后缓存按总权重而不是对象个数限制大小
+ *
+ * @author liyd
+ * @see Weighers
+ */
+@FunctionalInterface
+public interface Weigher<K, V> {
+
+    /**
+     * 计算权重，放入缓存时调用一次，结果不能为负数
+     *
+     * @param key   the key
+     * @param value the value
+     * @return the weight
+     */
+    int weigh(K key, V value);
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2020. www.sonsure.com Inc. All rights reserved.
+ * You may obtain more information at
+ *
+ *   http://www.sonsure.com
+ *
+ * Designed By Selfly Lee (selfly@live.com)
+ */
+
+package com.sonsure.commons.cache;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * 内置的权重计算
+ *
+ * @author liyd
+ */
+public final class Weighers {
+
+    /**
+     * 对象头大小(开启指针压缩的64位JVM)
+     */
+    private static final int OBJECT_HEADER = 12;
+
+    /**
+     * 数组头大小
+     */
+    private static final int ARRAY_HEADER = 16;
+
+    /**
+     * 引用大小
+     */
+    private static final int REFERENCE = 4;
+
+    /**
+     * 每个缓存对象自身的开销，HashMap.Node加CacheObject
+     */
+    private static final int ENTRY_OVERHEAD = 96;
+
+    /**
+     * 集合元素最多计算的层数，超过时只按引用计算
+     */
+    private static final int MAX_DEPTH = 4;
+
+    private Weighers() {
+    }
+
+    /**
+     * 每个对象权重为1，效果等同于按个数限制
+     *
+     * @param <K> the type parameter
+     * @param <V> the type parameter
+     * @return the weigher
+     */
+    @SuppressWarnings("unchecked")
+    public static <K, V> Weigher<K, V> singleton() {
+        return (Weigher<K, V>) SingletonWeigher.INSTANCE;
+    }
+
+    /**
+     * 按估算的堆内存字节数计算权重，支持byte[]等基本类型数组、String、Collection和Map，
+     * 其它对象按对象头计算。只是估算值，用于近似按内存限制缓存大小
+     *
+     * @param <K> the type parameter
+     * @param <V> the type parameter
+     * @return the weigher
+     */
+    @SuppressWarnings("unchecked")
+    public static <K, V> Weigher<K, V> heapSize() {
+        return (Weigher<K, V>) HeapSizeWeigher.INSTANCE;
+    }
+
+    /**
+     * 估算对象占用的堆内存字节数
+     *
+     * @param obj the obj
+     * @return the long
+     */
+    public static long estimateSize(Object obj) {
+        return estimateSize(obj, 0);
+    }
+
+    private static long estimateSize(Object obj, int depth) {
+        if (obj == null) {
+            return 0;
+        }
+        if (obj instanceof byte[]) {
+            return align(ARRAY_HEADER + ((byte[]) obj).length);
+        }
+        if (obj instanceof String) {
+            //String对象本身加上内部数组，按char计算以兼容jdk8
+            return align(OBJECT_HEADER + 12) + align(ARRAY_HEADER + 2L * ((String) obj).length());
+        }
+        if (obj instanceof char[]) {
+            return align(ARRAY_HEADER + 2L * ((char[]) obj).length);
+        }
+        if (obj instanceof int[]) {
+            return align(ARRAY_HEADER + 4L * ((int[]) obj).length);
+        }
+        if (obj instanceof long[]) {
+            return align(ARRAY_HEADER + 8L * ((long[]) obj).length);
+        }
+        if (obj instanceof Long || obj instanceof Double) {
+            return 24;
+        }
+        if (obj instanceof Number || obj instanceof Boolean || obj instanceof Character) {
+            return 16;
+        }
+        if (obj instanceof Collection) {
+            Collection<?> collection = (Collection<?>) obj;
+            long size = align(OBJECT_HEADER + 16) + align(ARRAY_HEADER + (long) REFERENCE * collection.size());
+            if (depth < MAX_DEPTH) {
+                for (Object element : collection) {
+                    size += estimateSize(element, depth + 1);
+                }
+            }
+            return size;
+        }
+        if (obj instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) obj;
+            //HashMap.Node约32字节
+            long size = align(OBJECT_HEADER + 36) + align(ARRAY_HEADER + (long) REFERENCE * map.size()) + 32L * map.size();
+            if (depth < MAX_DEPTH) {
+                for (Map.Entry<?, ?> entry : map.entrySet()) {
+                    size += estimateSize(entry.getKey(), depth + 1) + estimateSize(entry.getValue(), depth + 1);
+                }
+            }
+            return size;
+        }
+        if (obj instanceof Object[]) {
+            Object[] array = (Object[]) obj;
+            long size = align(ARRAY_HEADER + (long) REFERENCE * array.length);
+            if (depth < MAX_DEPTH) {
+                for (Object element : array) {
+                    size += estimateSize(element, depth + 1);
+                }
+            }
+            return size;
+        }
+        return align(OBJECT_HEADER + REFERENCE);
+    }
+
+    private static long align(long size) {
+        return (size + 7) & ~7L;
+    }
+
+    private static final class SingletonWeigher implements Weigher<Object, Object> {
+
+        static final SingletonWeigher INSTANCE = new SingletonWeigher();
+
+        @Override
+        public int weigh(Object key, Object value) {
+            return 1;
+        }
+    }
+
+    private static final class HeapSizeWeigher implements Weigher<Object, Object> {
+
+        static final HeapSizeWeigher INSTANCE = new HeapSizeWeigher();
+
+        @Override
+        public int weigh(Object key, Object value) {
+            long size = ENTRY_OVERHEAD + estimateSize(key) + estimateSize(value);
+            return (int) Math.min(size, Integer.MAX_VALUE);
+        }
+    }
+}
@@ -10,6 +10,7 @@
 package com.sonsure.commons.utils;
 
 import com.sonsure.commons.bean.BeanFieldCache;
+import com.sonsure.commons.bean.InstantiatorCache;
 import com.sonsure.commons.bean.IntrospectionCache;
 import com.sonsure.commons.exception.SonsureBeanException;
 import com.sonsure.commons.exception.SonsureException;
@@ -26,6 +27,9 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
  * 类辅助
@@ -199,9 +203,15 @@ public class ClassUtils {
         if (obj == null) {
             return null;
         }
-        PropertyDescriptor propertyDescriptor = getPropertyDescriptor(obj.getClass(), fieldName);
-        Method readMethod = propertyDescriptor.getReadMethod();
-        return invokeMethod(readMethod, obj);
+        Function<Object, Object> getter = IntrospectionCache.forClass(obj.getClass()).getGetter(fieldName);
+        if (getter == null) {
+            throw new SonsureBeanException("属性不存在或不可读:" + fieldName);
+        }
+        try {
+            return getter.apply(obj);
+        } catch (RuntimeException e) {
+            throw new SonsureBeanException("获取属性值失败:" + fieldName, e);
+        }
     }
 
     /**
@@ -212,9 +222,17 @@ public class ClassUtils {
      * @param value     the value
      */
     public static void setPropertyValue(Object obj, String fieldName, Object value) {
-        PropertyDescriptor propertyDescriptor = getPropertyDescriptor(obj.getClass(), fieldName);
-        Method writeMethod = propertyDescriptor.getWriteMethod();
-        invokeMethod(writeMethod, obj, value);
+        IntrospectionCache introspectionCache = IntrospectionCache.forClass(obj.getClass());
+        BiConsumer<Object, Object> setter = introspectionCache.getSetter(fieldName);
+        if (setter == null) {
+            throw new SonsureBeanException("属性不存在或不可写:" + fieldName);
+        }
+        Class<?> parameterType = introspectionCache.getPropertyDescriptor(fieldName).getWriteMethod().getParameterTypes()[0];
+        try {
+            setter.accept(obj, toParameterValue(value, parameterType));
+        } catch (RuntimeException e) {
+            throw new SonsureBeanException("设置属性值失败:" + fieldName, e);
+        }
     }
 
     /**
@@ -295,17 +313,7 @@ public class ClassUtils {
             Object[] parameters = new Object[value.length];
             Class<?>[] parameterTypes = method.getParameterTypes();
             for (int i = 0; i < value.length; i++) {
-                if (parameterTypes[i] == value[i].getClass()) {
-                    parameters[i] = value[i];
-                } else if (parameterTypes[i] == Boolean.class || parameterTypes[i] == boolean.class) {
-                    parameters[i] = BooleanUtils.toBoolean(String.valueOf(value[i]));
-                } else if (parameterTypes[i] == Integer.class || parameterTypes[i] == int.class) {
-                    parameters[i] = Integer.valueOf(String.valueOf(value[i]));
-                } else if (parameterTypes[i] == Long.class || parameterTypes[i] == long.class) {
-                    parameters[i] = Long.valueOf(String.valueOf(value[i]));
-                } else {
-                    parameters[i] = value[i];
-                }
+                parameters[i] = toParameterValue(value[i], parameterTypes[i]);
             }
             return method.invoke(bean, parameters);
         } catch (Exception e) {
@@ -313,6 +321,26 @@ public class ClassUtils {
         }
     }
 
+    /**
+     * 把参数值转换成方法参数类型，只处理Boolean、Integer和Long，其它类型原样返回
+     *
+     * @param value         the value
+     * @param parameterType the parameter type
+     * @return the object
+     */
+    public static Object toParameterValue(Object value, Class<?> parameterType) {
+        if (parameterType == value.getClass()) {
+            return value;
+        } else if (parameterType == Boolean.class || parameterType == boolean.class) {
+            return BooleanUtils.toBoolean(String.valueOf(value));
+        } else if (parameterType == Integer.class || parameterType == int.class) {
+            return Integer.valueOf(String.valueOf(value));
+        } else if (parameterType == Long.class || parameterType == long.class) {
+            return Long.valueOf(String.valueOf(value));
+        }
+        return value;
+    }
+
     /**
      * invokeMethod
      *
@@ -340,16 +368,21 @@ public class ClassUtils {
     }
 
     /**
-     * 初始化实例
+     * 初始化实例，使用{@link InstantiatorCache}中编译好的无参构造方法
+     * 没有无参构造方法时抛出的异常会说明原因
      *
      * @param clazz
      * @return
      */
     public static Object newInstance(Class<?> clazz) {
+        if (clazz == null) {
+            throw new SonsureException("根据class创建实例失败:null");
+        }
+        Supplier<?> instantiator = InstantiatorCache.forClass(clazz);
         try {
-            return clazz.newInstance();
-        } catch (Exception e) {
-            throw new SonsureException("根据class创建实例失败:" + (clazz == null ? "null" : clazz.getName()), e);
+            return instantiator.get();
+        } catch (RuntimeException e) {
+            throw new SonsureException("根据class创建实例失败:" + clazz.getName(), e);
         }
     }
 
@@ -363,7 +396,9 @@ public class ClassUtils {
 
         try {
             Class<?> loadClass = getDefaultClassLoader().loadClass(clazz);
-            return loadClass.newInstance();
+            return newInstance(loadClass);
+        } catch (SonsureException e) {
+            throw e;
         } catch (Exception e) {
             throw new SonsureException("根据class创建实例失败:" + clazz, e);
         }
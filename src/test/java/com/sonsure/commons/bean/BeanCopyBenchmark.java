@@ -0,0 +1,195 @@
+/*
+ * Copyright (c) 2020. www.sonsure.com Inc. All rights reserved.
+ * You may obtain more information at
+ *
+ *   http://www.sonsure.com
+ *
+ * Designed By Selfly Lee (selfly@live.com)
+ */
+
+package com.sonsure.commons.bean;
+
+import com.sonsure.commons.utils.ClassUtils;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 单个对象属性拷贝的耗时：原来逐个属性查找并反射调用的实现、当前的BeanKit和手写代码
+ * <p>
+ * 直接运行main方法即可
+ *
+ * @author liyd
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BeanCopyBenchmark {
+
+    private final BeanKitInst beanKit = new BeanKitInst();
+
+    private Source source;
+
+    @Setup
+    public void setup() {
+        source = new Source();
+        source.setId(10000L);
+        source.setName("selfly");
+        source.setEmail("selfly@live.com");
+        source.setAge(18);
+        source.setScore(99.5);
+        source.setAmount(new BigDecimal("10086"));
+        source.setEnabled(true);
+        source.setGmtCreate(new Date());
+    }
+
+    @Benchmark
+    public Target reflection() {
+        Target target = new Target();
+        reflectionCopy(target, source);
+        return target;
+    }
+
+    @Benchmark
+    public Target beanKit() {
+        return beanKit.copyProperties(new Target(), source);
+    }
+
+    @Benchmark
+    public Target handWritten() {
+        Target target = new Target();
+        target.setId(source.getId());
+        target.setName(source.getName());
+        target.setEmail(source.getEmail());
+        target.setAge(source.getAge());
+        target.setScore(source.getScore());
+        target.setAmount(source.getAmount());
+        target.setEnabled(source.getEnabled());
+        target.setGmtCreate(source.getGmtCreate());
+        return target;
+    }
+
+    /**
+     * 原BeanKitInst.copySameProperties的实现
+     */
+    private static void reflectionCopy(Object target, Object source) {
+        for (PropertyDescriptor targetPd : ClassUtils.getPropertyDescriptors(target.getClass())) {
+            Method writeMethod = targetPd.getWriteMethod();
+            if (writeMethod == null) {
+                continue;
+            }
+            PropertyDescriptor sourcePd = ClassUtils.getPropertyDescriptor(source.getClass(), targetPd.getName());
+            if (sourcePd != null && sourcePd.getReadMethod() != null) {
+                Object value = ClassUtils.invokeMethod(sourcePd.getReadMethod(), source);
+                if (value == null) {
+                    continue;
+                }
+                ClassUtils.invokeMethod(writeMethod, target, value);
+            }
+        }
+    }
+
+    public static class Source {
+
+        private Long id;
+
+        private String name;
+
+        private String email;
+
+        private int age;
+
+        private double score;
+
+        private BigDecimal amount;
+
+        private Boolean enabled;
+
+        private Date gmtCreate;
+
+        public Long getId() {
+            return id;
+        }
+
+        public void setId(Long id) {
+            this.id = id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public String getEmail() {
+            return email;
+        }
+
+        public void setEmail(String email) {
+            this.email = email;
+        }
+
+        public int getAge() {
+            return age;
+        }
+
+        public void setAge(int age) {
+            this.age = age;
+        }
+
+        public double getScore() {
+            return score;
+        }
+
+        public void setScore(double score) {
+            this.score = score;
+        }
+
+        public BigDecimal getAmount() {
+            return amount;
+        }
+
+        public void setAmount(BigDecimal amount) {
+            this.amount = amount;
+        }
+
+        public Boolean getEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(Boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public Date getGmtCreate() {
+            return gmtCreate;
+        }
+
+        public void setGmtCreate(Date gmtCreate) {
+            this.gmtCreate = gmtCreate;
+        }
+    }
+
+    public static class Target extends Source {
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(BeanCopyBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
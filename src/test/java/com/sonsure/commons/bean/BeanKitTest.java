@@ -9,12 +9,20 @@
 
 package com.sonsure.commons.bean;
 
+import com.sonsure.commons.exception.SonsureBeanException;
+import com.sonsure.commons.utils.ClassUtils;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class BeanKitTest {
 
@@ -44,10 +52,390 @@ public class BeanKitTest {
         Assert.assertNotNull(userVo.getGmtCreate());
     }
 
+    @Test
+    public void copyIgnoreProperties() {
+        final UserVo userVo = BeanKit.copyProperties(new UserVo(), user, new String[]{"password"});
+        Assert.assertNull(userVo.getPassword());
+        Assert.assertEquals(userVo.getUsername(), user.getUsername());
+        //同一对类再次拷贝使用缓存的拷贝器，忽略属性不同时分别缓存
+        final UserVo another = BeanKit.copyProperties(new UserVo(), user);
+        Assert.assertEquals(another.getPassword(), user.getPassword());
+    }
+
+    @Test
+    public void converterChangeRebuildsCopyPlan() {
+        //不修改共享的默认实例，避免影响其它测试
+        BeanKitInst beanKit = new BeanKitInst();
+        Assert.assertEquals(UserVo.Status.DISABLE_LOGIN, beanKit.copyProperties(new UserVo(), user).getStatus());
+        beanKit.clearConverter();
+        try {
+            beanKit.copyProperties(new UserVo(), user);
+            Assert.fail("没有转换器时字符串不能写入枚举属性");
+        } catch (SonsureBeanException e) {
+            //预期
+        }
+        beanKit.registerConverter(new IEnumStringConverter());
+        Assert.assertEquals(UserVo.Status.DISABLE_LOGIN, beanKit.copyProperties(new UserVo(), user).getStatus());
+    }
+
+    @Test
+    public void converterTableKeyedByFieldName() {
+        final AtomicInteger supportCalls = new AtomicInteger();
+        TypeConverter yearConverter = new TypeConverter() {
+            @Override
+            public boolean isSupport(Class<?> sourceClass, Class<?> targetClass, String fieldName) {
+                supportCalls.incrementAndGet();
+                return sourceClass == String.class && targetClass == Integer.class && "year".equals(fieldName);
+            }
+
+            @Override
+            public Object convert(Class<?> sourceClass, Class<?> targetClass, Object value) {
+                return Integer.valueOf((String) value) + 1000;
+            }
+        };
+        BeanKitInst beanKit = new BeanKitInst();
+        beanKit.registerConverter(yearConverter);
+        Assert.assertSame(yearConverter, beanKit.findConverter(String.class, Integer.class, "year"));
+        Assert.assertNull(beanKit.findConverter(String.class, Integer.class, "age"));
+        Assert.assertEquals(2, supportCalls.get());
+
+        //命中和未命中都已缓存，不再调用isSupport
+        Assert.assertSame(yearConverter, beanKit.findConverter(String.class, Integer.class, "year"));
+        Assert.assertNull(beanKit.findConverter(String.class, Integer.class, "age"));
+        Assert.assertEquals(2, supportCalls.get());
+
+        user.setYear("5");
+        Assert.assertEquals(Integer.valueOf(1005), beanKit.copyProperties(new UserVo(), user).getYear());
+
+        //移除后缓存失效
+        beanKit.unregisterConverter(yearConverter);
+        Assert.assertNull(beanKit.findConverter(String.class, Integer.class, "year"));
+        Assert.assertEquals(Integer.valueOf(5), beanKit.copyProperties(new UserVo(), user).getYear());
+    }
+
+    @Test
+    public void newInstance() {
+        Assert.assertNotSame(ClassUtils.newInstance(UserVo.class), ClassUtils.newInstance(UserVo.class));
+        try {
+            ClassUtils.newInstance(Integer.class);
+            Assert.fail("没有无参构造方法时不能实例化");
+        } catch (SonsureBeanException e) {
+            Assert.assertTrue(e.getMessage().contains(Integer.class.getName()));
+        }
+        try {
+            ClassUtils.newInstance(PrivateConstructor.class);
+            Assert.fail("与Class.newInstance一致，构造方法为private时不能实例化");
+        } catch (SonsureBeanException e) {
+            Assert.assertTrue(e.getMessage().contains(PrivateConstructor.class.getName()));
+        }
+    }
+
+    @Test
+    public void propertyAccessors() {
+        Assert.assertEquals(user.getUsername(), ClassUtils.getPropertyValue(user, "username"));
+        ClassUtils.setPropertyValue(user, "username", "liyd");
+        Assert.assertEquals("liyd", BeanKit.beanToMap(user).get("username"));
+    }
+
+    @Test
+    public void underlineKeyMapListToBean() {
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (long i = 1; i <= 3; i++) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("USER_ID", i);
+            row.put("USERNAME", "user" + i);
+            row.put("GMT_CREATE", null);
+            rows.add(row);
+        }
+        List<UserVo> userVos = BeanKit.underlineKeyMapToBean(rows, UserVo.class);
+        Assert.assertEquals(3, userVos.size());
+        Assert.assertEquals(Integer.valueOf(3), userVos.get(2).getUserId());
+        Assert.assertEquals("user2", userVos.get(1).getUsername());
+        Assert.assertNull(userVos.get(0).getGmtCreate());
+    }
+
+    @Test
+    public void copyPropertiesParallelKeepsOrder() {
+        List<User> users = new ArrayList<>();
+        for (long i = 0; i < 2000; i++) {
+            User u = new User();
+            u.setUserId(i);
+            users.add(u);
+        }
+        List<UserVo> userVos = BeanKit.copyPropertiesParallel(UserVo.class, users);
+        Assert.assertEquals(2000, userVos.size());
+        for (int i = 0; i < userVos.size(); i++) {
+            Assert.assertEquals(Integer.valueOf(i), userVos.get(i).getUserId());
+        }
+    }
+
+    @Test
+    public void copyPropertiesParallelFailure() {
+        List<User> users = new ArrayList<>();
+        for (long i = 0; i < 2000; i++) {
+            User u = new User();
+            u.setUserId(i);
+            users.add(u);
+        }
+        //失败的元素不在当前线程转换的最后一段，异常与顺序转换相同
+        try {
+            BeanKit.copyPropertiesParallel(UserVo.class, users, null, (User u, UserVo vo) -> {
+                if (u.getUserId() == 10L) {
+                    throw new IllegalStateException("failed");
+                }
+            }, ForkJoinPool.commonPool());
+            Assert.fail("转换失败时需要抛出异常");
+        } catch (SonsureBeanException e) {
+            Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+    }
+
+    @Test
+    public void primitiveCopyMatchesBoxedConversion() {
+        PrimitiveSource source = new PrimitiveSource();
+        source.setIntValue(Integer.MIN_VALUE);
+        source.setLongValue((1L << 40) + 7);
+        source.setDoubleValue(-3.99);
+        source.setFloatValue(1.1f);
+        source.setBooleanValue(true);
+        source.setCharValue('x');
+        PrimitiveTarget target = new BeanKitInst().copyProperties(new PrimitiveTarget(), source);
+
+        //int -> long
+        Assert.assertEquals(boxedCopy(source.getIntValue(), long.class), target.getIntValue());
+        //long -> int 截断
+        Assert.assertEquals(boxedCopy(source.getLongValue(), int.class), target.getLongValue());
+        Assert.assertEquals(7, target.getLongValue());
+        //double -> int
+        Assert.assertEquals(boxedCopy(source.getDoubleValue(), int.class), target.getDoubleValue());
+        //float -> double
+        Assert.assertEquals(boxedCopy(source.getFloatValue(), double.class), target.getFloatValue());
+        //相同类型的boolean、char
+        Assert.assertTrue(target.isBooleanValue());
+        Assert.assertEquals('x', target.getCharValue());
+    }
+
+    @Test
+    public void converterAheadOfNumberConverterWins() {
+        BeanKitInst beanKit = new BeanKitInst();
+        beanKit.clearConverter();
+        beanKit.registerConverter(new TypeConverter() {
+            @Override
+            public boolean isSupport(Class<?> sourceClass, Class<?> targetClass, String fieldName) {
+                return sourceClass == int.class && targetClass == long.class;
+            }
+
+            @Override
+            public Object convert(Class<?> sourceClass, Class<?> targetClass, Object value) {
+                return ((Integer) value) * 10L;
+            }
+        });
+        beanKit.registerConverter(new NumberConverter());
+        PrimitiveSource source = new PrimitiveSource();
+        source.setIntValue(3);
+        source.setLongValue(5);
+        PrimitiveTarget target = beanKit.copyProperties(new PrimitiveTarget(), source);
+        Assert.assertEquals(30L, target.getIntValue());
+        Assert.assertEquals(boxedCopy(5L, int.class), target.getLongValue());
+    }
+
+    /**
+     * 不走基本类型直接拷贝时的结果：NumberConverter转换后再按setter参数类型转换
+     */
+    private static Object boxedCopy(Object value, Class<?> parameterType) {
+        Object converted = new NumberConverter().convert(value.getClass(), parameterType, value);
+        return ClassUtils.toParameterValue(converted, parameterType);
+    }
+
+    @Test
+    public void objectSourceWidensToPrimitiveTarget() {
+        ObjectSource source = new ObjectSource();
+        source.setValue(7);
+        //与Method.invoke一样按基本类型拓宽，public类和非public类结果一致
+        Assert.assertEquals(7.0, BeanKit.copyProperties(new DoubleTarget(), source).getValue(), 0);
+        Assert.assertEquals(7.0, BeanKit.copyProperties(new HiddenDoubleTarget(), source).getValue(), 0);
+        source.setValue(8.5);
+        Assert.assertEquals(8.5, BeanKit.copyProperties(new DoubleTarget(), source).getValue(), 0);
+    }
+
     @Test
     public void StringToInteger() {
         user.setYear("5");
         final UserVo userVo = BeanKit.copyProperties(new UserVo(), user);
         Assert.assertEquals(5, (int) userVo.getYear());
     }
+
+    public static class PrimitiveSource {
+
+        private int intValue;
+
+        private long longValue;
+
+        private double doubleValue;
+
+        private float floatValue;
+
+        private boolean booleanValue;
+
+        private char charValue;
+
+        public int getIntValue() {
+            return intValue;
+        }
+
+        public void setIntValue(int intValue) {
+            this.intValue = intValue;
+        }
+
+        public long getLongValue() {
+            return longValue;
+        }
+
+        public void setLongValue(long longValue) {
+            this.longValue = longValue;
+        }
+
+        public double getDoubleValue() {
+            return doubleValue;
+        }
+
+        public void setDoubleValue(double doubleValue) {
+            this.doubleValue = doubleValue;
+        }
+
+        public float getFloatValue() {
+            return floatValue;
+        }
+
+        public void setFloatValue(float floatValue) {
+            this.floatValue = floatValue;
+        }
+
+        public boolean isBooleanValue() {
+            return booleanValue;
+        }
+
+        public void setBooleanValue(boolean booleanValue) {
+            this.booleanValue = booleanValue;
+        }
+
+        public char getCharValue() {
+            return charValue;
+        }
+
+        public void setCharValue(char charValue) {
+            this.charValue = charValue;
+        }
+    }
+
+    /**
+     * 同名属性换成另一种基本类型
+     */
+    public static class PrimitiveTarget {
+
+        private long intValue;
+
+        private int longValue;
+
+        private int doubleValue;
+
+        private double floatValue;
+
+        private boolean booleanValue;
+
+        private char charValue;
+
+        public long getIntValue() {
+            return intValue;
+        }
+
+        public void setIntValue(long intValue) {
+            this.intValue = intValue;
+        }
+
+        public int getLongValue() {
+            return longValue;
+        }
+
+        public void setLongValue(int longValue) {
+            this.longValue = longValue;
+        }
+
+        public int getDoubleValue() {
+            return doubleValue;
+        }
+
+        public void setDoubleValue(int doubleValue) {
+            this.doubleValue = doubleValue;
+        }
+
+        public double getFloatValue() {
+            return floatValue;
+        }
+
+        public void setFloatValue(double floatValue) {
+            this.floatValue = floatValue;
+        }
+
+        public boolean isBooleanValue() {
+            return booleanValue;
+        }
+
+        public void setBooleanValue(boolean booleanValue) {
+            this.booleanValue = booleanValue;
+        }
+
+        public char getCharValue() {
+            return charValue;
+        }
+
+        public void setCharValue(char charValue) {
+            this.charValue = charValue;
+        }
+    }
+
+    public static class PrivateConstructor {
+
+        private PrivateConstructor() {
+        }
+    }
+
+    public static class ObjectSource {
+
+        private Object value;
+
+        public Object getValue() {
+            return value;
+        }
+
+        public void setValue(Object value) {
+            this.value = value;
+        }
+    }
+
+    public static class DoubleTarget {
+
+        private double value;
+
+        public double getValue() {
+            return value;
+        }
+
+        public void setValue(double value) {
+            this.value = value;
+        }
+    }
+
+    static class HiddenDoubleTarget {
+
+        private double value;
+
+        public double getValue() {
+            return value;
+        }
+
+        public void setValue(double value) {
+            this.value = value;
+        }
+    }
 }
@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2020. www.sonsure.com Inc. All rights reserved.
+ * You may obtain more information at
+ *
+ *   http://www.sonsure.com
+ *
+ * Designed By Selfly Lee (selfly@live.com)
+ */
+
+package com.sonsure.commons.cache;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 缓存写入竞争测试，对比LRUCache与分段锁的ConcurrentCacheMap在1、8、32线程下的put吞吐
+ * <p>
+ * 直接运行main方法即可
+ *
+ * @author liyd
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CacheContentionBenchmark {
+
+    private static final int CACHE_SIZE = 1 << 16;
+
+    private static final int KEY_MASK = (CACHE_SIZE << 1) - 1;
+
+    @Param({"LRUCache", "ConcurrentCacheMap"})
+    public String cacheType;
+
+    private CacheMap<Integer, Object> cacheMap;
+
+    private Integer[] keys;
+
+    @Setup
+    public void setup() {
+        if ("LRUCache".equals(cacheType)) {
+            cacheMap = new LRUCache<>(CACHE_SIZE, 0);
+        } else {
+            cacheMap = new ConcurrentCacheMap<>(EvictionPolicy.LRU, CACHE_SIZE, 0, 64);
+        }
+        keys = new Integer[KEY_MASK + 1];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = i;
+        }
+    }
+
+    @Benchmark
+    public void put() {
+        Integer key = keys[ThreadLocalRandom.current().nextInt() & KEY_MASK];
+        cacheMap.put(key, key);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        for (int threads : new int[]{1, 8, 32}) {
+            Options options = new OptionsBuilder()
+                    .include(CacheContentionBenchmark.class.getSimpleName())
+                    .threads(threads)
+                    .build();
+            new Runner(options).run();
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2020. www.sonsure.com Inc. All rights reserved.
+ * You may obtain more information at
+ *
+ *   http://www.sonsure.com
+ *
+ * Designed By Selfly Lee (selfly@live.com)
+ */
+
+package com.sonsure.commons.cache;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class CacheSnapshotTest {
+
+    @Test
+    public void snapshotRoundTrip() {
+        final AtomicLong time = new AtomicLong(1000);
+        LRUCache<Integer, String> cache = new LRUCache<>(2000, 0);
+        cache.setTicker(time::get);
+        for (int i = 0; i < 1000; i++) {
+            cache.put(i, "v" + i, i % 2 == 0 ? 0 : 60000);
+        }
+        cache.put(-1, "expired", 1);
+        cache.get(0);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JdkSerializer<Integer> keySerializer = new JdkSerializer<>();
+        JdkSerializer<String> valueSerializer = new JdkSerializer<>();
+        time.addAndGet(5);
+        Assert.assertEquals(1000, cache.writeSnapshot(out, keySerializer, valueSerializer));
+
+        LRUCache<Integer, String> loaded = new LRUCache<>(1000, 0);
+        loaded.setTicker(time::get);
+        //写入到读取之间经过的时间从剩余存活时间中扣除
+        time.addAndGet(30000);
+        Assert.assertEquals(1000, loaded.loadSnapshot(new ByteArrayInputStream(out.toByteArray()),
+                keySerializer, valueSerializer));
+        Assert.assertEquals("v1", loaded.get(1));
+        Assert.assertNull(loaded.get(-1));
+        //访问顺序保留，0最近访问过，1刚被读取，最先淘汰的是2
+        loaded.put(1000, "v1000");
+        Assert.assertNull(loaded.get(2));
+        Assert.assertEquals("v0", loaded.get(0));
+
+        //剩余60000-5-30000毫秒
+        time.addAndGet(29995);
+        Assert.assertEquals("v3", loaded.get(3));
+        time.addAndGet(1);
+        Assert.assertNull(loaded.get(3));
+        Assert.assertEquals("v4", loaded.get(4));
+    }
+
+    @Test
+    public void snapshotDoesNotBlockWriters() throws Exception {
+        final LRUCache<Integer, String> cache = new LRUCache<>(1000, 0);
+        for (int i = 0; i < 600; i++) {
+            cache.put(i, "v" + i);
+        }
+        final JdkSerializer<String> jdkSerializer = new JdkSerializer<>();
+        final AtomicLong writes = new AtomicLong();
+        Serializer<String> valueSerializer = new Serializer<String>() {
+            @Override
+            public byte[] serialize(String value) {
+                //第一个对象序列化时另一个线程写入，持有读锁时写入会一直等待到快照写完
+                if (writes.get() == 0) {
+                    Thread writer = new Thread(() -> {
+                        cache.put(-1, "w");
+                        writes.incrementAndGet();
+                    });
+                    writer.start();
+                    try {
+                        writer.join(2000);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    Assert.assertEquals(1, writes.get());
+                }
+                return jdkSerializer.serialize(value);
+            }
+
+            @Override
+            public String deserialize(byte[] bytes) {
+                return jdkSerializer.deserialize(bytes);
+            }
+        };
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Assert.assertEquals(600, cache.writeSnapshot(out, new JdkSerializer<>(), valueSerializer));
+        Assert.assertEquals("w", cache.get(-1));
+    }
+}
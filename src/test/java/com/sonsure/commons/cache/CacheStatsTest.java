@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2020. www.sonsure.com Inc. All rights reserved.
+ * You may obtain more information at
+ *
+ *   http://www.sonsure.com
+ *
+ * Designed By Selfly Lee (selfly@live.com)
+ */
+
+package com.sonsure.commons.cache;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class CacheStatsTest {
+
+    @Test
+    public void hitAndMiss() {
+        LRUCache<Integer, String> cache = new LRUCache<>(10, 0);
+        Assert.assertSame(CacheStats.EMPTY, cache.getStats());
+        cache.recordStats();
+        cache.put(1, "a");
+        cache.put(2, "b");
+        Assert.assertEquals("a", cache.get(1));
+        Assert.assertNull(cache.get(3));
+        cache.getAll(Arrays.asList(1, 2, 4));
+
+        CacheStats stats = cache.getStats();
+        Assert.assertEquals(2, stats.getPutCount());
+        Assert.assertEquals(3, stats.getHitCount());
+        Assert.assertEquals(2, stats.getMissCount());
+        Assert.assertEquals(5, stats.getRequestCount());
+        Assert.assertEquals(0.6, stats.getHitRate(), 0.0001);
+        Assert.assertEquals(0.4, stats.getMissRate(), 0.0001);
+
+        cache.get(1);
+        CacheStats delta = cache.getStats().minus(stats);
+        Assert.assertEquals(1, delta.getHitCount());
+        Assert.assertEquals(0, delta.getMissCount());
+    }
+
+    @Test
+    public void evictionByCause() {
+        final AtomicLong time = new AtomicLong(1_000_000L);
+        LRUCache<Integer, String> cache = new LRUCache<>(2, 0);
+        cache.setTicker(time::get);
+        cache.recordStats();
+        cache.put(1, "a", 1000L);
+        cache.put(2, "b");
+        cache.put(3, "c");
+        Assert.assertEquals(1, cache.getStats().getSizeEvictionCount());
+        Assert.assertEquals(0, cache.getStats().getExpiredEvictionCount());
+
+        //显式删除不算淘汰
+        cache.remove(3);
+        cache.put(4, "d", 1000L);
+        time.addAndGet(5000L);
+        Assert.assertEquals(1, cache.eliminate());
+        CacheStats stats = cache.getStats();
+        Assert.assertEquals(1, stats.getSizeEvictionCount());
+        Assert.assertEquals(1, stats.getExpiredEvictionCount());
+        Assert.assertEquals(2, stats.getEvictionCount());
+    }
+
+    @Test
+    public void collectedValuesCountAsEviction() {
+        LRUCache<Integer, Object> cache = new LRUCache<>(10, 0);
+        cache.setValueStrength(ValueStrength.WEAK);
+        cache.recordStats();
+        cache.put(1, new Object());
+        Assert.assertTrue(cache.collectValue(1));
+        cache.cleanUp();
+        CacheStats stats = cache.getStats();
+        Assert.assertEquals(1, stats.getCollectedEvictionCount());
+        Assert.assertEquals(1, stats.getEvictionCount());
+    }
+
+    @Test
+    public void concurrentCacheMapCombinesSegments() {
+        ConcurrentCacheMap<Integer, String> cache = new ConcurrentCacheMap<>(EvictionPolicy.LRU, 32, 0, 8);
+        Assert.assertSame(CacheStats.EMPTY, cache.getStats());
+        cache.recordStats();
+        Assert.assertTrue(cache.isRecordingStats());
+        for (int i = 0; i < 100; i++) {
+            cache.put(i, "v" + i);
+        }
+        for (int i = 0; i < 100; i++) {
+            cache.get(i);
+        }
+        CacheStats stats = cache.getStats();
+        Assert.assertEquals(100, stats.getPutCount());
+        Assert.assertEquals(32, stats.getHitCount());
+        Assert.assertEquals(68, stats.getMissCount());
+        Assert.assertEquals(68, stats.getSizeEvictionCount());
+    }
+
+    @Test
+    public void putAllCountsOnlyStoredEntries() {
+        LRUCache<Integer, String> cache = new LRUCache<>(0, 0);
+        cache.setWeigher((key, value) -> value.length(), 5);
+        cache.recordStats();
+        Map<Integer, String> map = new HashMap<>();
+        map.put(1, "a");
+        map.put(2, "bb");
+        map.put(3, "too long");
+        cache.putAll(map);
+        Assert.assertEquals(2, cache.size());
+        Assert.assertNull(cache.get(3));
+        Assert.assertEquals(2, cache.getStats().getPutCount());
+
+        cache.put(4, "too long");
+        Assert.assertNull(cache.get(4));
+        Assert.assertEquals(2, cache.getStats().getPutCount());
+        cache.put(4, "d");
+        Assert.assertEquals(3, cache.getStats().getPutCount());
+    }
+
+    @Test
+    public void loadCounts() {
+        LoadingCache<Integer, String> cache = new LoadingCache<>(new LRUCache<>(10, 0));
+        cache.getCacheMap().recordStats();
+        Assert.assertEquals("value1", cache.get(1, key -> "value" + key));
+        Assert.assertEquals("value1", cache.get(1, key -> "other"));
+        try {
+            cache.get(2, key -> {
+                throw new IllegalStateException("load failed");
+            });
+            Assert.fail();
+        } catch (IllegalStateException e) {
+            Assert.assertEquals("load failed", e.getMessage());
+        }
+        CacheStats stats = cache.getCacheMap().getStats();
+        Assert.assertEquals(1, stats.getLoadSuccessCount());
+        Assert.assertEquals(1, stats.getLoadFailureCount());
+        Assert.assertEquals(stats.getTotalLoadTime() / 2.0, stats.getAverageLoadPenalty(), 0.0001);
+        Assert.assertEquals(1, stats.getHitCount());
+    }
+
+    @Test
+    public void registerStatsMBean() throws Exception {
+        LRUCache<Integer, String> cache = new LRUCache<>(10, 0);
+        ObjectName objectName = cache.registerStatsMBean("statsTest");
+        MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        try {
+            Assert.assertTrue(cache.isRecordingStats());
+            Assert.assertTrue(mBeanServer.isRegistered(objectName));
+            cache.put(1, "a");
+            cache.get(1);
+            cache.get(2);
+            Assert.assertEquals(1, mBeanServer.getAttribute(objectName, "Size"));
+            Assert.assertEquals(10, mBeanServer.getAttribute(objectName, "CacheSize"));
+            Assert.assertEquals(1L, mBeanServer.getAttribute(objectName, "HitCount"));
+            Assert.assertEquals(1L, mBeanServer.getAttribute(objectName, "MissCount"));
+            Assert.assertEquals(1L, mBeanServer.getAttribute(objectName, "PutCount"));
+            Assert.assertEquals(0.5, (Double) mBeanServer.getAttribute(objectName, "HitRate"), 0.0001);
+        } finally {
+            cache.unregisterStatsMBean("statsTest");
+        }
+        Assert.assertFalse(mBeanServer.isRegistered(objectName));
+    }
+}
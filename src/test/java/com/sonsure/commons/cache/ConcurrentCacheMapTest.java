@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2020. www.sonsure.com Inc. All rights reserved.
+ * You may obtain more information at
+ *
+ *   http://www.sonsure.com
+ *
+ * Designed By Selfly Lee (selfly@live.com)
+ */
+
+package com.sonsure.commons.cache;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class ConcurrentCacheMapTest {
+
+    @Test
+    public void segmentRouting() {
+        ConcurrentCacheMap<Integer, String> cache = new ConcurrentCacheMap<>(EvictionPolicy.LRU, 0, 0, 16);
+        Assert.assertEquals(16, cache.getSegmentCount());
+        Map<AbstractCacheMap<Integer, String>, Boolean> used = new IdentityHashMap<>();
+        for (int i = 0; i < 1000; i++) {
+            cache.put(i, "v" + i);
+            AbstractCacheMap<Integer, String> segment = cache.segmentFor(i);
+            Assert.assertSame(segment, cache.segmentFor(i));
+            Assert.assertEquals("v" + i, segment.get(i));
+            used.put(segment, Boolean.TRUE);
+        }
+        //连续的key应分散到所有段
+        Assert.assertEquals(16, used.size());
+        int total = 0;
+        for (AbstractCacheMap<Integer, String> segment : used.keySet()) {
+            total += segment.size();
+        }
+        Assert.assertEquals(1000, total);
+
+        Map<Integer, String> all = cache.getAll(Arrays.asList(5, 999, 1000, 0));
+        Assert.assertEquals(Arrays.asList(5, 999, 0), new ArrayList<>(all.keySet()));
+        cache.removeAll(Arrays.asList(5, 999));
+        Assert.assertNull(cache.get(5));
+        Assert.assertEquals(998, cache.size());
+    }
+
+    @Test
+    public void totalSizeAcrossSegments() {
+        ConcurrentCacheMap<Integer, String> cache = new ConcurrentCacheMap<>(EvictionPolicy.LFU, 64, 0, 16);
+        Map<Integer, String> map = new HashMap<>();
+        for (int i = 0; i < 1000; i++) {
+            map.put(i, "v" + i);
+        }
+        cache.putAll(map);
+        Assert.assertEquals(64, cache.size());
+        Assert.assertTrue(cache.isFull());
+
+        //段数不超过cacheSize，余数分摊后总大小仍为cacheSize
+        ConcurrentCacheMap<Integer, String> small = new ConcurrentCacheMap<>(EvictionPolicy.FIFO, 10, 0, 16);
+        Assert.assertEquals(8, small.getSegmentCount());
+        for (int i = 0; i < 1000; i++) {
+            small.put(i, "v" + i);
+        }
+        Assert.assertEquals(10, small.size());
+        small.clear();
+        Assert.assertTrue(small.isEmpty());
+    }
+
+    @Test
+    public void expiry() {
+        final AtomicLong time = new AtomicLong(1_000_000L);
+        ConcurrentCacheMap<Integer, String> cache = new ConcurrentCacheMap<>(EvictionPolicy.LRU, 0, 1000L, 4);
+        cache.setTicker(time::get);
+        for (int i = 0; i < 100; i++) {
+            cache.put(i, "v" + i);
+        }
+        cache.put(100, "v100", 60_000L);
+        time.addAndGet(5000L);
+        Assert.assertNull(cache.get(1));
+        //get时已删除过期的key 1
+        Assert.assertEquals(99, cache.eliminate());
+        Assert.assertEquals(1, cache.size());
+        Assert.assertEquals("v100", cache.get(100));
+    }
+
+    @Test
+    public void settingsPropagateToSegments() {
+        ConcurrentCacheMap<Integer, String> cache = new ConcurrentCacheMap<>(EvictionPolicy.LRU, 0, 0, 4);
+        try {
+            cache.setWeigher((key, value) -> value.length(), 3);
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+            Assert.assertTrue(e.getMessage().contains("4"));
+        }
+        final List<String> events = new ArrayList<>();
+        cache.setWeigher((key, value) -> value.length(), 40)
+                .setRemovalListener((key, value, cause) -> events.add(key + ":" + cause), Runnable::run)
+                .setValueStrength(ValueStrength.SOFT);
+        Assert.assertEquals(40, cache.getMaximumWeight());
+
+        for (int i = 0; i < 100; i++) {
+            AbstractCacheMap<Integer, String> segment = cache.segmentFor(i);
+            Assert.assertEquals(10, segment.getMaximumWeight());
+            Assert.assertEquals(ValueStrength.SOFT, segment.getValueStrength());
+        }
+        cache.put(1, "abcd");
+        cache.put(2, "ef");
+        Assert.assertEquals(6, cache.getTotalWeight());
+        //超过段内权重限制的值放不下
+        cache.put(3, "abcdefghijk");
+        Assert.assertNull(cache.get(3));
+
+        for (int i = 0; i < 100; i++) {
+            cache.remove(i);
+        }
+        Assert.assertEquals(Arrays.asList("1:EXPLICIT", "2:EXPLICIT"), events);
+        Assert.assertEquals(0, cache.getTotalWeight());
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2020. www.sonsure.com Inc. All rights reserved.
+ * You may obtain more information at
+ *
+ *   http://www.sonsure.com
+ *
+ * Designed By Selfly Lee (selfly@live.com)
+ */
+
+package com.sonsure.commons.cache;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 满容量LFUCache的put延迟，淘汰为O(1)时各cacheSize下的结果应基本持平
+ * <p>
+ * 直接运行main方法即可
+ *
+ * @author liyd
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LFUCacheBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int cacheSize;
+
+    private LFUCache<Integer, Integer> cache;
+
+    private int next;
+
+    @Setup
+    public void setup() {
+        cache = new LFUCache<>(cacheSize, 0);
+        for (int i = 0; i < cacheSize; i++) {
+            cache.put(i, i);
+            //制造不同的访问次数
+            if (i % 3 == 0) {
+                cache.get(i);
+            }
+        }
+        next = cacheSize;
+    }
+
+    @Benchmark
+    public void putWhenFull() {
+        int key = next++;
+        cache.put(key, key);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(LFUCacheBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
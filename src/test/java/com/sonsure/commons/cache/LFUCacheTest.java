@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2020. www.sonsure.com Inc. All rights reserved.
+ * You may obtain more information at
+ *
+ *   http://www.sonsure.com
+ *
+ * Designed By Selfly Lee (selfly@live.com)
+ */
+
+package com.sonsure.commons.cache;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class LFUCacheTest {
+
+    @Test
+    public void evictLeastFrequentlyUsed() {
+        LFUCache<Integer, Integer> cache = new LFUCache<>(3, 0);
+        cache.put(1, 1);
+        cache.put(2, 2);
+        cache.put(3, 3);
+        cache.get(1);
+        cache.get(1);
+        cache.get(3);
+        cache.put(4, 4);
+
+        Assert.assertNull(cache.get(2));
+        Assert.assertEquals(Integer.valueOf(1), cache.get(1));
+        Assert.assertEquals(Integer.valueOf(3), cache.get(3));
+        Assert.assertEquals(Integer.valueOf(4), cache.get(4));
+    }
+
+    @Test
+    public void evictFirstInWithinSameFrequency() {
+        final List<Integer> evicted = new ArrayList<>();
+        LFUCache<Integer, Integer> cache = new LFUCache<>(3, 0);
+        cache.setRemovalListener((key, value, cause) -> evicted.add(key), Runnable::run);
+        cache.put(1, 1);
+        cache.put(2, 2);
+        cache.put(3, 3);
+        cache.put(4, 4);
+        cache.put(5, 5);
+
+        Assert.assertEquals(Arrays.asList(1, 2), evicted);
+    }
+
+    @Test
+    public void replaceResetsFrequency() {
+        LFUCache<Integer, String> cache = new LFUCache<>(3, 0);
+        cache.put(1, "a");
+        cache.put(2, "b");
+        cache.put(3, "c");
+        for (int i = 0; i < 3; i++) {
+            cache.get(1);
+        }
+        cache.get(2);
+        cache.get(3);
+        cache.put(1, "x");
+        cache.put(4, "d");
+
+        Assert.assertNull(cache.get(1));
+        Assert.assertEquals("b", cache.get(2));
+        Assert.assertEquals("c", cache.get(3));
+    }
+
+    @Test
+    public void oldHotEntryAgesOut() {
+        final List<Integer> evicted = new ArrayList<>();
+        LFUCache<Integer, Integer> cache = new LFUCache<>(2, 0);
+        cache.setRemovalListener((key, value, cause) -> evicted.add(key), Runnable::run);
+        cache.put(0, 0);
+        for (int i = 0; i < 5; i++) {
+            cache.get(0);
+        }
+        //每次淘汰都提高新对象的起始次数，访问过5次的热点在新对象追上后被淘汰
+        for (int key = 1; key <= 8; key++) {
+            cache.put(key, key);
+        }
+        Assert.assertEquals(Arrays.asList(1, 2, 3, 4, 5, 0, 6), evicted);
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2020. www.sonsure.com Inc. All rights reserved.
+ * You may obtain more information at
+ *
+ *   http://www.sonsure.com
+ *
+ * Designed By Selfly Lee (selfly@live.com)
+ */
+
+package com.sonsure.commons.cache;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+public class LRUCacheTest {
+
+    @Test
+    public void evictLeastRecentlyUsed() {
+        LRUCache<Integer, Integer> cache = new LRUCache<>(3, 0);
+        cache.put(1, 1);
+        cache.put(2, 2);
+        cache.put(3, 3);
+        cache.get(1);
+        cache.put(4, 4);
+
+        Assert.assertEquals(Integer.valueOf(1), cache.get(1));
+        Assert.assertNull(cache.get(2));
+        Assert.assertEquals(Integer.valueOf(3), cache.get(3));
+        Assert.assertEquals(Integer.valueOf(4), cache.get(4));
+    }
+
+    @Test
+    public void concurrentGet() throws Exception {
+        final LRUCache<Integer, Integer> cache = new LRUCache<>(1000, 0);
+        for (int i = 0; i < 1000; i++) {
+            cache.put(i, i);
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 16; t++) {
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < 100000; i++) {
+                    Integer key = ThreadLocalRandom.current().nextInt(2000);
+                    if (i % 10 == 0) {
+                        cache.put(key, key);
+                    } else {
+                        Integer value = cache.get(key);
+                        Assert.assertTrue(value == null || value.equals(key));
+                    }
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        Assert.assertEquals(1000, cache.size());
+    }
+}
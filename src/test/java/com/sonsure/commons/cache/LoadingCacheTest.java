@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2020. www.sonsure.com Inc. All rights reserved.
+ * You may obtain more information at
+ *
+ *   http://www.sonsure.com
+ *
+ * Designed By Selfly Lee (selfly@live.com)
+ */
+
+package com.sonsure.commons.cache;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+public class LoadingCacheTest {
+
+    @Test
+    public void loadOncePerKey() throws Exception {
+        final LoadingCache<Integer, String> cache = new LoadingCache<>(new LFUCache<>(100, 0));
+        final AtomicInteger loads = new AtomicInteger();
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        List<Future<String>> futures = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                return cache.get(1, key -> {
+                    loads.incrementAndGet();
+                    try {
+                        Thread.sleep(100);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return "value" + key;
+                });
+            }));
+        }
+        start.countDown();
+        for (Future<String> future : futures) {
+            Assert.assertEquals("value1", future.get());
+        }
+        executor.shutdown();
+        Assert.assertEquals(1, loads.get());
+        Assert.assertEquals("value1", cache.get(1));
+    }
+
+    @Test
+    public void refreshAfterWrite() {
+        final AtomicLong time = new AtomicLong(1000);
+        FIFOCache<Integer, String> cacheMap = new FIFOCache<>(100, 0);
+        cacheMap.setTicker(time::get);
+        final LoadingCache<Integer, String> cache = new LoadingCache<>(cacheMap, 50, Runnable::run);
+        Assert.assertEquals("v1", cache.get(1, key -> "v1"));
+        time.addAndGet(49);
+        Assert.assertEquals("v1", cache.get(1, key -> "v2"));
+        Assert.assertEquals("v1", cache.get(1));
+        time.addAndGet(1);
+        //同步执行器下刷新立即完成，当前调用仍返回旧值
+        Assert.assertEquals("v1", cache.get(1, key -> "v2"));
+        Assert.assertEquals("v2", cache.get(1));
+    }
+
+    @Test
+    public void refreshKeepsCustomExpire() {
+        final AtomicLong time = new AtomicLong(1000);
+        FIFOCache<Integer, String> cacheMap = new FIFOCache<>(100, 0);
+        cacheMap.setTicker(time::get);
+        final LoadingCache<Integer, String> cache = new LoadingCache<>(cacheMap, 50, Runnable::run);
+        cache.put(1, "v1", 500);
+        time.addAndGet(60);
+        Assert.assertEquals("v1", cache.get(1, key -> "v2"));
+        Assert.assertEquals("v2", cache.get(1));
+        //刷新后从刷新时刻重新计算500毫秒，而不是变成永不过期
+        time.addAndGet(500);
+        Assert.assertEquals("v2", cache.get(1));
+        time.addAndGet(1);
+        Assert.assertNull(cache.get(1));
+    }
+
+    @Test
+    public void removeDuringRefreshDropsResult() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        final LoadingCache<Integer, String> cache = new LoadingCache<>(new LRUCache<>(100, 0), 0, executor);
+        final CountDownLatch loading = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        Function<Integer, String> loader = key -> {
+            loading.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "refreshed";
+        };
+        try {
+            cache.put(1, "v1");
+            Future<String> refresh = cache.refresh(1, loader);
+            loading.await();
+            cache.remove(1);
+            release.countDown();
+            Assert.assertEquals("refreshed", refresh.get());
+            //刷新期间被删除，刷新结果不能写回
+            Assert.assertNull(cache.get(1));
+
+            final CountDownLatch loading2 = new CountDownLatch(1);
+            final CountDownLatch release2 = new CountDownLatch(1);
+            cache.put(2, "v1");
+            Future<String> refresh2 = cache.refresh(2, key -> {
+                loading2.countDown();
+                try {
+                    release2.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return "refreshed";
+            });
+            loading2.await();
+            cache.put(2, "newer");
+            release2.countDown();
+            refresh2.get();
+            //刷新期间放入了新值，保留新值
+            Assert.assertEquals("newer", cache.get(2));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void getAllLoadsMissesInOneBatch() {
+        LoadingCache<Integer, String> cache = new LoadingCache<>(new LRUCache<>(100, 0));
+        cache.put(2, "cached2");
+        final List<Integer> batches = new ArrayList<>();
+        Map<Integer, String> values = cache.getAll(Arrays.asList(1, 2, 3, 4), keys -> {
+            batches.add(keys.size());
+            Map<Integer, String> result = new HashMap<>();
+            for (Integer key : keys) {
+                //4不返回，不缓存
+                if (key != 4) {
+                    result.put(key, "value" + key);
+                }
+            }
+            return result;
+        });
+
+        Assert.assertEquals(Arrays.asList(1, 2, 3), new ArrayList<>(values.keySet()));
+        Assert.assertEquals("cached2", values.get(2));
+        Assert.assertEquals(Arrays.asList(3), batches);
+        Assert.assertEquals("value3", cache.get(3));
+        Assert.assertNull(cache.get(4));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void loaderException() {
+        LoadingCache<Integer, String> cache = new LoadingCache<>(new LRUCache<>(100, 0));
+        cache.get(1, key -> {
+            throw new IllegalStateException("load failed");
+        });
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2020. www.sonsure.com Inc. All rights reserved.
+ * You may obtain more information at
+ *
+ *   http://www.sonsure.com
+ *
+ * Designed By Selfly Lee (selfly@live.com)
+ */
+
+package com.sonsure.commons.cache;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class LongKeyCacheMapTest {
+
+    @Test
+    public void evictLeastRecentlyUsed() {
+        LongKeyCacheMap<String> cache = new LongKeyCacheMap<>(3, 0);
+        cache.put(1L, "a");
+        cache.put(2L, "b");
+        cache.put(3L, "c");
+        cache.get(1L);
+        cache.put(4L, "d");
+
+        Assert.assertEquals("a", cache.get(1L));
+        Assert.assertNull(cache.get(2L));
+        Assert.assertEquals("c", cache.get(3L));
+        Assert.assertEquals("d", cache.get(4L));
+    }
+
+    @Test
+    public void readsOnlyKeepLruOrder() throws Exception {
+        final LongKeyCacheMap<String> cache = new LongKeyCacheMap<>(3, 0);
+        cache.put(1L, "a");
+        cache.put(2L, "b");
+        cache.put(3L, "c");
+        //多线程只读，回放的tryLock经常因其它读线程持有读锁而失败
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            final long key = t % 2 + 1;
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 200000; i++) {
+                    cache.get(key);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        //之后的读取仍要被记录，不能因为计数一直增长而全部丢弃
+        for (int i = 0; i < 1000; i++) {
+            Assert.assertEquals("c", cache.get(3L));
+        }
+        Assert.assertEquals("a", cache.get(1L));
+        cache.put(4L, "d");
+
+        Assert.assertNull(cache.get(2L));
+        Assert.assertEquals("a", cache.get(1L));
+        Assert.assertEquals("c", cache.get(3L));
+        Assert.assertEquals("d", cache.get(4L));
+    }
+
+    @Test
+    public void sameAsHashMap() {
+        LongKeyCacheMap<String> cache = new LongKeyCacheMap<>(EvictionPolicy.FIFO, 0, 0);
+        Map<Long, String> map = new HashMap<>();
+        Random random = new Random(1);
+        for (int i = 0; i < 100000; i++) {
+            long key = random.nextInt(5000) - 2500;
+            int op = random.nextInt(3);
+            if (op == 0) {
+                cache.put(key, "v" + i);
+                map.put(key, "v" + i);
+            } else if (op == 1) {
+                cache.remove(key);
+                map.remove(key);
+            } else {
+                Assert.assertEquals(map.get(key), cache.get(key));
+            }
+        }
+        Assert.assertEquals(map.size(), cache.size());
+    }
+
+    @Test
+    public void expireWithManualTicker() {
+        final AtomicLong time = new AtomicLong(1_000_000L);
+        LongKeyCacheMap<String> cache = new LongKeyCacheMap<>(10, 0);
+        cache.setTicker(time::get);
+        cache.put(1L, "a");
+        cache.put(2L, "b", 50);
+        time.addAndGet(50);
+        Assert.assertEquals("b", cache.get(2L));
+        time.addAndGet(1);
+        Assert.assertNull(cache.get(2L));
+        Assert.assertEquals("a", cache.get(1L));
+        Assert.assertEquals(1, cache.size());
+    }
+}
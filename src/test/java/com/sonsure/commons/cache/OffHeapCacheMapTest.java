@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2020. www.sonsure.com Inc. All rights reserved.
+ * You may obtain more information at
+ *
+ *   http://www.sonsure.com
+ *
+ * Designed By Selfly Lee (selfly@live.com)
+ */
+
+package com.sonsure.commons.cache;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class OffHeapCacheMapTest {
+
+    @Test
+    public void putAndExpire() {
+        final AtomicLong time = new AtomicLong(1_000_000L);
+        OffHeapCacheMap<String> cache = new OffHeapCacheMap<>(0, 0, 1 << 20, 4096);
+        cache.setTicker(time::get);
+        cache.put("a", "hello".getBytes());
+        cache.put("b", "world".getBytes(), 50);
+        Assert.assertEquals("hello", new String(cache.get("a")));
+        Assert.assertEquals("world", new String(cache.get("b")));
+        time.addAndGet(50);
+        Assert.assertEquals("world", new String(cache.get("b")));
+        time.addAndGet(1);
+        Assert.assertNull(cache.get("b"));
+        Assert.assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void evictWhenMemoryFull() {
+        OffHeapCacheMap<Integer> cache = new OffHeapCacheMap<>(0, 0, 4096, 1024);
+        for (int i = 0; i < 100; i++) {
+            cache.put(i, new byte[100]);
+        }
+        Assert.assertTrue(cache.size() < 100);
+        Assert.assertTrue(cache.getUsedMemory() <= cache.getMaxMemory());
+        Assert.assertNotNull(cache.get(99));
+
+        //其它级别占满内存时回收整页
+        cache.put(-1, new byte[1000]);
+        Assert.assertEquals(1000, cache.get(-1).length);
+    }
+
+    @Test
+    public void closeReleasesDirectMemory() {
+        BufferPoolMXBean direct = null;
+        for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            if ("direct".equals(pool.getName())) {
+                direct = pool;
+            }
+        }
+        Assert.assertNotNull(direct);
+        OffHeapCacheMap<Integer> cache = new OffHeapCacheMap<>(0, 0, 4 << 20, 1 << 20);
+        for (int i = 0; i < 4; i++) {
+            cache.put(i, new byte[(1 << 20) - 100]);
+        }
+        long used = direct.getMemoryUsed();
+        cache.close();
+        //不等GC，关闭时直接释放4页
+        Assert.assertTrue(direct.getMemoryUsed() <= used - (4 << 20));
+        Assert.assertTrue(cache.isEmpty());
+        Assert.assertNull(cache.get(1));
+
+        cache.put(1, "again".getBytes());
+        Assert.assertEquals("again", new String(cache.get(1)));
+        cache.close();
+    }
+}
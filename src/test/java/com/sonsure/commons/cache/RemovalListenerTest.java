@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 2020. www.sonsure.com Inc. All rights reserved.
+ * You may obtain more information at
+ *
+ *   http://www.sonsure.com
+ *
+ * Designed By Selfly Lee (selfly@live.com)
+ */
+
+package com.sonsure.commons.cache;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class RemovalListenerTest {
+
+    @Test
+    public void removalListener() {
+        final List<String> events = new ArrayList<>();
+        LRUCache<Integer, String> cache = new LRUCache<>(2, 0);
+        cache.setRemovalListener((key, value, cause) -> events.add(key + "=" + value + ":" + cause), Runnable::run);
+        cache.put(1, "a");
+        cache.put(2, "b");
+        cache.put(1, "c");
+        cache.put(3, "d");
+        cache.remove(1);
+
+        Assert.assertEquals(Arrays.asList("1=a:REPLACED", "2=b:SIZE", "1=c:EXPLICIT"), events);
+    }
+
+    @Test
+    public void removalListenerFailureDoesNotFailWrite() {
+        final List<Integer> removed = new ArrayList<>();
+        LRUCache<Integer, String> cache = new LRUCache<>(2, 0);
+        cache.setRemovalListener((key, value, cause) -> {
+            removed.add(key);
+            if (key == 1) {
+                throw new IllegalStateException("listener failed");
+            }
+        }, Runnable::run);
+        cache.put(1, "a");
+        cache.put(2, "b");
+        //淘汰1时回调抛出异常，写入仍然成功
+        cache.put(3, "c");
+        Assert.assertEquals("c", cache.get(3));
+        Assert.assertEquals(2, cache.size());
+        cache.remove(2);
+        Assert.assertEquals(Arrays.asList(1, 2), removed);
+    }
+}
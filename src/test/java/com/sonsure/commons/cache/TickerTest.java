@@ -0,0 +1,37 @@
+/*
+ * Copyright (c) 2020. www.sonsure.com Inc. All rights reserved.
+ * You may obtain more information at
+ *
+ *   http://www.sonsure.com
+ *
+ * Designed By Selfly Lee (selfly@live.com)
+ */
+
+package com.sonsure.commons.cache;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+public class TickerTest {
+
+    @Test
+    public void expireWithManualTicker() {
+        final AtomicLong time = new AtomicLong(1000);
+        LRUCache<Integer, String> cache = new LRUCache<>(10, 100);
+        cache.setTicker(time::get);
+        cache.put(1, "a");
+        cache.put(2, "b", 500);
+
+        time.addAndGet(100);
+        Assert.assertEquals("a", cache.get(1));
+        time.addAndGet(1);
+        Assert.assertNull(cache.get(1));
+        Assert.assertEquals("b", cache.get(2));
+
+        time.addAndGet(1000);
+        Assert.assertEquals(1, cache.eliminate());
+        Assert.assertTrue(cache.isEmpty());
+    }
+}
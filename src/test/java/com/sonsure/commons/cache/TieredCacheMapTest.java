@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2020. www.sonsure.com Inc. All rights reserved.
+ * You may obtain more information at
+ *
+ *   http://www.sonsure.com
+ *
+ * Designed By Selfly Lee (selfly@live.com)
+ */
+
+package com.sonsure.commons.cache;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class TieredCacheMapTest {
+
+    @Test
+    public void spillAndReopen() throws Exception {
+        File directory = Files.createTempDirectory("tiered").toFile();
+        TieredCacheMap<Integer, String> cache = newCache(directory);
+        for (int i = 0; i < 1000; i++) {
+            cache.put(i, "value" + i);
+        }
+        cache.flush();
+        Assert.assertEquals(10, cache.getMemoryCache().size());
+        Assert.assertEquals(990, cache.getDiskSize());
+        Assert.assertEquals("value1", cache.get(1));
+        cache.remove(2);
+        cache.close();
+
+        TieredCacheMap<Integer, String> reopened = newCache(directory);
+        Assert.assertEquals("value1", reopened.get(1));
+        Assert.assertNull(reopened.get(2));
+        Assert.assertEquals("value999", reopened.get(999));
+        reopened.clear();
+        reopened.close();
+    }
+
+    @Test
+    public void promotionDoesNotOverwriteConcurrentPut() throws Exception {
+        final int keys = 2000;
+        for (int round = 0; round < 5; round++) {
+            File directory = Files.createTempDirectory("tiered").toFile();
+            TieredCacheMap<Integer, String> writer = newCache(directory);
+            for (int i = 0; i < keys; i++) {
+                writer.put(i, "old");
+            }
+            writer.close();
+            //一级不限制大小，不会淘汰，所有旧值都只在二级中
+            final TieredCacheMap<Integer, String> cache = new TieredCacheMap<>(new LRUCache<>(0, 0), directory,
+                    new JdkSerializer<>(), new JdkSerializer<>(), 64 * 1024, 16 * 1024 * 1024, 1000);
+            final AtomicBoolean running = new AtomicBoolean(true);
+            final AtomicReference<String> failure = new AtomicReference<>();
+            List<Thread> readers = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                final int offset = t;
+                readers.add(new Thread(() -> {
+                    while (running.get()) {
+                        for (int key = offset; key < keys; key += 4) {
+                            cache.get(key);
+                        }
+                    }
+                }));
+            }
+            for (Thread reader : readers) {
+                reader.start();
+            }
+            //放入后读到的必须是新值，不能被并发的提升用二级中的旧值覆盖
+            for (int key = 0; key < keys && failure.get() == null; key++) {
+                cache.put(key, "new");
+                String value = cache.get(key);
+                if (!"new".equals(value)) {
+                    failure.set("key:" + key + " value:" + value);
+                }
+            }
+            running.set(false);
+            for (Thread reader : readers) {
+                reader.join();
+            }
+            cache.clear();
+            cache.close();
+            Assert.assertNull(failure.get());
+        }
+    }
+
+    private TieredCacheMap<Integer, String> newCache(File directory) {
+        return new TieredCacheMap<>(new LRUCache<>(10, 0), directory, new JdkSerializer<>(),
+                new JdkSerializer<>(), 64 * 1024, 16 * 1024 * 1024, 1000);
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2020. www.sonsure.com Inc. All rights reserved.
+ * You may obtain more information at
+ *
+ *   http://www.sonsure.com
+ *
+ * Designed By Selfly Lee (selfly@live.com)
+ */
+
+package com.sonsure.commons.cache;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class TimerWheelTest {
+
+    private static final long START = 1_000_000L;
+
+    /**
+     * 最细一层桶的跨度，过期对象最晚在过期时间之后这么久被处理
+     */
+    private static final long PRECISION = TimerWheel.SPANS[0];
+
+    @Test
+    public void expireAtEachLevel() {
+        //依次落在64个1秒桶、64个1分钟桶、32个1小时桶、4个1天桶和溢出桶
+        long[] durations = {5_000L, 1_000_000L, 50_000_000L, 300_000_000L, 2_000_000_000L};
+        for (long duration : durations) {
+            TimerWheel timerWheel = new TimerWheel(START);
+            TestNode node = new TestNode(START + duration);
+            timerWheel.schedule(node);
+            List<TimerWheel.Node> expired = new ArrayList<>();
+
+            //一步推进到过期时间的前后，同时经过各层的级联
+            timerWheel.advance(node.expireTime, expired::add);
+            Assert.assertTrue("duration:" + duration, expired.isEmpty());
+            timerWheel.advance(node.expireTime + PRECISION, expired::add);
+            Assert.assertEquals("duration:" + duration, 1, expired.size());
+            Assert.assertSame(node, expired.get(0));
+            Assert.assertNull(node.nextInWheel);
+        }
+    }
+
+    @Test
+    public void cascadeFromHigherLevels() {
+        TimerWheel timerWheel = new TimerWheel(START);
+        Random random = new Random(42);
+        List<TestNode> nodes = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            //最长约6天，覆盖所有层，其中一部分从小时、天层逐级下放
+            long duration = (long) (random.nextDouble() * 500_000_000L) + 1;
+            TestNode node = new TestNode(START + duration);
+            nodes.add(node);
+            timerWheel.schedule(node);
+        }
+        AtomicLong time = new AtomicLong(START);
+        AtomicInteger count = new AtomicInteger();
+        //每次推进不到一秒，对象必须在[过期时间, 过期时间 + 一个最细的桶]内被处理
+        while (count.get() < nodes.size()) {
+            long now = time.addAndGet(777);
+            timerWheel.advance(now, node -> {
+                Assert.assertTrue(now > node.expireTime);
+                Assert.assertTrue(now <= node.expireTime + PRECISION + 777);
+                ((TestNode) node).expiredCount++;
+                count.incrementAndGet();
+            });
+        }
+        for (TestNode node : nodes) {
+            Assert.assertEquals(1, node.expiredCount);
+        }
+    }
+
+    @Test
+    public void singleLargeAdvanceAfterIdle() {
+        TimerWheel timerWheel = new TimerWheel(START);
+        long[] durations = {10L, 100_000L, 10_000_000L, 200_000_000L, 800_000_000L};
+        for (long duration : durations) {
+            timerWheel.schedule(new TestNode(START + duration));
+        }
+        TestNode later = new TestNode(START + 3_000_000_000L);
+        timerWheel.schedule(later);
+        List<TimerWheel.Node> expired = new ArrayList<>();
+
+        //空闲约12天后一次推进，各层经过的桶都只处理一轮
+        timerWheel.advance(START + 1_000_000_000L, expired::add);
+        Assert.assertEquals(durations.length, expired.size());
+        Assert.assertFalse(expired.contains(later));
+
+        timerWheel.advance(later.expireTime + PRECISION, expired::add);
+        Assert.assertEquals(durations.length + 1, expired.size());
+        Assert.assertSame(later, expired.get(durations.length));
+    }
+
+    @Test
+    public void rescheduleOnReplace() {
+        TimerWheel timerWheel = new TimerWheel(START);
+        TestNode node = new TestNode(START + 5_000L);
+        timerWheel.schedule(node);
+        timerWheel.deschedule(node);
+        node.expireTime = START + 100_000L;
+        timerWheel.schedule(node);
+        List<TimerWheel.Node> expired = new ArrayList<>();
+        timerWheel.advance(START + 5_000L + PRECISION, expired::add);
+        Assert.assertTrue(expired.isEmpty());
+        timerWheel.advance(START + 100_000L + PRECISION, expired::add);
+        Assert.assertEquals(1, expired.size());
+    }
+
+    @Test
+    public void replaceReschedulesCacheEntry() {
+        final AtomicLong time = new AtomicLong(START);
+        LRUCache<Integer, String> cache = new LRUCache<>(10, 0);
+        cache.setTicker(time::get);
+        cache.put(1, "a", 5_000L);
+        cache.put(1, "b", 100_000L);
+        time.addAndGet(5_000L + PRECISION);
+        Assert.assertEquals(0, cache.eliminate());
+        Assert.assertEquals("b", cache.get(1));
+        time.set(START + 100_000L + PRECISION);
+        Assert.assertEquals(1, cache.eliminate());
+        Assert.assertTrue(cache.isEmpty());
+    }
+
+    @Test
+    public void sweeperReleasesCollectedCache() {
+        final AtomicInteger cleanUps = new AtomicInteger();
+        ExpirySweeper sweeper = ExpirySweeper.start(cleanUps::incrementAndGet, 3_600_000L);
+        sweeper.run();
+        Assert.assertEquals(1, cleanUps.get());
+        Assert.assertFalse(sweeper.isStopped());
+
+        //缓存被回收后任务取消，不再持有也不再清理
+        sweeper.cacheRef.clear();
+        sweeper.run();
+        Assert.assertEquals(1, cleanUps.get());
+        Assert.assertTrue(sweeper.isStopped());
+    }
+
+    private static final class TestNode extends TimerWheel.Node {
+
+        int expiredCount;
+
+        TestNode(long expireTime) {
+            this.expireTime = expireTime;
+        }
+    }
+}
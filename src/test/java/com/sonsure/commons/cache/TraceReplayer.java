@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2020. www.sonsure.com Inc. All rights reserved.
+ * You may obtain more information at
+ *
+ *   http://www.sonsure.com
+ *
+ * Designed By Selfly Lee (selfly@live.com)
+ */
+
+package com.sonsure.commons.cache;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 按访问记录回放，输出各淘汰策略的命中率
+ * <p>
+ * 记录文件每行一次访问，取第一列作为key，空行和#开头的行忽略。未命中时放入缓存，模拟读穿透。
+ * <pre>
+ * java ... com.sonsure.commons.cache.TraceReplayer -size=10000 trace1.txt trace2.txt
+ * </pre>
+ *
+ * @author liyd
+ */
+public class TraceReplayer {
+
+    /**
+     * 回放一个记录文件
+     *
+     * @param keys      访问的key
+     * @param policy    淘汰策略
+     * @param cacheSize 缓存大小
+     * @return 统计
+     */
+    public static CacheStats replay(List<String> keys, EvictionPolicy policy, int cacheSize) {
+        AbstractCacheMap<String, String> cache = policy.newCacheMap(cacheSize, 0);
+        cache.recordStats();
+        for (String key : keys) {
+            if (cache.get(key) == null) {
+                cache.put(key, key);
+            }
+        }
+        return cache.getStats();
+    }
+
+    /**
+     * 读取记录文件
+     *
+     * @param file the file
+     * @return the list
+     * @throws IOException the io exception
+     */
+    public static List<String> readTrace(String file) throws IOException {
+        List<String> keys = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(Paths.get(file), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                int end = 0;
+                while (end < line.length() && !Character.isWhitespace(line.charAt(end)) && line.charAt(end) != ',') {
+                    end++;
+                }
+                keys.add(line.substring(0, end));
+            }
+        }
+        return keys;
+    }
+
+    public static void main(String[] args) throws IOException {
+        int cacheSize = 1000;
+        List<String> files = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith("-size=")) {
+                cacheSize = Integer.parseInt(arg.substring("-size=".length()));
+            } else {
+                files.add(arg);
+            }
+        }
+        if (files.isEmpty()) {
+            System.out.println("Usage: TraceReplayer [-size=1000] trace-file...");
+            return;
+        }
+        for (String file : files) {
+            List<String> keys = readTrace(file);
+            System.out.printf("%s (%d requests, cacheSize=%d)%n", file, keys.size(), cacheSize);
+            for (EvictionPolicy policy : EvictionPolicy.values()) {
+                CacheStats stats = replay(keys, policy, cacheSize);
+                System.out.printf("  %-10s hit rate %6.2f%%%n", policy, stats.getHitRate() * 100);
+            }
+        }
+    }
+}
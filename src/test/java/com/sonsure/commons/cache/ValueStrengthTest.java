@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) 2020. www.sonsure.com Inc. All rights reserved.
+ * You may obtain more information at
+ *
+ *   http://www.sonsure.com
+ *
+ * Designed By Selfly Lee (selfly@live.com)
+ */
+
+package com.sonsure.commons.cache;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class ValueStrengthTest {
+
+    @Test
+    public void weakValuesAreCollected() {
+        LRUCache<Integer, Object> cache = new LRUCache<>(10, 0);
+        List<RemovalCause> causes = new ArrayList<>();
+        cache.setValueStrength(ValueStrength.WEAK);
+        cache.setRemovalListener((key, value, cause) -> causes.add(cause), Runnable::run);
+        String kept = "kept";
+        cache.put(1, kept);
+        cache.put(2, new Object());
+        //不依赖GC时机，直接清除引用并放入引用队列
+        Assert.assertTrue(cache.collectValue(2));
+        Assert.assertEquals(2, cache.size());
+        Assert.assertTrue(causes.isEmpty());
+
+        cache.cleanUp();
+        Assert.assertEquals(Arrays.asList(RemovalCause.COLLECTED), causes);
+        Assert.assertEquals(1, cache.size());
+        Assert.assertNull(cache.get(2));
+        Assert.assertSame(kept, cache.get(1));
+        Assert.assertFalse(new LRUCache<Integer, Object>(10, 0).collectValue(1));
+    }
+}
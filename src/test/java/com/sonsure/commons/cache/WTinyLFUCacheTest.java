@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) 2020. www.sonsure.com Inc. All rights reserved.
+ * You may obtain more information at
+ *
+ *   http://www.sonsure.com
+ *
+ * Designed By Selfly Lee (selfly@live.com)
+ */
+
+package com.sonsure.commons.cache;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class WTinyLFUCacheTest {
+
+    @Test
+    public void hotKeysSurviveScan() {
+        WTinyLFUCache<Integer, Integer> cache = new WTinyLFUCache<>(100, 0);
+        for (int round = 0; round < 5; round++) {
+            for (int i = 0; i < 50; i++) {
+                if (cache.get(i) == null) {
+                    cache.put(i, i);
+                }
+            }
+        }
+        //一次性扫描的对象只访问一次，无法挤掉热点
+        for (int i = 1000; i < 11000; i++) {
+            cache.put(i, i);
+        }
+        int hits = 0;
+        for (int i = 0; i < 50; i++) {
+            if (cache.get(i) != null) {
+                hits++;
+            }
+        }
+        Assert.assertEquals(100, cache.size());
+        Assert.assertTrue("hits:" + hits, hits >= 45);
+    }
+
+    @Test
+    public void nullKey() {
+        WTinyLFUCache<Integer, Integer> cache = new WTinyLFUCache<>(10, 0);
+        cache.put(null, 1);
+        Assert.assertEquals(Integer.valueOf(1), cache.get(null));
+        for (int i = 0; i < 100; i++) {
+            cache.put(i, i);
+        }
+        Assert.assertEquals(10, cache.size());
+    }
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright (c) 2020. www.sonsure.com Inc. All rights reserved.
+ * You may obtain more information at
+ *
+ *   http://www.sonsure.com
+ *
+ * Designed By Selfly Lee (selfly@live.com)
+ */
+
+package com.sonsure.commons.cache;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class WeigherTest {
+
+    @Test
+    public void evictByWeight() {
+        LRUCache<Integer, byte[]> cache = new LRUCache<>(0, 0);
+        cache.setWeigher((key, value) -> value.length, 100);
+        cache.put(1, new byte[40]);
+        cache.put(2, new byte[40]);
+        cache.get(1);
+        cache.put(3, new byte[50]);
+
+        Assert.assertNull(cache.get(2));
+        Assert.assertNotNull(cache.get(1));
+        Assert.assertEquals(90, cache.getTotalWeight());
+
+        //超过最大权重的对象不缓存
+        cache.put(4, new byte[101]);
+        Assert.assertNull(cache.get(4));
+        Assert.assertEquals(90, cache.getTotalWeight());
+    }
+}